@@ -0,0 +1,219 @@
+package benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import analyser.Knowledge;
+import analyser.Problem;
+import analyser.Statement;
+
+/**
+ * <h1>StatementBenchmarks</h1>
+ * The <i>JMH</i> suites of the most frequently called functions of <code>Statement</code> (the hot paths of
+ * solving), measured over the statements of a knowledge pool. Functions that compare statements are measured
+ * over pairs sampled with a fixed seed from the whole knowledge pool (see <code>samplePairs</code>),
+ * so that the inputs only depend on the knowledge pool.<br/>
+ * Each invocation calls the measured function for the next input, cycling through all inputs, and its result
+ * is consumed by a <code>Blackhole</code>. Results are published as JSON with the <code>-rf json</code> option
+ * of <i>JMH</i> (see <code>benchmark/jmh/pom.xml</code>).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgs = {"-Djava.awt.headless=true"})
+@State(Scope.Thread)
+public class StatementBenchmarks {
+	//the maximum number of statement pairs used by benchmarks that compare statements
+	private static final int MAX_PAIRS = 2000;
+	//the seed of the sampled statement pairs
+	private static final long SEED = 1;
+	//the knowledge pool whose statements are measured (relative to the directory JMH is run from)
+	@Param({"data/knowledge.xml"})
+	public String knowledge;
+	private Statement[] statements;
+	//copies of the statements that are modified by the measured functions
+	private Statement[] scratch;
+	//the variables of each statement together with all variables of its problem
+	private ArrayList<ArrayList<String>> unusedVariables;
+	private Statement[] first;
+	private Statement[] second;
+	//the result of matching the first statement of each pair to the second one
+	private String[] matched;
+	private int nextStatement = 0;
+	private int nextPair = 0;
+
+	@Setup(Level.Trial)
+	public void load(){
+		Knowledge pool = new Knowledge();
+		pool.load(knowledge);
+		ArrayList<Statement> list = getStatements(pool);
+		statements = list.toArray(new Statement[list.size()]);
+		scratch = new Statement[statements.length];
+		for(int i=0;i<scratch.length;i++)
+			scratch[i] = new Statement(new ArrayList<String>(statements[i].variables), statements[i].getExpression());
+		unusedVariables = getUnusedVariables(pool);
+		ArrayList<Statement[]> pairs = samplePairs(list, MAX_PAIRS, SEED);
+		first = new Statement[pairs.size()];
+		second = new Statement[pairs.size()];
+		matched = new String[pairs.size()];
+		for(int i=0;i<pairs.size();i++){
+			first[i] = pairs.get(i)[0];
+			second[i] = pairs.get(i)[1];
+			matched[i] = first[i].matchExpression(second[i]);
+		}
+		if(statements.length==0 || first.length==0)
+			throw new IllegalStateException("No statements to measure in "+knowledge);
+	}
+
+	private int nextStatement(){
+		int i = nextStatement;
+		nextStatement = i+1==statements.length?0:i+1;
+		return i;
+	}
+
+	private int nextPair(){
+		int i = nextPair;
+		nextPair = i+1==first.length?0:i+1;
+		return i;
+	}
+
+	@Benchmark
+	public void setExpression(Blackhole blackhole){
+		int i = nextStatement();
+		scratch[i].setExpression(statements[i].getExpression());
+		blackhole.consume(scratch[i].variables.size());
+	}
+
+	@Benchmark
+	public void isSame(Blackhole blackhole){
+		int i = nextPair();
+		blackhole.consume(first[i].isSame(second[i]));
+	}
+
+	@Benchmark
+	public void isIdentical(Blackhole blackhole){
+		int i = nextPair();
+		blackhole.consume(first[i].isIdentical(second[i]));
+	}
+
+	@Benchmark
+	public void matchExpression(Blackhole blackhole){
+		int i = nextPair();
+		blackhole.consume(first[i].matchExpression(second[i]));
+	}
+
+	@Benchmark
+	public void predicateSimilarity(Blackhole blackhole){
+		int i = nextPair();
+		blackhole.consume(Statement.predicateSimilarity(matched[i], first[i].getExpression(), first[i].getVariables()));
+	}
+
+	@Benchmark
+	public void removeUnusedVariables(Blackhole blackhole){
+		int i = nextStatement();
+		//restoring the unused variables only copies a list, compared to the measured function
+		scratch[i].setVariables(new ArrayList<String>(unusedVariables.get(i)));
+		blackhole.consume(scratch[i].removeUnusedVariables());
+	}
+
+	@Benchmark
+	public void getInformation(Blackhole blackhole){
+		blackhole.consume(statements[nextStatement()].getInformation());
+	}
+
+	@Benchmark
+	public void toHTML(Blackhole blackhole){
+		blackhole.consume(statements[nextStatement()].toHTML());
+	}
+
+	/**
+	 * <h1>getStatements</h1>
+	 * @param knowledge : the knowledge pool
+	 * @return copies of all statements of the knowledge pool, in the order they appear in it
+	 */
+	private static ArrayList<Statement> getStatements(Knowledge knowledge){
+		ArrayList<Statement> statements = new ArrayList<Statement>();
+		for(Problem p : knowledge.getProblems())
+			for(Statement st : p.statements)
+				statements.add(new Statement(new ArrayList<String>(st.variables), st.getExpression()));
+		return statements;
+	}
+
+	/**
+	 * <h1>getUnusedVariables</h1>
+	 * @param knowledge : the knowledge pool
+	 * @return for each statement of the knowledge pool (in the order of <code>getStatements</code>), its
+	 * variables together with all variables of its problem (as generated by <code>CodeParser.parseImport</code>)
+	 */
+	private static ArrayList<ArrayList<String>> getUnusedVariables(Knowledge knowledge){
+		ArrayList<ArrayList<String>> unusedVariables = new ArrayList<ArrayList<String>>();
+		for(Problem p : knowledge.getProblems())
+			for(Statement st : p.statements){
+				LinkedHashSet<String> variables = new LinkedHashSet<String>(st.variables);
+				for(Statement other : p.statements)
+					variables.addAll(other.variables);
+				unusedVariables.add(new ArrayList<String>(variables));
+			}
+		return unusedVariables;
+	}
+
+	/**
+	 * <h1>samplePairs</h1>
+	 * Samples pairs of different statements with the same number of variables (neither of them being an
+	 * input or output), as compared by the solver. If there are more such pairs than the given maximum,
+	 * the pairs are drawn uniformly at random with the given seed from the whole list of statements, so
+	 * that they do not all share their first statement. Otherwise, all pairs are used in order.
+	 * @param statements : the statements
+	 * @param maxPairs : the maximum number of pairs
+	 * @param seed : the seed of the sampling
+	 * @return the first and the second statement of each pair
+	 */
+	private static ArrayList<Statement[]> samplePairs(ArrayList<Statement> statements, int maxPairs, long seed){
+		ArrayList<Statement> eligible = new ArrayList<Statement>();
+		HashMap<Integer, Integer> sizes = new HashMap<Integer, Integer>();
+		for(Statement st : statements)
+			if(!st.isInput() && !st.isOutput()){
+				eligible.add(st);
+				Integer size = sizes.get(st.variables.size());
+				sizes.put(st.variables.size(), size==null?1:size+1);
+			}
+		long total = 0;
+		for(int size : sizes.values())
+			total += size*(long)(size-1);
+		ArrayList<Statement[]> pairs = new ArrayList<Statement[]>();
+		if(total<=maxPairs){
+			for(Statement st : eligible)
+				for(Statement s : eligible)
+					if(st!=s && st.variables.size()==s.variables.size())
+						pairs.add(new Statement[]{st, s});
+			return pairs;
+		}
+		//draw random pairs of eligible statements until enough of them have the same number of variables
+		Random random = new Random(seed);
+		while(pairs.size()<maxPairs){
+			Statement st = eligible.get(random.nextInt(eligible.size()));
+			Statement s = eligible.get(random.nextInt(eligible.size()));
+			if(st!=s && st.variables.size()==s.variables.size())
+				pairs.add(new Statement[]{st, s});
+		}
+		return pairs;
+	}
+}
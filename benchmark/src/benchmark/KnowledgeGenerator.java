@@ -0,0 +1,336 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import analyser.Knowledge;
+import analyser.Problem;
+import analyser.Statement;
+
+/**
+ * <h1>KnowledgeGenerator</h1>
+ * This class generates synthetic knowledge pools, so that solving, rationalization and persistence can be
+ * measured on pools much larger than the ones written by hand. Each generated problem describes a function
+ * with its input and output statements and a number of predicate statements (similarly to the problems that
+ * <code>CodeParser.parseImport</code> generates) and is implemented by a problem of source code statements.
+ * Generated pools are saved with <code>Knowledge.save</code>, so they can be loaded like any other pool.<br/>
+ * Settings are immutable: each of the <code>with</code> functions creates a copy of the generator with the
+ * new value. The same settings and seed always generate the same knowledge pool.<br/>
+ * The similarity between problems is controlled by the vocabulary overlap, which is the probability that a
+ * predicate word is drawn from a vocabulary shared by all problems instead of words used by a single
+ * problem. Higher overlaps produce more candidates that match a problem under solution.<br/>
+ * Usage: <code>java -Djava.awt.headless=true benchmark.KnowledgeGenerator [output path] [problems] [seed]
+ * [max statements] [max arity] [vocabulary overlap] [libraries] [class member ratio]</code>
+ */
+public class KnowledgeGenerator implements Cloneable {
+	//the default path of the generated knowledge pool
+	public static final String DEFAULT_OUTPUT = "data/generated.xml";
+	//the default number of generated problems (each one with its implementation)
+	public static final int DEFAULT_PROBLEMS = 1000;
+	//the default seed of the generator
+	public static final long DEFAULT_SEED = 1;
+	//the number of generated problems (each one with its implementation)
+	private int problems = DEFAULT_PROBLEMS;
+	//the seed of the random number generator
+	private long seed = DEFAULT_SEED;
+	//the minimum and maximum number of predicate statements of each problem
+	private int minStatements = 2;
+	private int maxStatements = 6;
+	//the minimum and maximum number of variables of each statement
+	private int minArity = 1;
+	private int maxArity = 3;
+	//the maximum number of input and output variables of each problem
+	private int maxInputs = 3;
+	private int maxOutputs = 2;
+	//the number of words in the vocabulary shared by all problems
+	private int vocabularySize = 200;
+	//the probability that a predicate word is drawn from the shared vocabulary
+	private float vocabularyOverlap = 0.5f;
+	//the number of libraries that problems are spread over (0 to leave problems without a library)
+	private int libraries = 10;
+	//the exponent of the Zipf distribution of problems over libraries (0 for a uniform spread)
+	private float librarySkew = 1;
+	//the probability that a problem is a class member (i.e. has an input named after its function member variable)
+	private float classMemberRatio = 0.2f;
+
+	public static void main(String[] args){
+		String path = args.length>0?args[0]:DEFAULT_OUTPUT;
+		KnowledgeGenerator generator = new KnowledgeGenerator();
+		if(args.length>1)
+			generator = generator.withProblems(Integer.parseInt(args[1]));
+		if(args.length>2)
+			generator = generator.withSeed(Long.parseLong(args[2]));
+		if(args.length>3)
+			generator = generator.withStatements(generator.minStatements, Integer.parseInt(args[3]));
+		if(args.length>4)
+			generator = generator.withArity(generator.minArity, Integer.parseInt(args[4]));
+		if(args.length>5)
+			generator = generator.withVocabulary(generator.vocabularySize, Float.parseFloat(args[5]));
+		if(args.length>6)
+			generator = generator.withLibraries(Integer.parseInt(args[6]), generator.librarySkew);
+		if(args.length>7)
+			generator = generator.withClassMemberRatio(Float.parseFloat(args[7]));
+		long start = System.nanoTime();
+		Knowledge knowledge = generator.generate();
+		long generated = System.nanoTime();
+		knowledge.save(path);
+		long saved = System.nanoTime();
+		System.out.println("Generated "+generator);
+		System.out.println((knowledge.getProblems().size()-1)+" problems in "+(generated-start)/1000000+" ms, saved to "+path+" in "+(saved-generated)/1000000+" ms");
+	}
+
+	private KnowledgeGenerator copy(){
+		try{
+			return (KnowledgeGenerator)clone();
+		}
+		catch(CloneNotSupportedException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * <h1>withProblems</h1>
+	 * @param problems : the number of generated problems (each one is also given an implementation)
+	 * @return a copy of the generator with the given number of problems
+	 */
+	public KnowledgeGenerator withProblems(int problems){
+		KnowledgeGenerator generator = copy();
+		generator.problems = Math.max(0, problems);
+		return generator;
+	}
+
+	/**
+	 * <h1>withSeed</h1>
+	 * @param seed : the seed of the random number generator
+	 * @return a copy of the generator with the given seed
+	 */
+	public KnowledgeGenerator withSeed(long seed){
+		KnowledgeGenerator generator = copy();
+		generator.seed = seed;
+		return generator;
+	}
+
+	/**
+	 * <h1>withStatements</h1>
+	 * @param minStatements : the minimum number of predicate statements of each problem
+	 * @param maxStatements : the maximum number of predicate statements of each problem
+	 * @return a copy of the generator with the given statement counts
+	 */
+	public KnowledgeGenerator withStatements(int minStatements, int maxStatements){
+		KnowledgeGenerator generator = copy();
+		generator.minStatements = Math.max(1, minStatements);
+		generator.maxStatements = Math.max(generator.minStatements, maxStatements);
+		return generator;
+	}
+
+	/**
+	 * <h1>withArity</h1>
+	 * @param minArity : the minimum number of variables of each predicate statement
+	 * @param maxArity : the maximum number of variables of each predicate statement
+	 * @return a copy of the generator with the given variable counts
+	 */
+	public KnowledgeGenerator withArity(int minArity, int maxArity){
+		KnowledgeGenerator generator = copy();
+		generator.minArity = Math.max(1, minArity);
+		generator.maxArity = Math.max(generator.minArity, maxArity);
+		return generator;
+	}
+
+	/**
+	 * <h1>withSignature</h1>
+	 * @param maxInputs : the maximum number of input variables of each problem
+	 * @param maxOutputs : the maximum number of output variables of each problem
+	 * @return a copy of the generator with the given variable counts
+	 */
+	public KnowledgeGenerator withSignature(int maxInputs, int maxOutputs){
+		KnowledgeGenerator generator = copy();
+		generator.maxInputs = Math.max(1, maxInputs);
+		generator.maxOutputs = Math.max(1, maxOutputs);
+		return generator;
+	}
+
+	/**
+	 * <h1>withVocabulary</h1>
+	 * @param vocabularySize : the number of words shared by all problems
+	 * @param vocabularyOverlap : the probability that a predicate word is drawn from the shared words
+	 * (0 for problems that have nothing in common, 1 for problems that only use shared words)
+	 * @return a copy of the generator with the given vocabulary
+	 */
+	public KnowledgeGenerator withVocabulary(int vocabularySize, float vocabularyOverlap){
+		KnowledgeGenerator generator = copy();
+		generator.vocabularySize = Math.max(1, vocabularySize);
+		generator.vocabularyOverlap = Math.max(0, Math.min(1, vocabularyOverlap));
+		return generator;
+	}
+
+	/**
+	 * <h1>withLibraries</h1>
+	 * @param libraries : the number of libraries that problems are spread over (0 to leave problems without a library)
+	 * @param librarySkew : the exponent of the Zipf distribution of problems over libraries (0 for a uniform spread)
+	 * @return a copy of the generator with the given library spread
+	 */
+	public KnowledgeGenerator withLibraries(int libraries, float librarySkew){
+		KnowledgeGenerator generator = copy();
+		generator.libraries = Math.max(0, libraries);
+		generator.librarySkew = Math.max(0, librarySkew);
+		return generator;
+	}
+
+	/**
+	 * <h1>withClassMemberRatio</h1>
+	 * @param classMemberRatio : the probability that a problem is a class member, which uses the fields of
+	 * its function member variable (see <code>Problem.getNonClassProblem</code>)
+	 * @return a copy of the generator with the given ratio
+	 */
+	public KnowledgeGenerator withClassMemberRatio(float classMemberRatio){
+		KnowledgeGenerator generator = copy();
+		generator.classMemberRatio = Math.max(0, Math.min(1, classMemberRatio));
+		return generator;
+	}
+
+	/**
+	 * <h1>generate</h1>
+	 * Generates a new knowledge pool. The problems of the pool are followed by their implementations,
+	 * in the order they are generated.
+	 * @return the generated knowledge pool
+	 */
+	public Knowledge generate(){
+		Random random = new Random(seed);
+		String[] vocabulary = new String[vocabularySize];
+		for(int i=0;i<vocabularySize;i++)
+			vocabulary[i] = createWord(random);
+		double[] libraryWeights = new double[libraries];
+		double totalWeight = 0;
+		for(int i=0;i<libraries;i++){
+			libraryWeights[i] = 1/Math.pow(i+1, librarySkew);
+			totalWeight += libraryWeights[i];
+		}
+		Knowledge knowledge = new Knowledge();
+		for(int i=0;i<problems;i++){
+			//choose the library of the problem
+			String library = "";
+			if(libraries>0){
+				double position = random.nextDouble()*totalWeight;
+				int lib = 0;
+				while(lib<libraries-1 && position>=libraryWeights[lib]){
+					position -= libraryWeights[lib];
+					lib++;
+				}
+				library = "library_"+lib;
+			}
+			//choose the name, the words and the variables of the problem
+			String name = vocabulary[random.nextInt(vocabularySize)]+"_"+i;
+			ArrayList<String> inputs = new ArrayList<String>();
+			ArrayList<String> outputs = new ArrayList<String>();
+			int inputCount = 1+random.nextInt(maxInputs);
+			int outputCount = 1+random.nextInt(maxOutputs);
+			for(int j=0;j<inputCount;j++)
+				inputs.add("in"+j);
+			for(int j=0;j<outputCount;j++)
+				outputs.add("out"+j);
+			ArrayList<String> variables = new ArrayList<String>(inputs);
+			variables.addAll(outputs);
+			boolean isClassMember = random.nextFloat()<classMemberRatio;
+			Problem p = new Problem(name);
+			Problem implementation = new Problem(name+"_implement");
+			String thisName = p.getFunctionMemberVariable();
+			ArrayList<String> inputVariables = new ArrayList<String>(inputs);
+			if(isClassMember)
+				inputVariables.add(thisName);
+			p.statements.add(new Statement(new ArrayList<String>(inputVariables), "input"));
+			p.statements.add(new Statement(new ArrayList<String>(outputs), "output"));
+			implementation.statements.add(new Statement(new ArrayList<String>(inputVariables), "input"));
+			implementation.statements.add(new Statement(new ArrayList<String>(outputs), "output"));
+			p.statements.add(new Statement(new ArrayList<String>(), "this function "+createPredicate(random, vocabulary, 2)));
+			//generate predicate statements among the variables of the problem
+			int statementCount = minStatements+random.nextInt(maxStatements-minStatements+1);
+			for(int j=0;j<statementCount;j++){
+				ArrayList<String> statementVariables = chooseVariables(random, variables);
+				String expression = "";
+				for(String var : statementVariables)
+					expression += createPredicate(random, vocabulary, 1+random.nextInt(2))+" "+var+" ";
+				if(isClassMember && random.nextBoolean()){
+					statementVariables.add(thisName);
+					expression += "of "+thisName+"."+vocabulary[random.nextInt(vocabularySize)];
+				}
+				p.statements.add(new Statement(statementVariables, expression.trim()));
+			}
+			//generate the source code that computes each output from some variables
+			for(String output : outputs){
+				ArrayList<String> arguments = chooseVariables(random, inputs);
+				String call = vocabulary[random.nextInt(vocabularySize)]+"("+join(arguments, ", ")+")";
+				if(isClassMember)
+					call = thisName+"."+call;
+				arguments.add(0, output);
+				if(isClassMember)
+					arguments.add(thisName);
+				implementation.statements.add(new Statement(arguments, output+" = "+call));
+			}
+			knowledge.add(p);
+			knowledge.add(implementation);
+			p.setResult(implementation);
+			p.setLibrary(library);
+		}
+		return knowledge;
+	}
+
+	/**
+	 * <h1>createPredicate</h1>
+	 * @param random : the random number generator
+	 * @param vocabulary : the shared vocabulary
+	 * @param words : the number of words
+	 * @return words separated by spaces, each one drawn either from the shared vocabulary or created anew
+	 */
+	private String createPredicate(Random random, String[] vocabulary, int words){
+		String predicate = "";
+		for(int i=0;i<words;i++){
+			String word = random.nextFloat()<vocabularyOverlap?vocabulary[random.nextInt(vocabulary.length)]:createWord(random);
+			predicate += (predicate.isEmpty()?"":" ")+word;
+		}
+		return predicate;
+	}
+
+	/**
+	 * <h1>chooseVariables</h1>
+	 * @param random : the random number generator
+	 * @param variables : the variables to choose from
+	 * @return a number of distinct variables (between the minimum and maximum arity), in the order they were chosen
+	 */
+	private ArrayList<String> chooseVariables(Random random, ArrayList<String> variables){
+		int count = Math.min(variables.size(), minArity+random.nextInt(maxArity-minArity+1));
+		ArrayList<String> remaining = new ArrayList<String>(variables);
+		ArrayList<String> chosen = new ArrayList<String>();
+		for(int i=0;i<count;i++)
+			chosen.add(remaining.remove(random.nextInt(remaining.size())));
+		return chosen;
+	}
+
+	/**
+	 * <h1>createWord</h1>
+	 * @param random : the random number generator
+	 * @return a pronounceable lowercase word of 2 to 4 syllables
+	 */
+	private static String createWord(Random random){
+		final String consonants = "bcdfghklmnprstvz";
+		final String vowels = "aeiou";
+		String word = "";
+		int syllables = 2+random.nextInt(3);
+		for(int i=0;i<syllables;i++)
+			word += ""+consonants.charAt(random.nextInt(consonants.length()))+vowels.charAt(random.nextInt(vowels.length()));
+		return word;
+	}
+
+	private static String join(ArrayList<String> words, String separator){
+		String text = "";
+		for(String word : words)
+			text += (text.isEmpty()?"":separator)+word;
+		return text;
+	}
+
+	@Override
+	public String toString(){
+		return problems+" problems (seed "+seed+", "+minStatements+"-"+maxStatements+" statements, arity "+minArity+"-"+maxArity
+				+", "+vocabularySize+" shared words with overlap "+vocabularyOverlap+", "+libraries+" libraries with skew "+librarySkew
+				+", class member ratio "+classMemberRatio+")";
+	}
+}
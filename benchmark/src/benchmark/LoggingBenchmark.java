@@ -0,0 +1,82 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import analyser.CancellationToken;
+import analyser.Knowledge;
+import analyser.Problem;
+import analyser.SolverConfig;
+import solver.Solver;
+
+/**
+ * <h1>LoggingBenchmark</h1>
+ * This class measures how much logging costs the solver. It solves every problem of a knowledge pool
+ * that is not an implementation with each log level (see <code>SolverConfig.withLogLevel</code>) and
+ * reports the median total solve time for each level, together with the size of the generated log.<br/>
+ * Since messages that are not recorded are not generated either (see <code>Problem.isLogged</code>),
+ * the solve time of a level should approach the one of the previous level as the additional messages
+ * become fewer, and the gap between levels 2 and 3 only reflects the messages that level 3 records.<br/>
+ * Usage: <code>java -Djava.awt.headless=true benchmark.LoggingBenchmark [knowledge path] [repetitions]</code>
+ */
+public class LoggingBenchmark {
+	//the default knowledge pool to solve
+	public static final String DEFAULT_KNOWLEDGE = "data/knowledge.xml";
+	//the default number of measured repetitions for each log level
+	public static final int DEFAULT_REPETITIONS = 5;
+	//the number of unmeasured repetitions performed first
+	public static final int WARMUP_REPETITIONS = 3;
+	//the measured log levels
+	public static final int[] LOG_LEVELS = {0, 1, 2, 3};
+
+	public static void main(String[] args){
+		String path = args.length>0?args[0]:DEFAULT_KNOWLEDGE;
+		int repetitions = args.length>1?Integer.parseInt(args[1]):DEFAULT_REPETITIONS;
+		Knowledge knowledge = new Knowledge();
+		knowledge.load(path);
+		ArrayList<Problem> queries = new ArrayList<Problem>();
+		for(Problem p : knowledge.getProblems())
+			if(p!=Knowledge.emptyProblem && !knowledge.isImplementation(p))
+				queries.add(p);
+		SolverConfig config = SolverConfig.getDefault().withThreads(1).withMaxIterations(1+knowledge.getSolvedProblems().size());
+		System.out.println("Solving "+queries.size()+" problems of "+path+" ("+WARMUP_REPETITIONS+" warmup and "+repetitions+" measured repetitions)");
+		for(int i=0;i<WARMUP_REPETITIONS;i++)
+			for(int level : LOG_LEVELS)
+				solveAll(knowledge, queries, config.withLogLevel(level));
+		//levels are measured in turns, so that they are equally affected by the JIT compiler and by other processes
+		long[][] times = new long[LOG_LEVELS.length][repetitions];
+		long[] logSizes = new long[LOG_LEVELS.length];
+		for(int i=0;i<repetitions;i++)
+			for(int j=0;j<LOG_LEVELS.length;j++){
+				long start = System.nanoTime();
+				logSizes[j] = solveAll(knowledge, queries, config.withLogLevel(LOG_LEVELS[j]));
+				times[j][i] = (System.nanoTime()-start)/1000000;
+			}
+		System.out.println("level\tmedian ms\tmin ms\tlog chars");
+		for(int j=0;j<LOG_LEVELS.length;j++){
+			Arrays.sort(times[j]);
+			System.out.println(LOG_LEVELS[j]+"\t"+times[j][repetitions/2]+"\t"+times[j][0]+"\t"+logSizes[j]);
+		}
+	}
+
+	/**
+	 * <h1>solveAll</h1>
+	 * Solves the given problems one after the other.
+	 * @param knowledge : the knowledge pool
+	 * @param queries : the problems to solve
+	 * @param config : the solver configuration
+	 * @return the total number of characters of the generated logs in HTML form
+	 */
+	private static long solveAll(Knowledge knowledge, ArrayList<Problem> queries, SolverConfig config){
+		long logSize = 0;
+		for(Problem p : queries){
+			Problem result = p.getResult();
+			Problem pr = new Problem(p.getName()+"_implement");
+			Solver.solve(pr, p, knowledge, new ArrayList<String>(), config, new CancellationToken());
+			logSize += Problem.getLog().length();
+			//keep the knowledge pool unchanged between solves
+			p.setResult(result);
+		}
+		return logSize;
+	}
+}
@@ -0,0 +1,240 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+
+import analyser.CancellationToken;
+import analyser.Knowledge;
+import analyser.Problem;
+import analyser.SolveStats;
+import analyser.SolverConfig;
+import solver.Solver;
+
+/**
+ * <h1>SolverBenchmark</h1>
+ * This class measures how solving scales with the size of the knowledge pool and the number of threads.
+ * For each pool size, a knowledge pool is generated with a fixed seed (see <code>KnowledgeGenerator</code>)
+ * and its first problems are solved one after the other with <code>Solver.solve</code>, for each number of
+ * threads. Since later solves reuse the similarities computed by earlier solves against the same pool (see
+ * <code>Knowledge.getSimilarityMatrix</code>), the duration of the first solve is reported separately.<br/>
+ * For each pool size and number of threads, the total solve time, the time of each pass of the solution
+ * algorithm, the number of scored candidates, the peak heap usage, the CPU time and the allocated bytes are
+ * printed and written to a CSV file. Each measurement is given a wall-clock time budget; once a pool size
+ * exceeds it, larger pools are not measured for the same number of threads.<br/>
+ * When run with <code>check</code> as its first argument, only the pool sizes and numbers of threads listed
+ * in a budget file are measured and the program exits with an error if any measurement exceeds its budget.
+ * Each line of the budget file holds the pool size, the number of threads, the maximum total solve time in
+ * milliseconds and the maximum number of scored candidates, separated by commas (lines starting with
+ * <code>#</code> are ignored).<br/>
+ * Usage: <code>java -Djava.awt.headless=true benchmark.SolverBenchmark [output path] [pool sizes] [threads]
+ * [queries] [time budget s]</code><br/>
+ * or: <code>java -Djava.awt.headless=true benchmark.SolverBenchmark check [budget path] [output path]</code>
+ */
+public class SolverBenchmark {
+	//the default path of the CSV results
+	public static final String DEFAULT_OUTPUT = "solver-benchmark.csv";
+	//the default budget file of the regression check
+	public static final String DEFAULT_BUDGETS = "benchmark/solver-budgets.csv";
+	//the default pool sizes (numbers of generated problems, each one with its implementation)
+	public static final String DEFAULT_SIZES = "100,1000,10000,100000";
+	//the default numbers of threads
+	public static final String DEFAULT_THREADS = "1,4";
+	//the default number of solved problems of each pool
+	public static final int DEFAULT_QUERIES = 3;
+	//the default time budget of each measurement in seconds
+	public static final int DEFAULT_TIME_BUDGET = 600;
+	//the seed of generated pools
+	public static final long SEED = KnowledgeGenerator.DEFAULT_SEED;
+	//the maximum number of solution steps of each solve
+	public static final int MAX_ITERATIONS = 5;
+	//the allowed excess of scored candidates over their budget (to tolerate the order in which threads prune candidates)
+	public static final float CANDIDATE_TOLERANCE = 0.1f;
+	//the columns of the CSV file
+	public static final String CSV_HEADER = "problems,threads,queries,first_solve_ms,total_solve_ms,passes,ms_per_pass,candidates_scored,peak_heap_mb,cpu_ms,allocated_mb,completed";
+
+	/**
+	 * <h1>Measurement</h1>
+	 * The results of solving the first problems of a knowledge pool with a number of threads.
+	 */
+	private static class Measurement {
+		private int problems;
+		private int threads;
+		private int queries;
+		private long firstSolveTime;
+		private long totalSolveTime;
+		private long passes;
+		private long candidatesScored;
+		private long peakHeap;
+		private double cpuTime;
+		private long allocatedBytes;
+		private boolean completed = true;
+
+		@Override
+		public String toString(){
+			return problems+","+threads+","+queries+","+firstSolveTime+","+totalSolveTime+","+passes+","
+					+(passes==0?0:Math.round(totalSolveTime*100.0/passes)/100.0)+","+candidatesScored+","
+					+peakHeap/(1024*1024)+","+Math.round(cpuTime)+","+allocatedBytes/(1024*1024)+","+completed;
+		}
+	}
+
+	public static void main(String[] args) throws IOException{
+		boolean check = args.length>0 && args[0].equals("check");
+		ArrayList<long[]> budgets = new ArrayList<long[]>();
+		String output;
+		ArrayList<int[]> runs = new ArrayList<int[]>();
+		int queries = DEFAULT_QUERIES;
+		long timeBudget = DEFAULT_TIME_BUDGET*1000L;
+		if(check){
+			budgets = loadBudgets(args.length>1?args[1]:DEFAULT_BUDGETS);
+			output = args.length>2?args[2]:DEFAULT_OUTPUT;
+			timeBudget = 0;
+			for(long[] budget : budgets){
+				runs.add(new int[]{(int)budget[0], (int)budget[1]});
+				//stop measurements that exceed their budget well before they finish
+				timeBudget = Math.max(timeBudget, 2*budget[2]);
+			}
+		}
+		else{
+			output = args.length>0?args[0]:DEFAULT_OUTPUT;
+			String[] sizes = (args.length>1?args[1]:DEFAULT_SIZES).split(",");
+			String[] threads = (args.length>2?args[2]:DEFAULT_THREADS).split(",");
+			if(args.length>3)
+				queries = Integer.parseInt(args[3]);
+			if(args.length>4)
+				timeBudget = Integer.parseInt(args[4])*1000L;
+			for(String size : sizes)
+				for(String thread : threads)
+					runs.add(new int[]{Integer.parseInt(size.trim()), Integer.parseInt(thread.trim())});
+		}
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+		writer.println(CSV_HEADER);
+		System.out.println(CSV_HEADER);
+		ArrayList<Integer> exceededThreads = new ArrayList<Integer>();
+		int failures = 0;
+		try{
+			for(int i=0;i<runs.size();i++){
+				int size = runs.get(i)[0];
+				int threads = runs.get(i)[1];
+				if(exceededThreads.contains(threads))
+					continue;
+				//each measurement uses a new pool, so that it starts with an empty similarity matrix
+				Knowledge knowledge = new KnowledgeGenerator().withProblems(size).withSeed(SEED).generate();
+				Measurement measurement = measure(knowledge, threads, queries, timeBudget);
+				writer.println(measurement);
+				writer.flush();
+				System.out.println(measurement);
+				if(!measurement.completed)
+					exceededThreads.add(threads);
+				if(check){
+					long[] budget = budgets.get(i);
+					if(!measurement.completed || measurement.totalSolveTime>budget[2]){
+						System.out.println("FAILED: "+size+" problems with "+threads+" threads took "+measurement.totalSolveTime+" ms (budget "+budget[2]+" ms)");
+						failures++;
+					}
+					if(measurement.candidatesScored>budget[3]*(1+CANDIDATE_TOLERANCE)){
+						System.out.println("FAILED: "+size+" problems with "+threads+" threads scored "+measurement.candidatesScored+" candidates (budget "+budget[3]+")");
+						failures++;
+					}
+				}
+			}
+		}
+		finally{
+			writer.close();
+		}
+		System.out.println("Results written to "+output);
+		if(check){
+			if(failures>0){
+				System.out.println(failures+" budgets exceeded");
+				System.exit(1);
+			}
+			System.out.println("All budgets met");
+		}
+	}
+
+	/**
+	 * <h1>measure</h1>
+	 * Solves the first problems of the given knowledge pool (those that are not implementations) one after
+	 * the other, leaving the knowledge pool unchanged.
+	 * @param knowledge : the knowledge pool
+	 * @param threads : the number of threads of each solve
+	 * @param queries : the number of solved problems
+	 * @param timeBudget : the wall-clock time budget of all solves in milliseconds
+	 * @return the measurement
+	 */
+	private static Measurement measure(Knowledge knowledge, int threads, int queries, long timeBudget){
+		Measurement measurement = new Measurement();
+		measurement.problems = knowledge.getProblems().size()/2;
+		measurement.threads = threads;
+		SolverConfig config = SolverConfig.getDefault().withThreads(threads).withMaxIterations(MAX_ITERATIONS);
+		CancellationToken token = new CancellationToken(timeBudget);
+		System.gc();
+		ArrayList<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if(pool.getType()==MemoryType.HEAP && pool.isValid()){
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		for(Problem p : new ArrayList<Problem>(knowledge.getProblems())){
+			if(measurement.queries>=queries || token.isCancelled())
+				break;
+			if(p==Knowledge.emptyProblem || knowledge.isImplementation(p))
+				continue;
+			Problem result = p.getResult();
+			Problem pr = new Problem(p.getName()+"_implement");
+			long start = System.nanoTime();
+			SolveStats stats = Solver.solve(pr, p, knowledge, new ArrayList<String>(), config, token);
+			long time = (System.nanoTime()-start)/1000000;
+			//keep the knowledge pool unchanged between solves
+			p.setResult(result);
+			if(measurement.queries==0)
+				measurement.firstSolveTime = time;
+			measurement.queries++;
+			measurement.totalSolveTime += time;
+			measurement.passes += stats.getPhaseCount(SolveStats.SCORING);
+			measurement.candidatesScored += stats.getCounter(SolveStats.CANDIDATES_SCORED);
+			measurement.cpuTime += stats.getCpuTime();
+			measurement.allocatedBytes += stats.getAllocatedBytes();
+		}
+		if(token.isCancelled())
+			measurement.completed = false;
+		for(MemoryPoolMXBean pool : heapPools)
+			measurement.peakHeap += pool.getPeakUsage().getUsed();
+		return measurement;
+	}
+
+	/**
+	 * <h1>loadBudgets</h1>
+	 * @param path : the path of a budget file
+	 * @return the pool size, number of threads, maximum total solve time and maximum scored candidates of each line
+	 */
+	private static ArrayList<long[]> loadBudgets(String path) throws IOException{
+		ArrayList<long[]> budgets = new ArrayList<long[]>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), "UTF-8"));
+		try{
+			String line;
+			while((line = reader.readLine())!=null){
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] values = line.split(",");
+				long[] budget = new long[4];
+				for(int i=0;i<budget.length;i++)
+					budget[i] = Long.parseLong(values[i].trim());
+				budgets.add(budget);
+			}
+		}
+		finally{
+			reader.close();
+		}
+		return budgets;
+	}
+}
@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.util.Arrays;
+
+import analyser.CancellationToken;
+import analyser.Knowledge;
+import analyser.Problem;
+import analyser.SolveTrace;
+import solver.Solver;
+
+/**
+ * <h1>TraceReplay</h1>
+ * This class replays recorded solves (see <code>SolveTrace</code>) against a knowledge pool, so that captured
+ * slow solves can be reproduced offline and used as a regression corpus. Each trace is replayed a number of
+ * times with <code>Solver.replay</code>, checking each time that the recorded solution is found again, and
+ * the median replay time is reported next to the recorded solve time.<br/>
+ * The program exits with an error if any trace cannot be replayed (e.g. because it was recorded against a
+ * different knowledge pool) or if any replay finds a different solution.<br/>
+ * Usage: <code>java -Djava.awt.headless=true benchmark.TraceReplay [knowledge path] [repetitions] [trace paths...]</code>
+ */
+public class TraceReplay {
+	//the default knowledge pool the traces were recorded against
+	public static final String DEFAULT_KNOWLEDGE = "data/knowledge.xml";
+	//the default number of measured replays of each trace
+	public static final int DEFAULT_REPETITIONS = 3;
+
+	public static void main(String[] args){
+		String path = args.length>0?args[0]:DEFAULT_KNOWLEDGE;
+		int repetitions = args.length>1?Integer.parseInt(args[1]):DEFAULT_REPETITIONS;
+		Knowledge knowledge = new Knowledge();
+		knowledge.load(path);
+		int failures = 0;
+		System.out.println("trace\tchoices\trecorded ms\tmedian ms\tmin ms\tidentical");
+		for(int i=2;i<args.length;i++){
+			try{
+				SolveTrace trace = new SolveTrace(args[i]);
+				//the first replay is not measured, since it also computes the similarities that later replays reuse
+				boolean identical = trace.isSameSolution(replay(trace, knowledge));
+				long[] times = new long[repetitions];
+				for(int j=0;j<repetitions;j++){
+					long start = System.nanoTime();
+					Problem solution = replay(trace, knowledge);
+					times[j] = (System.nanoTime()-start)/1000000;
+					identical = identical && trace.isSameSolution(solution);
+				}
+				Arrays.sort(times);
+				System.out.println(args[i]+"\t"+trace.getChoices().size()+"\t"+Math.round(trace.getSolveTime())+"\t"
+						+(repetitions==0?"-":times[repetitions/2])+"\t"+(repetitions==0?"-":times[0])+"\t"+identical);
+				if(!identical)
+					failures++;
+			}
+			catch(Exception e){
+				System.out.println(args[i]+"\tcould not be replayed: "+e.getMessage());
+				failures++;
+			}
+		}
+		if(failures>0){
+			System.out.println(failures+" traces were not reproduced");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * <h1>replay</h1>
+	 * Replays a recorded solve once.
+	 * @param trace : the recorded solve
+	 * @param knowledge : the knowledge pool
+	 * @return the solution found by the replay
+	 */
+	private static Problem replay(SolveTrace trace, Knowledge knowledge){
+		Problem pr = new Problem(trace.getProblem().getName()+"_implement");
+		Solver.replay(pr, trace, knowledge, new CancellationToken());
+		return pr;
+	}
+}
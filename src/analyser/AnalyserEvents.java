@@ -0,0 +1,309 @@
+package analyser;
+
+import java.util.ArrayList;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * <h1>AnalyserEvents</h1>
+ * This class holds the <i>JDK Flight Recorder</i> events emitted by the analyser, so that a recording
+ * can relate the phases of solving, loading and executing problems to garbage collections, lock
+ * contention and CPU samples. The events are recorded only while a recording is running (e.g. when
+ * starting the application with <code>-XX:StartFlightRecording=filename=analyser.jfr</code>) and can
+ * be enabled, disabled or given a threshold through the recording's settings by their names.<br/>
+ * Each event is created and started with <code>begin</code> before the measured operation and is
+ * finished with its <code>finish</code> function, which fills in the fields of the event only if
+ * the event is going to be recorded.
+ */
+public class AnalyserEvents {
+	/**
+	 * <h1>SolveIteration</h1>
+	 * A single step of the solution algorithm (see <code>Problem.solve</code>) performed while solving
+	 * a problem with <code>Solver.solve</code> or any of its variations.
+	 */
+	@Name("analyser.SolveIteration")
+	@Label("Solve Iteration")
+	@Category({"Analyser", "Solver"})
+	@Description("A single step of solving a problem against a rationalized knowledge pool")
+	public static class SolveIteration extends Event {
+		@Label("Problem")
+		private String problem;
+		@Label("Iteration")
+		private int iteration;
+		@Label("Statements Before")
+		private int statementsBefore;
+		@Label("Statements After")
+		private int statementsAfter;
+		@Label("Chosen Candidate")
+		@Description("The knowledge pool problems merged during the step")
+		private String candidate;
+		@Label("Reused")
+		@Description("Whether the step was found among the recorded steps instead of being performed")
+		private boolean reused;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param before : the problem before the step
+		 * @param after : the problem after the step
+		 * @param iteration : the number of the step (starting from 1)
+		 * @param reused : whether the step was found among the recorded steps (see <code>IterationMemo</code>)
+		 */
+		public void finish(Problem before, Problem after, int iteration, boolean reused){
+			end();
+			if(!shouldCommit())
+				return;
+			problem = before.getName();
+			this.iteration = iteration;
+			statementsBefore = before.statements.size();
+			statementsAfter = after.statements.size();
+			candidate = getMergedNames(before, after);
+			this.reused = reused;
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>CandidateScoring</h1>
+	 * The comparison of a problem under solution with a single problem of a rationalized knowledge pool
+	 * (see <code>Problem.scoreCandidate</code>).
+	 */
+	@Name("analyser.CandidateScoring")
+	@Label("Candidate Scoring")
+	@Category({"Analyser", "Solver"})
+	@Description("The measurement of the information that merging a knowledge pool problem would provide")
+	@StackTrace(false)
+	public static class CandidateScoring extends Event {
+		@Label("Problem")
+		private String problem;
+		@Label("Candidate")
+		private String candidate;
+		@Label("Statements")
+		private int statements;
+		@Label("Candidate Statements")
+		private int candidateStatements;
+		@Label("Information")
+		@Description("The information of merging the candidate in bits (0 if nothing was found)")
+		private float information;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param p : the problem under solution
+		 * @param kp : the compared problem of the rationalized knowledge pool
+		 * @param result : the scored candidate (<code>null</code> if nothing was found)
+		 */
+		public void finish(Problem p, Problem kp, Candidate result){
+			end();
+			if(!shouldCommit())
+				return;
+			problem = p.getName();
+			candidate = kp.getName();
+			statements = p.statements.size();
+			candidateStatements = kp.statements.size();
+			information = result==null?0:result.getInformation();
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>Rationalization</h1>
+	 * The creation of a rationalized copy of a knowledge pool (see <code>Knowledge.getRationalized</code>).
+	 */
+	@Name("analyser.Rationalization")
+	@Label("Rationalization")
+	@Category({"Analyser", "Knowledge"})
+	@Description("The creation of a rationalized copy of a knowledge pool")
+	public static class Rationalization extends Event {
+		@Label("Excluded Problem")
+		private String excluded;
+		@Label("Knowledge Pool Problems")
+		private int problems;
+		@Label("Rationalized Problems")
+		private int rationalized;
+		@Label("Threads")
+		private int threads;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param exclude : the problem excluded from the rationalization (may be <code>null</code>)
+		 * @param problems : the number of problems of the knowledge pool
+		 * @param rationalized : the number of rationalized problems
+		 * @param threads : the number of threads used
+		 */
+		public void finish(Problem exclude, int problems, int rationalized, int threads){
+			end();
+			if(!shouldCommit())
+				return;
+			excluded = exclude==null?"":exclude.getName();
+			this.problems = problems;
+			this.rationalized = rationalized;
+			this.threads = threads;
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>KnowledgeLoad</h1>
+	 * The loading of a knowledge pool from an XML file (see <code>Knowledge.load</code>).
+	 */
+	@Name("analyser.KnowledgeLoad")
+	@Label("Knowledge Load")
+	@Category({"Analyser", "Knowledge"})
+	@Description("The loading of a knowledge pool from a file")
+	public static class KnowledgeLoad extends Event {
+		@Label("Path")
+		private String path;
+		@Label("Problems")
+		private int problems;
+		@Label("Statements")
+		private int statements;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param path : the path of the file
+		 * @param problems : the problems of the loaded knowledge pool
+		 */
+		public void finish(String path, ArrayList<Problem> problems){
+			end();
+			if(!shouldCommit())
+				return;
+			this.path = path;
+			this.problems = problems.size();
+			statements = countStatements(problems);
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>KnowledgeSave</h1>
+	 * The saving of a knowledge pool to an XML file (see <code>Knowledge.save</code>).
+	 */
+	@Name("analyser.KnowledgeSave")
+	@Label("Knowledge Save")
+	@Category({"Analyser", "Knowledge"})
+	@Description("The saving of a knowledge pool to a file")
+	public static class KnowledgeSave extends Event {
+		@Label("Path")
+		private String path;
+		@Label("Problems")
+		private int problems;
+		@Label("Statements")
+		private int statements;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param path : the path of the file
+		 * @param problems : the problems of the saved knowledge pool
+		 */
+		public void finish(String path, ArrayList<Problem> problems){
+			end();
+			if(!shouldCommit())
+				return;
+			this.path = path;
+			this.problems = problems.size();
+			statements = countStatements(problems);
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>ImportParse</h1>
+	 * The splitting of a <i>Python</i> library into problems (see <code>CodeParser.parseImport</code>).
+	 */
+	@Name("analyser.ImportParse")
+	@Label("Import Parse")
+	@Category({"Analyser", "Parser"})
+	@Description("The splitting of a Python library into problems")
+	public static class ImportParse extends Event {
+		@Label("Characters")
+		private int characters;
+		@Label("Problems")
+		private int problems;
+		@Label("Statements")
+		private int statements;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param fileText : the parsed file contents
+		 * @param problems : the generated problems
+		 */
+		public void finish(String fileText, ArrayList<Problem> problems){
+			end();
+			if(!shouldCommit())
+				return;
+			characters = fileText.length();
+			this.problems = problems.size();
+			statements = countStatements(problems);
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>ScriptExecution</h1>
+	 * The execution of a problem's statements by <i>Jython</i> (see <code>JythonExecution.execute</code>).
+	 * The event includes the time spent in dialogs that ask for inputs and show outputs.
+	 */
+	@Name("analyser.ScriptExecution")
+	@Label("Script Execution")
+	@Category({"Analyser", "Parser"})
+	@Description("The execution of a problem's statements by Jython")
+	public static class ScriptExecution extends Event {
+		@Label("Problem")
+		private String problem;
+		@Label("Statements")
+		private int statements;
+		@Label("Successful")
+		private boolean successful;
+
+		/**
+		 * <h1>finish</h1>
+		 * Ends the event and records it (if needed).
+		 * @param p : the executed problem
+		 * @param successful : whether the execution was successful
+		 */
+		public void finish(Problem p, boolean successful){
+			end();
+			if(!shouldCommit())
+				return;
+			problem = p.getName();
+			statements = p.statements.size();
+			this.successful = successful;
+			commit();
+		}
+	}
+
+	/**
+	 * <h1>getMergedNames</h1>
+	 * @param before : a problem before a solution step
+	 * @param after : the problem after the step
+	 * @return the names of the problems merged during the step, separated by commas
+	 */
+	private static String getMergedNames(Problem before, Problem after){
+		ArrayList<Problem> merged = after.getMergedProblems();
+		ArrayList<Problem> previous = before.getMergedProblems();
+		int start = 0;
+		if(merged.size()>=previous.size() && merged.subList(0, previous.size()).equals(previous))
+			start = previous.size();
+		String names = "";
+		for(int i=start;i<merged.size();i++)
+			names += (names.isEmpty()?"":", ")+merged.get(i).getName();
+		return names;
+	}
+
+	private static int countStatements(ArrayList<Problem> problems){
+		int statements = 0;
+		for(Problem p : problems)
+			statements += p.statements.size();
+		return statements;
+	}
+}
@@ -0,0 +1,96 @@
+package analyser;
+
+/**
+ * <h1>CancellationToken</h1>
+ * This class is shared between a running solve and whoever started it, in order to be able to
+ * stop the solve before it reaches its maximum number of iterations. A token becomes cancelled
+ * either when <code>cancel</code> is called or when its (optional) wall-clock budget runs out.<br/>
+ * Long running loops of the solver poll <code>isCancelled</code> and stop as soon as possible,
+ * leaving the best partial solution found so far.<br/>
+ * A token can also be created as the child of another token, in which case it is also cancelled
+ * whenever its parent is. Cancelling a child token does not affect its parent.
+ */
+public class CancellationToken {
+	//set to true when cancel is called (or when the deadline has been detected as passed)
+	volatile private boolean cancelled = false;
+	//the System.nanoTime value after which the token is considered cancelled (Long.MAX_VALUE for no deadline)
+	private final long deadline;
+	//the token whose cancellation also cancels this token (null if there is none)
+	private final CancellationToken parent;
+
+	/**
+	 * <h1>CancellationToken</h1>
+	 * Creates a token without a time budget. It is cancelled only by calling <code>cancel</code>.
+	 */
+	public CancellationToken(){
+		deadline = Long.MAX_VALUE;
+		parent = null;
+	}
+
+	/**
+	 * <h1>CancellationToken</h1>
+	 * Creates a token with a wall-clock time budget that starts counting from now.
+	 * @param timeBudget : the time budget in milliseconds (non-positive values mean no budget)
+	 */
+	public CancellationToken(long timeBudget){
+		if(timeBudget>0)
+			deadline = System.nanoTime()+timeBudget*1000000L;
+		else
+			deadline = Long.MAX_VALUE;
+		parent = null;
+	}
+	
+	/**
+	 * <h1>CancellationToken</h1>
+	 * Creates a child token without a time budget of its own. It is cancelled either by calling
+	 * <code>cancel</code> or when the given parent token is cancelled.
+	 * @param parent : the parent token
+	 */
+	public CancellationToken(CancellationToken parent){
+		deadline = Long.MAX_VALUE;
+		this.parent = parent;
+	}
+
+	/**
+	 * <h1>cancel</h1>
+	 * Requests that all operations using this token stop as soon as possible.
+	 */
+	public void cancel(){
+		cancelled = true;
+	}
+
+	/**
+	 * <h1>isCancelled</h1>
+	 * @return <code>true</code> if either <code>cancel</code> has been called or the time budget has run out
+	 */
+	public boolean isCancelled(){
+		if(cancelled)
+			return true;
+		if(deadline!=Long.MAX_VALUE && System.nanoTime()-deadline>=0)
+			cancelled = true;
+		else if(parent!=null && parent.isCancelled())
+			cancelled = true;
+		return cancelled;
+	}
+
+	/**
+	 * <h1>isExpired</h1>
+	 * @return <code>true</code> if the token (or its parent) has a time budget and it has run out
+	 */
+	public boolean isExpired(){
+		if(parent!=null && parent.isExpired())
+			return true;
+		return deadline!=Long.MAX_VALUE && System.nanoTime()-deadline>=0;
+	}
+
+	/**
+	 * <h1>getRemainingTime</h1>
+	 * @return the remaining time budget in milliseconds (<code>Long.MAX_VALUE</code> if there is no budget)
+	 */
+	public long getRemainingTime(){
+		long remaining = parent!=null?parent.getRemainingTime():Long.MAX_VALUE;
+		if(deadline==Long.MAX_VALUE)
+			return remaining;
+		return Math.min(remaining, Math.max(0, (deadline-System.nanoTime())/1000000L));
+	}
+}
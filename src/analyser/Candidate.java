@@ -0,0 +1,193 @@
+package analyser;
+
+import java.util.ArrayList;
+
+/**
+ * <h1>Candidate</h1>
+ * This class represents a problem of a rationalized knowledge pool that could be merged into
+ * a problem under solution, together with the information its merge is expected to provide.
+ * Candidates are generated by <code>Problem.scoreCandidates</code> and are consumed by
+ * <code>Problem.merge</code>.<br/>
+ * Candidates are ordered so that the most informative ones come first. Between candidates of
+ * equal information, those that add less new information come first.<br/>
+ * Candidates also hold the statements detected while scoring them (common statements, variable
+ * synchronizations and statements to merge), so that they don't need to be detected again when
+ * merging the selected candidate. These are discarded for candidates that can no longer be selected.
+ */
+public class Candidate implements Comparable<Candidate> {
+	//the problem of the rationalized knowledge pool
+	private Problem problem;
+	//the total information (balanced between removed and added information)
+	private float information;
+	//the information of the common statements that will be removed
+	private float informationConcervative;
+	//the information of the statements that will be added
+	private float informationNew;
+	//the common non-trivial statements of the problem under solution
+	private ArrayList<Statement> common;
+	//the variable synchronizations between the problem under solution and the candidate problem
+	private ArrayList<Statement> sync;
+	//the synchronized variable names of the candidate problem (separated by space)
+	private String syncVariables;
+	//the statements of the candidate problem's result to merge
+	private ArrayList<Statement> merged;
+	//the solved problem reached by continuing the solve after merging this candidate (null if there is none)
+	private Problem explored;
+
+	/**
+	 * <h1>Candidate</h1>
+	 * The constructor for the Candidate class.
+	 * @param problem : the problem of the rationalized knowledge pool
+	 * @param information : the total information of the merge
+	 * @param informationConcervative : the information of the statements that will be removed
+	 * @param informationNew : the information of the statements that will be added
+	 */
+	public Candidate(Problem problem, float information, float informationConcervative, float informationNew){
+		this.problem = problem;
+		this.information = information;
+		this.informationConcervative = informationConcervative;
+		this.informationNew = informationNew;
+	}
+
+	/**
+	 * <h1>Candidate</h1>
+	 * A constructor for the Candidate class that also keeps the statements detected during scoring.
+	 * @param problem : the problem of the rationalized knowledge pool
+	 * @param information : the total information of the merge
+	 * @param informationConcervative : the information of the statements that will be removed
+	 * @param informationNew : the information of the statements that will be added
+	 * @param common : the common non-trivial statements of the problem under solution
+	 * @param sync : the variable synchronizations between the problem under solution and the candidate problem
+	 * @param syncVariables : the synchronized variable names of the candidate problem (separated by space)
+	 * @param merged : the statements of the candidate problem's result to merge
+	 */
+	public Candidate(Problem problem, float information, float informationConcervative, float informationNew,
+			ArrayList<Statement> common, ArrayList<Statement> sync, String syncVariables, ArrayList<Statement> merged){
+		this(problem, information, informationConcervative, informationNew);
+		this.common = common;
+		this.sync = sync;
+		this.syncVariables = syncVariables;
+		this.merged = merged;
+	}
+
+	/**
+	 * <h1>Candidate</h1>
+	 * A constructor for the Candidate class that copies another candidate and also keeps the solved problem
+	 * that was reached by exploring it (see <code>CandidateSelector.ExploreAll</code>), so that merging the
+	 * candidate can reuse that problem instead of solving it again.
+	 * @param candidate : the explored candidate
+	 * @param explored : the solved problem reached by continuing the solve after merging the candidate
+	 */
+	public Candidate(Candidate candidate, Problem explored){
+		this(candidate.problem, candidate.information, candidate.informationConcervative, candidate.informationNew,
+				candidate.common, candidate.sync, candidate.syncVariables, candidate.merged);
+		this.explored = explored;
+	}
+
+	/**
+	 * <h1>getProblem</h1>
+	 * @return the problem of the rationalized knowledge pool
+	 */
+	public Problem getProblem(){
+		return problem;
+	}
+
+	/**
+	 * <h1>getInformation</h1>
+	 * @return the total information of the merge
+	 */
+	public float getInformation(){
+		return information;
+	}
+
+	/**
+	 * <h1>getInformationConcervative</h1>
+	 * @return the information of the statements that will be removed by the merge
+	 */
+	public float getInformationConcervative(){
+		return informationConcervative;
+	}
+
+	/**
+	 * <h1>getInformationNew</h1>
+	 * @return the information of the statements that will be added by the merge
+	 */
+	public float getInformationNew(){
+		return informationNew;
+	}
+
+	/**
+	 * <h1>hasStatements</h1>
+	 * @return <code>true</code> if the statements detected during scoring are still kept
+	 */
+	public boolean hasStatements(){
+		return common!=null;
+	}
+
+	/**
+	 * <h1>getCommon</h1>
+	 * @return the common non-trivial statements of the problem under solution (<code>null</code> if discarded)
+	 */
+	public ArrayList<Statement> getCommon(){
+		return common;
+	}
+
+	/**
+	 * <h1>getSync</h1>
+	 * @return the variable synchronizations with the problem under solution (<code>null</code> if discarded)
+	 */
+	public ArrayList<Statement> getSync(){
+		return sync;
+	}
+
+	/**
+	 * <h1>getSyncVariables</h1>
+	 * @return the synchronized variable names of the candidate problem (<code>null</code> if discarded)
+	 */
+	public String getSyncVariables(){
+		return syncVariables;
+	}
+
+	/**
+	 * <h1>getMerged</h1>
+	 * @return the statements of the candidate problem's result to merge (<code>null</code> if discarded)
+	 */
+	public ArrayList<Statement> getMerged(){
+		return merged;
+	}
+
+	/**
+	 * <h1>getExplored</h1>
+	 * @return the solved problem reached by continuing the solve after merging this candidate
+	 * (<code>null</code> if the candidate has not been explored to a solution)
+	 */
+	public Problem getExplored(){
+		return explored;
+	}
+
+	/**
+	 * <h1>discardStatements</h1>
+	 * Releases the statements detected during scoring. This is called for candidates that can no longer
+	 * be selected.
+	 */
+	void discardStatements(){
+		common = null;
+		sync = null;
+		syncVariables = null;
+		merged = null;
+	}
+
+	@Override
+	public int compareTo(Candidate c) {
+		if(information!=c.information)
+			return information>c.information?-1:1;
+		if(informationNew!=c.informationNew)
+			return informationNew<c.informationNew?-1:1;
+		return 0;
+	}
+
+	@Override
+	public String toString(){
+		return problem.getName()+" ("+Math.round(information*10)/10.0+" bits)";
+	}
+}
@@ -0,0 +1,464 @@
+package analyser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h1>CandidateSelector</h1>
+ * This interface is used by <code>Problem.solve</code> to select which one of many equally informative
+ * candidates (see <code>Problem.getBestCandidates</code>) is merged. The selector used by a solve is
+ * obtained from its settings (see <code>SolverConfig.getSelector</code>).<br/>
+ * This interface also contains the built-in selection strategies, none of which requires a display.
+ */
+public interface CandidateSelector {
+	/**
+	 * <h1>select</h1>
+	 * Selects one of many equally informative candidates. This may be called by many threads at the
+	 * same time, so implementations that keep state must synchronize it.
+	 * @param p : the problem under solution (its statements are already broken down if needed)
+	 * @param candidates : the equally informative candidates (at least two)
+	 * @param problems : the rationalized knowledge pool the candidates come from
+	 * @param token : the cancellation token of the solve
+	 * @return the candidate to merge (<code>null</code> to merge nothing)
+	 */
+	public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token);
+
+	/**
+	 * <h1>Asking</h1>
+	 * A selector that asks the user (e.g. through a dialog) when the user can be asked, and otherwise
+	 * selects a candidate automatically.
+	 */
+	public interface Asking extends CandidateSelector {
+		/**
+		 * <h1>canAsk</h1>
+		 * @return <code>true</code> if selections made by the current thread are answered by the user
+		 */
+		public boolean canAsk();
+	}
+
+	/**
+	 * <h1>First</h1>
+	 * Selects the first candidate, i.e. the one whose problem comes first in the rationalized knowledge pool.
+	 */
+	public static class First implements CandidateSelector {
+		@Override
+		public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token){
+			return candidates.isEmpty()?null:candidates.get(0);
+		}
+
+		@Override
+		public String toString(){
+			return "First";
+		}
+	}
+
+	/**
+	 * <h1>SmallestImplementation</h1>
+	 * Selects the candidate whose problem has the implementation with the fewest statements
+	 * (besides inputs, outputs and iterators). Between equally small implementations, the first one is selected.
+	 */
+	public static class SmallestImplementation implements CandidateSelector {
+		@Override
+		public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token){
+			Candidate selection = null;
+			int minSize = Integer.MAX_VALUE;
+			for(Candidate c : candidates){
+				int size = 0;
+				for(Statement st : c.getProblem().getResult().statements)
+					if(!st.isInput() && !st.isOutput() && !st.isIterator())
+						size++;
+				if(size<minSize){
+					minSize = size;
+					selection = c;
+				}
+			}
+			return selection;
+		}
+
+		@Override
+		public String toString(){
+			return "Smallest implementation";
+		}
+	}
+
+	/**
+	 * <h1>LowestCost</h1>
+	 * Selects the candidate that is estimated to leave the least work for the following steps, i.e. the one
+	 * whose merged statements contain the fewest non-trivial statements (which will need further solving).
+	 * Between candidates with the same estimation, the one that merges fewer statements is selected.
+	 */
+	public static class LowestCost implements CandidateSelector {
+		@Override
+		public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token){
+			Candidate selection = null;
+			int minNonTrivial = Integer.MAX_VALUE;
+			int minSize = Integer.MAX_VALUE;
+			for(Candidate c : candidates){
+				ArrayList<Statement> merged = c.hasStatements()?c.getMerged():c.getProblem().getResult().statements;
+				int nonTrivial = 0;
+				int size = 0;
+				for(Statement st : merged)
+					if(!st.isInput() && !st.isOutput()){
+						size++;
+						if(!st.isTrivial())
+							nonTrivial++;
+					}
+				if(nonTrivial<minNonTrivial || (nonTrivial==minNonTrivial && size<minSize)){
+					minNonTrivial = nonTrivial;
+					minSize = size;
+					selection = c;
+				}
+			}
+			return selection;
+		}
+
+		@Override
+		public String toString(){
+			return "Lowest cost";
+		}
+	}
+
+	/**
+	 * <h1>Remembered</h1>
+	 * Remembers the answers the user gives through another selector (see <code>Asking</code>) in a decision
+	 * store, so that the same choice is not asked for again. Selections the other selector makes without
+	 * asking the user (e.g. when there is no display) are not remembered. Choices are identified by the names
+	 * of the candidate problems together with the statements of the problem under solution (see
+	 * <code>DecisionStore.getFingerprint</code>).
+	 */
+	public static class Remembered implements CandidateSelector {
+		//the selector used for choices that have not been remembered
+		private CandidateSelector selector;
+		//the stored decisions
+		private DecisionStore store;
+
+		/**
+		 * <h1>Remembered</h1>
+		 * Creates a selector that remembers decisions only in memory.
+		 * @param selector : the selector used for choices that have not been remembered
+		 */
+		public Remembered(CandidateSelector selector){
+			this(selector, new DecisionStore(DecisionStore.DEFAULT_CAPACITY));
+		}
+
+		/**
+		 * <h1>Remembered</h1>
+		 * Creates a selector that remembers decisions in the given store.
+		 * @param selector : the selector used for choices that have not been remembered
+		 * @param store : the store of decisions (it may be shared with other selectors)
+		 */
+		public Remembered(CandidateSelector selector, DecisionStore store){
+			this.selector = selector;
+			this.store = store;
+		}
+
+		/**
+		 * <h1>getStore</h1>
+		 * @return the store of decisions
+		 */
+		public DecisionStore getStore(){
+			return store;
+		}
+
+		@Override
+		public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token){
+			String fingerprint = DecisionStore.getFingerprint(p, candidates);
+			DecisionStore.Decision decision = store.get(fingerprint);
+			if(decision!=null)
+				for(Candidate c : candidates)
+					if(c.getProblem().getName().equals(decision.getSelected())){
+						Problem.log("Remembered selection of <i>"+decision.getSelected()+"</i>", 2);
+						return c;
+					}
+			boolean asked = selector instanceof Asking && ((Asking)selector).canAsk();
+			Candidate selection = selector.select(p, candidates, problems, token);
+			if(selection!=null && asked)
+				store.put(new DecisionStore.Decision(fingerprint, DecisionStore.getCandidateNames(candidates), selection.getProblem().getName()));
+			return selection;
+		}
+
+		@Override
+		public String toString(){
+			return "Remembered ("+selector+")";
+		}
+	}
+
+	/**
+	 * <h1>Replayed</h1>
+	 * Answers choices as they were answered during a recorded solve (see <code>SolveTrace</code>). Choices are
+	 * identified by their fingerprint (see <code>DecisionStore.getFingerprint</code>) and, if the same choice
+	 * was made many times, its recorded answers are given in the order they were recorded (and the last one is
+	 * given again if it is made more times). Choices that were not recorded are answered by another selector.
+	 */
+	public static class Replayed implements CandidateSelector {
+		//the selector used for choices that were not recorded
+		private CandidateSelector selector;
+		//the recorded answers of each choice that have not been given yet
+		private HashMap<String, LinkedList<String>> answers = new HashMap<String, LinkedList<String>>();
+		//the number of choices that were not recorded
+		private int unrecorded = 0;
+
+		/**
+		 * <h1>Replayed</h1>
+		 * @param trace : the recorded solve
+		 * @param selector : the selector used for choices that were not recorded
+		 */
+		public Replayed(SolveTrace trace, CandidateSelector selector){
+			this.selector = selector;
+			for(DecisionStore.Decision decision : trace.getChoices()){
+				LinkedList<String> choiceAnswers = answers.get(decision.getFingerprint());
+				if(choiceAnswers==null){
+					choiceAnswers = new LinkedList<String>();
+					answers.put(decision.getFingerprint(), choiceAnswers);
+				}
+				choiceAnswers.add(decision.getSelected());
+			}
+		}
+
+		/**
+		 * <h1>getUnrecorded</h1>
+		 * @return the number of choices that were answered by the other selector, since they were not recorded
+		 */
+		synchronized public int getUnrecorded(){
+			return unrecorded;
+		}
+
+		@Override
+		public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token){
+			String answer = null;
+			synchronized(this){
+				LinkedList<String> choiceAnswers = answers.get(DecisionStore.getFingerprint(p, candidates));
+				if(choiceAnswers!=null && !choiceAnswers.isEmpty())
+					answer = choiceAnswers.size()==1?choiceAnswers.getFirst():choiceAnswers.removeFirst();
+			}
+			if(answer!=null){
+				if(answer.isEmpty())
+					return null;
+				for(Candidate c : candidates)
+					if(c.getProblem().getName().equals(answer))
+						return c;
+			}
+			synchronized(this){
+				unrecorded++;
+			}
+			Problem.log("The trace does not record this selection", 2);
+			return selector.select(p, candidates, problems, token);
+		}
+
+		@Override
+		public String toString(){
+			return "Replayed ("+selector+")";
+		}
+	}
+
+	/**
+	 * <h1>ExploreAll</h1>
+	 * Merges each candidate into a copy of the problem under solution and continues solving each copy
+	 * (branch) for a number of steps, resolving further ties by selecting the first candidate. Branches
+	 * can be explored in parallel by a number of threads. Finished branches are ranked so that solved
+	 * ones come first, then those with fewer non-trivial statements, then those with fewer statements and
+	 * then those with more accumulated information, and the candidate of the best branch is selected. If
+	 * the best branch is solved, the selected candidate also holds its solution (see
+	 * <code>Candidate.getExplored</code>), which the solve then reuses instead of repeating its steps.<br/>
+	 * Optionally, the remaining branches are cancelled as soon as a branch is solved. Since merges can
+	 * both add and remove statements, a solved branch cannot be proven smaller than a branch that has not
+	 * finished, so this trades the ranking between solved branches for speed. Cancelled branches are still
+	 * ranked by the partial solution they reached.<br/>
+	 * Nothing is logged while exploring branches.
+	 */
+	public static class ExploreAll implements CandidateSelector {
+		//the maximum number of steps performed after merging each candidate (non-positive to use the maximum number of iterations)
+		private int depth;
+		//the number of threads that explore branches
+		private int threads;
+		//whether the remaining branches are cancelled as soon as a branch is solved
+		private boolean stopAtFirstSolved;
+
+		/**
+		 * <h1>Branch</h1>
+		 * The outcome of exploring a single candidate.
+		 */
+		private static class Branch implements Comparable<Branch> {
+			private Candidate candidate;
+			//the problem reached by the exploration
+			private Problem problem;
+			private boolean solved;
+			private int nonTrivial;
+			private int size;
+			private float information;
+
+			public Branch(Candidate candidate, Problem problem, float information){
+				this.candidate = candidate;
+				this.problem = problem;
+				this.information = information;
+				solved = problem.isSolved();
+				for(Statement st : problem.statements)
+					if(!st.isInput() && !st.isOutput()){
+						size++;
+						if(!st.isTrivial())
+							nonTrivial++;
+					}
+			}
+
+			@Override
+			public int compareTo(Branch b){
+				if(solved!=b.solved)
+					return solved?-1:1;
+				if(nonTrivial!=b.nonTrivial)
+					return nonTrivial<b.nonTrivial?-1:1;
+				if(size!=b.size)
+					return size<b.size?-1:1;
+				if(information!=b.information)
+					return information>b.information?-1:1;
+				return 0;
+			}
+		}
+
+		/**
+		 * <h1>ExploreAll</h1>
+		 * Creates a selector that explores each candidate in a single thread for the maximum number
+		 * of iterations of the solve.
+		 */
+		public ExploreAll(){
+			this(0, 1, false);
+		}
+
+		/**
+		 * <h1>ExploreAll</h1>
+		 * Creates a selector that explores each candidate in a single thread for a given number of steps.
+		 * @param depth : the maximum number of steps performed after merging each candidate
+		 */
+		public ExploreAll(int depth){
+			this(depth, 1, false);
+		}
+
+		/**
+		 * <h1>ExploreAll</h1>
+		 * Creates a selector that explores candidates speculatively in parallel.
+		 * @param depth : the maximum number of steps performed after merging each candidate
+		 * (non-positive to use the maximum number of iterations of the solve)
+		 * @param threads : the number of threads that explore branches
+		 * @param stopAtFirstSolved : whether the remaining branches are cancelled as soon as a branch is solved
+		 */
+		public ExploreAll(int depth, int threads, boolean stopAtFirstSolved){
+			this.depth = depth;
+			this.threads = Math.max(1, threads);
+			this.stopAtFirstSolved = stopAtFirstSolved;
+		}
+
+		@Override
+		public Candidate select(final Problem p, final ArrayList<Candidate> candidates, final ArrayList<Problem> problems, CancellationToken token){
+			SolveContext context = SolveContext.getCurrent();
+			final SolverConfig config = p.getConfig();
+			final int steps = depth>0?depth:config.getMaxIterations();
+			//branches are cancelled together, without cancelling the solve
+			final CancellationToken exploration = new CancellationToken(token);
+			final Branch[] branches = new Branch[candidates.size()];
+			final AtomicInteger nextBranch = new AtomicInteger(0);
+			Runnable explore = new Runnable(){
+				@Override
+				public void run(){
+					//explore with a quiet context, so that the log of the solve is not affected
+					SolveContext quiet = new SolveContext(config, exploration, false);
+					quiet.setLogLevel(-2);
+					quiet.bind();
+					for(int j=nextBranch.getAndIncrement();j<candidates.size() && !exploration.isCancelled();j=nextBranch.getAndIncrement()){
+						branches[j] = explore(p, candidates.get(j), problems, config, steps, exploration);
+						if(stopAtFirstSolved && branches[j].solved)
+							exploration.cancel();
+					}
+				}
+			};
+			int workers = Math.min(threads, candidates.size());
+			if(workers<=1){
+				SolveStats stats = SolveStats.getCurrent();
+				try{
+					explore.run();
+				}
+				finally{
+					if(context!=null)
+						context.bind();
+					else
+						SolveContext.unbind();
+					//binding the quiet context also replaced the statistics of the solve
+					SolveStats.bind(stats);
+				}
+			}
+			else{
+				Thread [] th = new Thread[workers];
+				for(int i=0;i<workers;i++)
+					th[i] = new Thread(explore);
+				for(int i=0;i<workers;i++)
+					th[i].start();
+				for(int i=0;i<workers;)
+					try{
+						th[i].join();
+						i++;
+					}
+					catch(InterruptedException e){
+						exploration.cancel();
+					}
+			}
+			Branch best = null;
+			int explored = 0;
+			for(Branch branch : branches)
+				if(branch!=null){
+					explored++;
+					if(best==null || branch.compareTo(best)<0)
+						best = branch;
+				}
+			if(best==null)
+				return candidates.get(0);
+			Problem.log("Explored "+explored+" of "+candidates.size()+" equally informative problems and selected <i>"+best.candidate.getProblem().getName()+"</i>"+(best.solved?" (solved)":""), 2);
+			//a solved branch is handed over, so that the solve does not repeat its steps
+			if(best.solved)
+				return new Candidate(best.candidate, best.problem);
+			return best.candidate;
+		}
+
+		/**
+		 * <h1>explore</h1>
+		 * Merges a candidate into a copy of the problem under solution and continues solving the copy.
+		 * @param p : the problem under solution
+		 * @param c : the candidate to merge
+		 * @param problems : the rationalized knowledge pool
+		 * @param config : the solver configuration
+		 * @param steps : the maximum number of steps performed after the merge
+		 * @param token : a cancellation token that stops the exploration
+		 * @return the outcome of exploring the candidate
+		 */
+		private static Branch explore(Problem p, Candidate c, ArrayList<Problem> problems, SolverConfig config, int steps, CancellationToken token){
+			Problem current = new Problem(p.getName(), config);
+			current.merge(p, c, "");
+			float information = c.getInformation();
+			for(int i=0;i<steps && !current.isSolved() && !token.isCancelled();i++){
+				if(config.isBreakdownStatements())
+					current.expand("", config.isBreakdownAlsoCode());
+				Problem next = new Problem(current.getName(), config);
+				ArrayList<Candidate> best = Problem.getBestCandidates(next.scoreCandidates(current, problems, config.getImportanceBalance(), 1, token, true));
+				if(best.isEmpty() || token.isCancelled())
+					break;
+				next.merge(current, best.get(0), "");
+				information += best.get(0).getInformation();
+				current = next;
+			}
+			return new Branch(c, current, information);
+		}
+
+		/**
+		 * <h1>isDeterministic</h1>
+		 * @return <code>false</code> if branches are explored by many threads and cancelled as soon as one of them
+		 * is solved, since the selected candidate then depends on which branch finishes first
+		 */
+		public boolean isDeterministic(){
+			return threads==1 || !stopAtFirstSolved;
+		}
+
+		@Override
+		public String toString(){
+			return "Explore all"+(threads>1?" ("+threads+" threads)":"")+(stopAtFirstSolved?" until solved":"");
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package analyser;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * <h1>DecisionStore</h1>
+ * This class stores selections between equally informative candidates, so that the same choice
+ * does not need to be made again (see <code>CandidateSelector.Remembered</code>). A choice is
+ * identified by a fingerprint of the names of the candidate problems and of the statements of the
+ * problem under solution (see <code>getFingerprint</code>).<br/>
+ * The store holds at most a fixed number of decisions. When it is full, the least recently used
+ * decision is evicted. Decisions can be saved to and loaded from an XML file.
+ */
+public class DecisionStore {
+	//the default maximum number of stored decisions
+	public static final int DEFAULT_CAPACITY = 1000;
+	//the maximum number of stored decisions
+	private int capacity;
+	//the stored decisions for each fingerprint, from the least to the most recently used
+	private LinkedHashMap<String, Decision> decisions;
+
+	/**
+	 * <h1>Decision</h1>
+	 * A stored selection between equally informative candidates.
+	 */
+	public static class Decision {
+		private String fingerprint;
+		private String[] candidates;
+		private String selected;
+
+		/**
+		 * <h1>Decision</h1>
+		 * The constructor for the Decision class.
+		 * @param fingerprint : the fingerprint of the choice
+		 * @param candidates : the sorted names of the candidate problems
+		 * @param selected : the name of the selected problem
+		 */
+		public Decision(String fingerprint, String[] candidates, String selected){
+			this.fingerprint = fingerprint;
+			this.candidates = candidates;
+			this.selected = selected;
+		}
+
+		/**
+		 * <h1>getFingerprint</h1>
+		 * @return the fingerprint of the choice
+		 */
+		public String getFingerprint(){
+			return fingerprint;
+		}
+
+		/**
+		 * <h1>getCandidates</h1>
+		 * @return a copy of the sorted names of the candidate problems
+		 */
+		public String[] getCandidates(){
+			return candidates.clone();
+		}
+
+		/**
+		 * <h1>getSelected</h1>
+		 * @return the name of the selected problem
+		 */
+		public String getSelected(){
+			return selected;
+		}
+
+		@Override
+		public String toString(){
+			return selected+" out of "+Arrays.toString(candidates);
+		}
+	}
+
+	/**
+	 * <h1>DecisionStore</h1>
+	 * The constructor for the DecisionStore class. It creates an empty store.
+	 * @param capacity : the maximum number of stored decisions
+	 */
+	public DecisionStore(int capacity){
+		this.capacity = Math.max(1, capacity);
+		decisions = new LinkedHashMap<String, Decision>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest){
+				return size()>DecisionStore.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * <h1>getCandidateNames</h1>
+	 * @param candidates : a list of candidates
+	 * @return the sorted names of the candidates' problems
+	 */
+	public static String[] getCandidateNames(ArrayList<Candidate> candidates){
+		String[] names = new String[candidates.size()];
+		for(int i=0;i<names.length;i++)
+			names[i] = candidates.get(i).getProblem().getName();
+		Arrays.sort(names);
+		return names;
+	}
+
+	/**
+	 * <h1>getFingerprint</h1>
+	 * Generates the fingerprint of a choice between equally informative candidates. The fingerprint
+	 * depends on the sorted names of the candidate problems and on the structural hash of the problem
+	 * under solution (see <code>Problem.getStructuralHash</code>).
+	 * @param p : the problem under solution
+	 * @param candidates : the equally informative candidates
+	 * @return the fingerprint as a hexadecimal String
+	 */
+	public static String getFingerprint(Problem p, ArrayList<Candidate> candidates){
+		String key = p.getStructuralHash();
+		for(String name : getCandidateNames(candidates))
+			key += "\n"+name;
+		try{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			String hash = "";
+			for(byte b : digest.digest(key.getBytes("UTF-8")))
+				hash += String.format("%02x", b);
+			return hash;
+		}
+		catch(Exception e){
+			return Integer.toHexString(key.hashCode());
+		}
+	}
+
+	/**
+	 * <h1>get</h1>
+	 * @param fingerprint : the fingerprint of a choice
+	 * @return the stored decision for the choice (<code>null</code> if there is none)
+	 */
+	synchronized public Decision get(String fingerprint){
+		return decisions.get(fingerprint);
+	}
+
+	/**
+	 * <h1>put</h1>
+	 * Stores a decision, replacing any previous decision for the same choice. If the store is full,
+	 * the least recently used decision is evicted.
+	 * @param decision : the decision to store
+	 */
+	synchronized public void put(Decision decision){
+		decisions.put(decision.getFingerprint(), decision);
+	}
+
+	/**
+	 * <h1>remove</h1>
+	 * @param fingerprint : the fingerprint of the choice whose decision should be forgotten
+	 */
+	synchronized public void remove(String fingerprint){
+		decisions.remove(fingerprint);
+	}
+
+	/**
+	 * <h1>clear</h1>
+	 * Forgets all stored decisions.
+	 */
+	synchronized public void clear(){
+		decisions.clear();
+	}
+
+	/**
+	 * <h1>getDecisions</h1>
+	 * @return all stored decisions, from the least to the most recently used
+	 */
+	synchronized public ArrayList<Decision> getDecisions(){
+		return new ArrayList<Decision>(decisions.values());
+	}
+
+	/**
+	 * <h1>getCapacity</h1>
+	 * @return the maximum number of stored decisions
+	 */
+	synchronized public int getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * <h1>save</h1>
+	 * Saves the stored decisions (in the order of their use) to a designated file. The file has an XML structure.
+	 * @param path : the path of the file in which the decisions are saved
+	 */
+	synchronized public void save(String path){
+		try{
+			//create the XML documents
+			DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+			DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+			Document doc = docBuilder.newDocument();
+			Element rootElement = doc.createElement("root");
+			doc.appendChild(rootElement);
+			//create XML nodes for decisions
+			for(Decision decision : decisions.values()){
+				Element dec = doc.createElement("decision");
+				Element fingerprint = doc.createElement("fingerprint");
+				fingerprint.appendChild(doc.createTextNode(decision.fingerprint));
+				dec.appendChild(fingerprint);
+				for(String name : decision.candidates){
+					Element candidate = doc.createElement("candidate");
+					candidate.appendChild(doc.createTextNode(name));
+					dec.appendChild(candidate);
+				}
+				Element selected = doc.createElement("selected");
+				selected.appendChild(doc.createTextNode(decision.selected));
+				dec.appendChild(selected);
+				rootElement.appendChild(dec);
+			}
+			//create file
+			TransformerFactory transformerFactory = TransformerFactory.newInstance();
+			Transformer transformer = transformerFactory.newTransformer();
+			DOMSource source = new DOMSource(doc);
+			StreamResult result = new StreamResult(new File(path));
+			transformer.transform(source, result);
+		}
+		catch(Exception e){
+			//error message on fail
+			System.err.println("Could not save file '"+path+"':"+e.toString());
+		}
+	}
+
+	/**
+	 * <h1>load</h1>
+	 * Loads decisions from a designated XML file, replacing all stored decisions. If the file
+	 * holds more decisions than the capacity of the store, the least recently used ones are evicted.
+	 * @param path : the path of the file from which the decisions will be loaded
+	 */
+	synchronized public void load(String path){
+		try{
+			//load XML file
+			File fXmlFile = new File(path);
+			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+			Document doc = dBuilder.parse(fXmlFile);
+			doc.getDocumentElement().normalize();
+			decisions.clear();
+			NodeList decisionList = doc.getElementsByTagName("decision");
+			for(int i=0;i<decisionList.getLength();i++){
+				Element dec = (Element)decisionList.item(i);
+				NodeList candidateList = dec.getElementsByTagName("candidate");
+				String[] candidates = new String[candidateList.getLength()];
+				for(int j=0;j<candidates.length;j++)
+					candidates[j] = candidateList.item(j).getTextContent();
+				put(new Decision(dec.getElementsByTagName("fingerprint").item(0).getTextContent(), candidates,
+						dec.getElementsByTagName("selected").item(0).getTextContent()));
+			}
+		}
+		catch(Exception e){
+			//error message on fail
+			System.out.println("Could not load file '"+path+"': "+e.toString());
+		}
+	}
+}
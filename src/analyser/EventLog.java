@@ -0,0 +1,366 @@
+package analyser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <h1>EventLog</h1>
+ * This class holds the log record of solves as a list of typed events (see <code>Event</code>), instead
+ * of a single HTML String that would need to be copied on every message. Events are appended without
+ * locking by any number of threads into fixed-size chunks, and are only rendered in HTML form when the
+ * log is read (see <code>getHtml</code>).<br/>
+ * The number of events kept in memory is capped. When the cap is exceeded, the oldest chunks are rendered
+ * and appended to a temporary file, from which they are read back only when the whole log is requested
+ * (see <code>getHtml</code>). Logs that are shown while they grow should be read with <code>getRecentHtml</code>.
+ */
+public class EventLog {
+	//the default maximum number of events kept in memory
+	public static final int DEFAULT_MAX_EVENTS = 16384;
+	//the number of events of each chunk
+	private static final int CHUNK_SIZE = 256;
+	//the maximum number of chunks kept in memory
+	private final int maxChunks;
+	//the events since the log was last cleared
+	volatile private Buffer buffer = new Buffer();
+	//increases on every change of the log (it is not reset by clear)
+	private final AtomicLong version = new AtomicLong(0);
+
+	/**
+	 * <h1>Event</h1>
+	 * A single message of the log record together with its importance, the time it was logged and the
+	 * name of the thread that logged it.
+	 */
+	public static class Event {
+		private final String message;
+		private final int level;
+		private final long time;
+		private final String thread;
+
+		Event(String message, int level){
+			this.message = message;
+			this.level = level;
+			this.time = System.currentTimeMillis();
+			this.thread = Thread.currentThread().getName();
+		}
+
+		/**
+		 * <h1>getMessage</h1>
+		 * @return the message (it may contain HTML tags)
+		 */
+		public String getMessage(){
+			return message;
+		}
+
+		/**
+		 * <h1>getLevel</h1>
+		 * @return the importance of the message (0=most important, 3=least important, -1 for raw HTML)
+		 */
+		public int getLevel(){
+			return level;
+		}
+
+		/**
+		 * <h1>getTime</h1>
+		 * @return the time the message was logged (as given by <code>System.currentTimeMillis</code>)
+		 */
+		public long getTime(){
+			return time;
+		}
+
+		/**
+		 * <h1>getThread</h1>
+		 * @return the name of the thread that logged the message
+		 */
+		public String getThread(){
+			return thread;
+		}
+
+		/**
+		 * <h1>toHtml</h1>
+		 * @return the message formatted in HTML form according to its importance
+		 */
+		public String toHtml(){
+			if(level==0)
+				return "<br/><font color=\"red\"><b>"+message+"</b></font><br/>";
+			else if(level==1)
+				return "<font color=\"blue\"><b>"+message+"</b></font><br/>";
+			else if(level==2)
+				return "&nbsp&nbsp&nbsp<b>"+message.replace("<br/>", "<br/>&nbsp&nbsp&nbsp ")+"</b><br/>";
+			else if(level>0)
+				return "&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp "+message.replace("<br/>", "<br/>&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp ")+"<br/>";
+			else
+				return message;
+		}
+	}
+
+	/**
+	 * <h1>Chunk</h1>
+	 * A fixed number of consecutive events. Each slot is written exactly once by the thread that reserved it.
+	 */
+	private static class Chunk {
+		private final AtomicReferenceArray<Event> events = new AtomicReferenceArray<Event>(CHUNK_SIZE);
+		private final AtomicInteger written = new AtomicInteger(0);
+	}
+
+	/**
+	 * <h1>Buffer</h1>
+	 * The events logged since the log was last cleared. Chunks are kept by their position, so that the
+	 * oldest ones can be removed when they are spilled to a file.
+	 */
+	private static class Buffer {
+		//the number of reserved event slots
+		private final AtomicInteger reserved = new AtomicInteger(0);
+		//the chunks kept in memory for their position
+		private final ConcurrentSkipListMap<Integer, Chunk> chunks = new ConcurrentSkipListMap<Integer, Chunk>();
+		//the file the spilled chunks were appended to (null if nothing has been spilled)
+		private File spillFile = null;
+		//the number of bytes of the spill file that hold completely written chunks
+		private long spilledBytes = 0;
+		//the number of spilled chunks and the number of them that could not be written
+		private int spilledChunks = 0;
+		private int lostChunks = 0;
+	}
+
+	/**
+	 * <h1>EventLog</h1>
+	 * Creates an empty log that keeps at most <code>DEFAULT_MAX_EVENTS</code> events in memory.
+	 */
+	public EventLog(){
+		this(DEFAULT_MAX_EVENTS);
+	}
+
+	/**
+	 * <h1>EventLog</h1>
+	 * Creates an empty log.
+	 * @param maxEvents : the maximum number of events kept in memory (older events are spilled to a file)
+	 */
+	public EventLog(int maxEvents){
+		maxChunks = Math.max(1, maxEvents/CHUNK_SIZE);
+	}
+
+	/**
+	 * <h1>log</h1>
+	 * Adds a message to the log. This can be called by many threads at once without locking (unless the
+	 * call completes a chunk while more chunks than allowed are kept in memory, in which case the oldest
+	 * chunks are spilled to a file).
+	 * @param message : the message
+	 * @param level : the importance of the message (0=most important, 3=least important, -1 for raw HTML)
+	 */
+	public void log(String message, int level){
+		Buffer buffer = this.buffer;
+		int position = buffer.reserved.getAndIncrement();
+		Integer index = position/CHUNK_SIZE;
+		Chunk chunk = buffer.chunks.get(index);
+		if(chunk==null){
+			Chunk created = new Chunk();
+			chunk = buffer.chunks.putIfAbsent(index, created);
+			if(chunk==null)
+				chunk = created;
+		}
+		chunk.events.set(position%CHUNK_SIZE, new Event(message, level));
+		version.incrementAndGet();
+		if(chunk.written.incrementAndGet()==CHUNK_SIZE && buffer.chunks.size()>maxChunks)
+			spill(buffer);
+	}
+
+	/**
+	 * <h1>clear</h1>
+	 * Removes all events from the log (messages logged concurrently with clearing may also be removed).
+	 */
+	public void clear(){
+		Buffer previous = buffer;
+		buffer = new Buffer();
+		version.incrementAndGet();
+		synchronized(previous){
+			if(previous.spillFile!=null)
+				previous.spillFile.delete();
+		}
+	}
+
+	/**
+	 * <h1>getVersion</h1>
+	 * @return a number that increases whenever the log changes (to detect changes without reading the log)
+	 */
+	public long getVersion(){
+		return version.get();
+	}
+
+	/**
+	 * <h1>getEvents</h1>
+	 * @return the events kept in memory, in the order they were logged (spilled events are not included
+	 * and events that are still being written by other threads are not included yet)
+	 */
+	public ArrayList<Event> getEvents(){
+		Buffer buffer = this.buffer;
+		ArrayList<Event> events = new ArrayList<Event>();
+		synchronized(buffer){
+			collect(buffer, events);
+		}
+		return events;
+	}
+
+	/**
+	 * <h1>getHtml</h1>
+	 * Renders the whole log (including spilled events, which are read back from the spill file) in HTML form.
+	 * The log is only locked while the events kept in memory are collected, so that threads which spill
+	 * events are not blocked while the spill file is read and the log is rendered. This takes time proportional
+	 * to the size of the whole log, so logs that are shown while they grow should use <code>getRecentHtml</code>.
+	 * @return the log in HTML form
+	 */
+	public String getHtml(){
+		Buffer buffer = this.buffer;
+		ArrayList<Event> events = new ArrayList<Event>();
+		File spillFile;
+		long spilledBytes;
+		int lostChunks;
+		synchronized(buffer){
+			collect(buffer, events);
+			spillFile = buffer.spillFile;
+			spilledBytes = buffer.spilledBytes;
+			lostChunks = buffer.lostChunks;
+		}
+		StringBuilder html = new StringBuilder("<html>");
+		if(lostChunks>0)
+			html.append(new Event((lostChunks*CHUNK_SIZE)+" earlier log messages could not be kept", 0).toHtml());
+		if(spillFile!=null)
+			html.append(read(spillFile, spilledBytes));
+		for(Event event : events)
+			html.append(event.toHtml());
+		html.append("</html>");
+		return html.toString();
+	}
+
+	/**
+	 * <h1>getRecentHtml</h1>
+	 * Renders only the most recent events of the log in HTML form, preceded by the number of earlier events
+	 * that are not shown. This neither locks the log nor reads the spill file and takes time proportional to
+	 * the given number of events (regardless of the size of the log), so that it can be called whenever the
+	 * log changes.
+	 * @param maxEvents : the maximum number of events to render
+	 * @return the most recent events of the log in HTML form
+	 */
+	public String getRecentHtml(int maxEvents){
+		Buffer buffer = this.buffer;
+		ArrayList<Event> events = new ArrayList<Event>();
+		int first = 0;
+		Map.Entry<Integer, Chunk> last = buffer.chunks.lastEntry();
+		if(last!=null)
+			//one more chunk than needed is collected, as the last chunk may not be full
+			for(Map.Entry<Integer, Chunk> entry : buffer.chunks.tailMap(last.getKey()-(maxEvents+CHUNK_SIZE-1)/CHUNK_SIZE).entrySet()){
+				if(events.isEmpty())
+					first = entry.getKey()*CHUNK_SIZE;
+				if(!collect(entry.getValue(), events))
+					break;
+			}
+		int skipped = Math.max(0, events.size()-maxEvents);
+		StringBuilder html = new StringBuilder("<html>");
+		if(first+skipped>0)
+			html.append(new Event((first+skipped)+" earlier log messages are not shown", 0).toHtml());
+		for(int i=skipped;i<events.size();i++)
+			html.append(events.get(i).toHtml());
+		html.append("</html>");
+		return html.toString();
+	}
+
+	/**
+	 * <h1>collect</h1>
+	 * Adds the events of the in-memory chunks of the given buffer to the given list, in the order they were
+	 * logged, stopping at the first event that has been reserved but not written yet.
+	 */
+	private static void collect(Buffer buffer, ArrayList<Event> events){
+		for(Chunk chunk : buffer.chunks.values())
+			if(!collect(chunk, events))
+				return;
+	}
+
+	/**
+	 * <h1>collect</h1>
+	 * Adds the events of the given chunk to the given list, stopping at the first event that has been
+	 * reserved but not written yet.
+	 * @return <code>true</code> if all the events of the chunk have been written
+	 */
+	private static boolean collect(Chunk chunk, ArrayList<Event> events){
+		for(int i=0;i<CHUNK_SIZE;i++){
+			Event event = chunk.events.get(i);
+			if(event==null)
+				return false;
+			events.add(event);
+		}
+		return true;
+	}
+
+	/**
+	 * <h1>spill</h1>
+	 * Appends the oldest completed chunks of the given buffer to its spill file and removes them from
+	 * memory, until no more than the maximum number of chunks are kept in memory.
+	 */
+	private void spill(Buffer buffer){
+		synchronized(buffer){
+			while(buffer.chunks.size()>maxChunks){
+				Map.Entry<Integer, Chunk> oldest = buffer.chunks.firstEntry();
+				if(oldest.getValue().written.get()<CHUNK_SIZE)
+					break;
+				StringBuilder html = new StringBuilder();
+				for(int i=0;i<CHUNK_SIZE;i++)
+					html.append(oldest.getValue().events.get(i).toHtml());
+				try{
+					if(buffer.spillFile==null){
+						buffer.spillFile = File.createTempFile("log", ".html");
+						buffer.spillFile.deleteOnExit();
+					}
+					FileOutputStream stream = new FileOutputStream(buffer.spillFile, true);
+					try{
+						stream.write(html.toString().getBytes("UTF-8"));
+					}
+					finally{
+						stream.close();
+					}
+					buffer.spilledBytes = buffer.spillFile.length();
+					buffer.spilledChunks++;
+				}
+				catch(IOException e){
+					buffer.lostChunks++;
+				}
+				buffer.chunks.remove(oldest.getKey());
+			}
+		}
+	}
+
+	/**
+	 * <h1>read</h1>
+	 * Reads the spilled events of a spill file, which may be appended to while it is read.
+	 * @param file : the spill file
+	 * @param length : the number of bytes of the file that hold completely written chunks
+	 * @return the spilled events in HTML form
+	 */
+	private static String read(File file, long length){
+		try{
+			FileInputStream stream = new FileInputStream(file);
+			try{
+				byte[] bytes = new byte[(int)length];
+				int position = 0;
+				while(position<bytes.length){
+					int read = stream.read(bytes, position, bytes.length-position);
+					if(read<0)
+						break;
+					position += read;
+				}
+				return new String(bytes, 0, position, "UTF-8");
+			}
+			finally{
+				stream.close();
+			}
+		}
+		catch(IOException e){
+			return new Event("Could not read earlier log messages: "+e.toString(), 0).toHtml();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package analyser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <h1>IterationMemo</h1>
+ * This class records the outcome of single solution steps (see <code>Problem.solve</code>), so that a
+ * step that has already been performed against the same rationalized knowledge pool with the same
+ * settings does not need to be performed again. A memo can be shared by concurrent solves through
+ * their solve contexts (see <code>SolveContext.getMemo</code>).<br/>
+ * Steps are identified by the rationalized knowledge pool (the same list object), by the settings (see
+ * <code>SolverConfig.getHash</code>) and by the state of the problem before the step (see
+ * <code>getStateKey</code>). The memo holds at most a fixed number of steps. When it is full, the least
+ * recently used step is evicted.
+ */
+public class IterationMemo {
+	//the default maximum number of recorded steps
+	public static final int DEFAULT_CAPACITY = 1000;
+	//the maximum number of recorded steps
+	private int capacity;
+	//the recorded steps, from the least to the most recently used
+	private LinkedHashMap<Key, Step> steps;
+	//the number of steps that were found in the memo
+	private int hits = 0;
+
+	/**
+	 * <h1>Key</h1>
+	 * Identifies a step by its rationalized knowledge pool (compared by reference), its settings and
+	 * the state of the problem before the step.
+	 */
+	private static class Key {
+		private ArrayList<Problem> problems;
+		private String config;
+		private String state;
+
+		public Key(ArrayList<Problem> problems, String config, String state){
+			this.problems = problems;
+			this.config = config;
+			this.state = state;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key))
+				return false;
+			Key key = (Key)o;
+			return problems==key.problems && config.equals(key.config) && state.equals(key.state);
+		}
+
+		@Override
+		public int hashCode(){
+			return (System.identityHashCode(problems)*31+config.hashCode())*31+state.hashCode();
+		}
+	}
+
+	/**
+	 * <h1>Step</h1>
+	 * The outcome of a step, i.e. the statements of the resulting problem and the problems merged into it
+	 * during the step.
+	 */
+	private static class Step {
+		private ArrayList<String> variables = new ArrayList<String>();
+		private ArrayList<String> expressions = new ArrayList<String>();
+		private ArrayList<Problem> merged;
+		//whether the merged problems follow the ones of the problem before the step
+		private boolean relative;
+	}
+
+	/**
+	 * <h1>IterationMemo</h1>
+	 * The constructor for the IterationMemo class. It creates an empty memo.
+	 * @param capacity : the maximum number of recorded steps
+	 */
+	public IterationMemo(int capacity){
+		this.capacity = Math.max(1, capacity);
+		steps = new LinkedHashMap<Key, Step>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Step> eldest){
+				return size()>IterationMemo.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * <h1>getStateKey</h1>
+	 * Generates a String that identifies the state of a problem during solving. Contrary to
+	 * <code>Problem.getStructuralHash</code>, it depends on the order of statements, since this can also
+	 * affect the outcome of a step. It does not depend on the name of the problem (which steps only use
+	 * in the log), so that problems with different names but the same statements share their steps.
+	 * @param p : a problem
+	 * @return the state key
+	 */
+	public static String getStateKey(Problem p){
+		StringBuilder key = new StringBuilder();
+		key.append(p.getFunctionMemberVariable());
+		for(Statement s : p.statements)
+			key.append('\n').append(s.getVariables()).append('\t').append(s.getExpression());
+		return key.toString();
+	}
+
+	/**
+	 * <h1>get</h1>
+	 * Retrieves the outcome of a recorded step.
+	 * @param problems : the rationalized knowledge pool of the step
+	 * @param configHash : the hash of the settings of the step (see <code>SolverConfig.getHash</code>)
+	 * @param state : the problem before the step
+	 * @param config : the settings used by the returned problem
+	 * @return a new problem that holds the outcome of the step (<code>null</code> if the step has not been recorded)
+	 */
+	synchronized public Problem get(ArrayList<Problem> problems, String configHash, Problem state, SolverConfig config){
+		Step step = steps.get(new Key(problems, configHash, getStateKey(state)));
+		if(step==null)
+			return null;
+		hits++;
+		Problem next = new Problem(state.getName(), config);
+		for(int i=0;i<step.variables.size();i++)
+			next.statements.add(new Statement(step.variables.get(i), step.expressions.get(i), config));
+		ArrayList<Problem> merged = step.relative?state.getMergedProblems():new ArrayList<Problem>();
+		merged.addAll(step.merged);
+		next.setMergedProblems(merged);
+		return next;
+	}
+
+	/**
+	 * <h1>put</h1>
+	 * Records the outcome of a step. If the memo is full, the least recently used step is evicted.
+	 * @param problems : the rationalized knowledge pool of the step
+	 * @param configHash : the hash of the settings of the step (see <code>SolverConfig.getHash</code>)
+	 * @param state : the problem before the step
+	 * @param next : the problem after the step
+	 */
+	synchronized public void put(ArrayList<Problem> problems, String configHash, Problem state, Problem next){
+		Step step = new Step();
+		for(Statement s : next.statements){
+			step.variables.add(s.getVariables());
+			step.expressions.add(s.getExpression());
+		}
+		//only the problems merged during the step are recorded, since the state may be reached in other ways
+		ArrayList<Problem> before = state.getMergedProblems();
+		ArrayList<Problem> after = next.getMergedProblems();
+		step.relative = after.size()>=before.size() && after.subList(0, before.size()).equals(before);
+		step.merged = step.relative?new ArrayList<Problem>(after.subList(before.size(), after.size())):after;
+		steps.put(new Key(problems, configHash, getStateKey(state)), step);
+	}
+
+	/**
+	 * <h1>getHits</h1>
+	 * @return the number of steps that were found in the memo
+	 */
+	synchronized public int getHits(){
+		return hits;
+	}
+
+	/**
+	 * <h1>size</h1>
+	 * @return the number of recorded steps
+	 */
+	synchronized public int size(){
+		return steps.size();
+	}
+}
@@ -1,7 +1,13 @@
 package analyser;
 
 import java.io.File;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -28,6 +34,24 @@ public class Knowledge {
 	
 	//An ArrayList that stores all problems
 	private ArrayList<Problem> problems;
+	//precomputed similarities between statements of rationalized problems (see getSimilarityMatrix)
+	private SimilarityMatrix similarityMatrix = null;
+	//the last loaded knowledge pool, whose size is reported by the live metrics (see Metrics)
+	private static WeakReference<Knowledge> monitored = new WeakReference<Knowledge>(null);
+	static{
+		Metrics.getDefault().group("KnowledgeSize", "Number of problems of each library of the last loaded knowledge pool",
+				new Metrics.GaugeGroup(){
+					@Override
+					public Map<String, Integer> getGroupValues(){
+						LinkedHashMap<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+						Knowledge knowledge = monitored.get();
+						if(knowledge!=null)
+							for(Map.Entry<String, Integer> entry : knowledge.getLibrarySizes().entrySet())
+								sizes.put(entry.getKey().isEmpty()?"(none)":entry.getKey(), entry.getValue());
+						return sizes;
+					}
+				});
+	}
 	
 	/**
 	 * <h1>Knowledge</h1>
@@ -45,6 +69,8 @@ public class Knowledge {
 	 * @param path : the path of the file in which the knowledge pool is saved
 	 */
 	public void save(String path){
+		AnalyserEvents.KnowledgeSave event = new AnalyserEvents.KnowledgeSave();
+		event.begin();
 		try{
 			//create the XML documents
 			DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
@@ -60,14 +86,14 @@ public class Knowledge {
 				p.save(prob, doc);
 				rootElement.appendChild(prob);
 			}
-			//save relations between problems
+			//save relations between problems (positions are found once, so that saving large pools remains fast)
+			IdentityHashMap<Problem, Integer> positions = new IdentityHashMap<Problem, Integer>();
+			for(int i=0;i<problems.size();i++)
+				positions.put(problems.get(i), i);
 			for(int p1=0;p1<problems.size();p1++)
 				if(problems.get(p1).getResult()!=null){
-					int p2 = p1;
-					for(int i=0;i<problems.size();i++)
-						if(problems.get(i)==problems.get(p1).getResult())
-							p2 = i;
-					if(p2!=p1){
+					Integer p2 = positions.get(problems.get(p1).getResult());
+					if(p2!=null && p2!=p1){
 						Element imp = doc.createElement("implement");
 						Element e1= doc.createElement("source");
 						e1.appendChild(doc.createTextNode(""+p1));
@@ -89,6 +115,7 @@ public class Knowledge {
 			//error message on fail
 			System.err.println("Could not save file '"+path+"':"+e.toString());
 		}
+		event.finish(path, problems);
 	}
 	
 	/**
@@ -97,6 +124,8 @@ public class Knowledge {
 	 * @param path : the path of the file from which the knowledge pool will be loaded
 	 */
 	public void load(String path){
+		AnalyserEvents.KnowledgeLoad event = new AnalyserEvents.KnowledgeLoad();
+		event.begin();
 		try{
 			//load XML file
 			File fXmlFile = new File(path);
@@ -118,11 +147,13 @@ public class Knowledge {
 				int p2 = Integer.parseInt(((Element)implementList.item(i)).getElementsByTagName("result").item(0).getTextContent());
 				problems.get(p1).setResult(problems.get(p2));
 			}
+			monitored = new WeakReference<Knowledge>(this);
 		}
 		catch(Exception e){
 			//error message on fail
 			System.out.println("Could not load file '"+path+"': "+e.toString());
 		}
+		event.finish(path, problems);
 	}
 	
 	/**
@@ -170,76 +201,298 @@ public class Knowledge {
 	 * @return an ArrayList that contains the rationalized transformation of all valid problems
 	 */
 	public ArrayList<Problem> getRationalized(final Problem exclude, final ArrayList<String> ignoredLibraries, int threads){
+		return getRationalized(exclude, ignoredLibraries, threads, new CancellationToken());
+	}
+	
+	/**
+	 * <h1>getRationalized</h1>
+	 * Performs the same transformation as the <code>getRationalized</code> function without a
+	 * cancellation token, but stops rationalizing further problems as soon as the given token is
+	 * cancelled. In that case, only the problems that have been rationalized up to that point
+	 * are returned.
+	 * @param exclude : the problem to be excluded from the search
+	 * @param ignoredLibraries : libraries that this function is requested to ignore
+	 * @param threads : the number of threads used for parallel processing
+	 * @param token : a cancellation token that is polled before rationalizing each problem
+	 * @return an ArrayList that contains the rationalized transformation of valid problems
+	 */
+	public ArrayList<Problem> getRationalized(final Problem exclude, final ArrayList<String> ignoredLibraries, int threads, final CancellationToken token){
+		AnalyserEvents.Rationalization event = new AnalyserEvents.Rationalization();
+		event.begin();
+		ArrayList<Problem> prob = getRationalized(exclude, ignoredLibraries, threads, null, token);
+		event.finish(exclude, problems.size(), prob.size(), threads);
+		return prob;
+	}
+	
+	/**
+	 * <h1>getRationalized</h1>
+	 * Performs the same transformation as the <code>getRationalized</code> function with a cancellation
+	 * token, but the rationalized problems (and their statements) use the given settings. The number of
+	 * threads is also obtained from the given settings.
+	 * @param exclude : the problem to be excluded from the search
+	 * @param ignoredLibraries : libraries that this function is requested to ignore
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token that is polled before rationalizing each problem
+	 * @return an ArrayList that contains the rationalized transformation of valid problems
+	 */
+	public ArrayList<Problem> getRationalized(final Problem exclude, final ArrayList<String> ignoredLibraries, SolverConfig config, final CancellationToken token){
+		AnalyserEvents.Rationalization event = new AnalyserEvents.Rationalization();
+		event.begin();
+		ArrayList<Problem> prob = getRationalized(exclude, ignoredLibraries, config.getThreads(), config, token);
+		event.finish(exclude, problems.size(), prob.size(), config.getThreads());
+		return prob;
+	}
+	
+	/**
+	 * <h1>getRationalized</h1>
+	 * Performs the same transformation as the <code>getRationalized</code> function with the given settings,
+	 * but also keeps track of the knowledge pool problem that each rationalized problem originates from
+	 * (see <code>getRationalizedBySource</code>).
+	 * @param exclude : the problem to be excluded from the search
+	 * @param ignoredLibraries : libraries that this function is requested to ignore
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token that is polled before rationalizing each problem
+	 * @param sources : a map into which to put the knowledge pool problem of each rationalized problem
+	 * @return an ArrayList that contains the rationalized transformation of valid problems
+	 */
+	public ArrayList<Problem> getRationalized(Problem exclude, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token, Map<Problem, Problem> sources){
+		LinkedHashMap<Problem, ArrayList<Problem>> bySource = getRationalizedBySource(exclude, ignoredLibraries, config, token);
+		ArrayList<Problem> prob = new ArrayList<Problem>();
+		for(Problem source : bySource.keySet())
+			for(Problem rationalized : bySource.get(source)){
+				prob.add(rationalized);
+				sources.put(rationalized, source);
+			}
+		return prob;
+	}
+	
+	private ArrayList<Problem> getRationalized(final Problem exclude, final ArrayList<String> ignoredLibraries, int threads, final SolverConfig config, final CancellationToken token){
 		///Multi-threaded split to subproblems (only if threads>1).
-		final ArrayList<Problem> prob = new ArrayList<Problem>();
 		if(threads>1){
+			//each thread rationalizes a part of the knowledge pool into its own list, and the lists
+			//are then concatenated in the order of the knowledge pool
 			final Knowledge [] kn = new Knowledge[threads]; 
+			final ArrayList<ArrayList<Problem>> threadProblems = new ArrayList<ArrayList<Problem>>();
 			Thread [] th = new Thread[threads];
 			int threadSize = problems.size()/threads;
 			for(int i=0;i<threads;i++){
 				kn[i] = new Knowledge();
 				final int threadId = i;
 				kn[i].problems.addAll(problems.subList(threadId*threadSize, threadId<threads-1?(threadId+1)*threadSize: problems.size()));
+				threadProblems.add(null);
 				th[i] = new Thread(){
 					@Override
 					public void run(){
-						prob.addAll(kn[threadId].getRationalized(exclude, ignoredLibraries, 1));
+						long[] usage = SolveStats.startAccounting();
+						threadProblems.set(threadId, kn[threadId].getRationalized(exclude, ignoredLibraries, 1, config, token));
+						SolveStats.stopAccounting(usage);
 					}
 				};
 			}
-			for(int i=0;i<threads;i++)
-				th[i].start();
-			for(int i=0;i<threads;)
-				try{
-					th[i].join();
-					i++;
-				}
-				catch(InterruptedException e){
-					try{
-						Thread.sleep(1);
-					}
-					catch (InterruptedException e1){
-						e1.printStackTrace();
-					}
-				}
+			joinAll(th, token);
+			ArrayList<Problem> prob = new ArrayList<Problem>();
+			for(ArrayList<Problem> part : threadProblems)
+				if(part!=null)
+					prob.addAll(part);
 			return prob;
 		}
 		///Actual rationalization (only if threads<=1)
+		ArrayList<Problem> prob = new ArrayList<Problem>();
 		for(Problem p : problems){
-			if(p.getResult()!=null && p!=exclude && p.getResult()!=exclude){
-				boolean ignored = false;
-				if(ignoredLibraries!=null)
-					for(String ign : ignoredLibraries)
-						if(ign!=null && p.getLibrary().compareTo(ign)==0){
-							ignored = true;
-							break;
-						}
-				if(!ignored){
-					ArrayList<Problem> subproblems = p.getSubproblems();
-					if(subproblems.size()>1){
-						for(Problem subproblem : subproblems)
-							if(subproblem.getResult()!=null)
-								prob.add(new Problem(subproblem, "_"+subproblem.getName()+"_"));
-					}
-					else
-						prob.add(new Problem(p, "_"+p.getName()+"_"));
-					Problem nonclass = p.getNonClassProblem();
-					if(nonclass!=null){
-						subproblems = nonclass.getSubproblems();
-						if(subproblems.size()>1){
-							for(Problem subproblem : subproblems)
-								if(subproblem.getResult()!=null)
-									prob.add(new Problem(subproblem, "_"+subproblem.getName()+"_"));
-						}
-						else
-							prob.add(new Problem(nonclass, "_"+nonclass.getName()+"_"));
-					}
+			if(token.isCancelled())
+				break;
+			if(p.getResult()!=null && p!=exclude && p.getResult()!=exclude)
+				prob.addAll(rationalize(p, ignoredLibraries, config));
+		}
+		return prob;
+	}
+	
+	/**
+	 * <h1>getRationalizedBySource</h1>
+	 * Performs the same transformation as the <code>getRationalized</code> function for all problems of the
+	 * knowledge pool (nothing is excluded), but keeps track of the knowledge pool problem that each rationalized
+	 * problem originates from. This way, the knowledge pool needs to be rationalized only once when solving
+	 * many problems, as the rationalized problems of each problem to be solved can be obtained by skipping the
+	 * sources that should have been excluded.<br/>
+	 * The number of threads is obtained from the given settings.
+	 * @param ignoredLibraries : libraries that this function is requested to ignore
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token that is polled before rationalizing each problem
+	 * @return a map from each (valid) knowledge pool problem to its rationalized transformations, in
+	 * the order of the knowledge pool
+	 */
+	public LinkedHashMap<Problem, ArrayList<Problem>> getRationalizedBySource(final ArrayList<String> ignoredLibraries, final SolverConfig config, final CancellationToken token){
+		return getRationalizedBySource(null, ignoredLibraries, config, token);
+	}
+	
+	/**
+	 * <h1>getRationalizedBySource</h1>
+	 * Performs the same transformation as the <code>getRationalizedBySource</code> function, but omits
+	 * the given problem and any problem that results from it before rationalizing (as the
+	 * <code>getRationalized</code> function does).
+	 * @param exclude : the problem to be excluded from the search (if <code>null</code>, nothing will be omitted)
+	 * @param ignoredLibraries : libraries that this function is requested to ignore
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token that is polled before rationalizing each problem
+	 * @return a map from each (valid, not excluded) knowledge pool problem to its rationalized transformations,
+	 * in the order of the knowledge pool
+	 */
+	public LinkedHashMap<Problem, ArrayList<Problem>> getRationalizedBySource(final Problem exclude, final ArrayList<String> ignoredLibraries, final SolverConfig config, final CancellationToken token){
+		AnalyserEvents.Rationalization event = new AnalyserEvents.Rationalization();
+		event.begin();
+		final ArrayList<Problem> sources = new ArrayList<Problem>();
+		for(Problem p : problems)
+			if(p.getResult()!=null && p!=exclude && p.getResult()!=exclude)
+				sources.add(p);
+		final ArrayList<ArrayList<Problem>> rationalized = new ArrayList<ArrayList<Problem>>();
+		for(int i=0;i<sources.size();i++)
+			rationalized.add(null);
+		final AtomicInteger nextSource = new AtomicInteger(0);
+		Thread [] th = new Thread[Math.max(1, Math.min(config.getThreads(), sources.size()))];
+		for(int i=0;i<th.length;i++)
+			th[i] = new Thread(){
+				@Override
+				public void run(){
+					long[] usage = SolveStats.startAccounting();
+					int i;
+					while(!token.isCancelled() && (i=nextSource.getAndIncrement())<sources.size())
+						rationalized.set(i, rationalize(sources.get(i), ignoredLibraries, config));
+					SolveStats.stopAccounting(usage);
 				}
+			};
+		joinAll(th, token);
+		LinkedHashMap<Problem, ArrayList<Problem>> bySource = new LinkedHashMap<Problem, ArrayList<Problem>>();
+		int count = 0;
+		for(int i=0;i<sources.size();i++)
+			if(rationalized.get(i)!=null){
+				bySource.put(sources.get(i), rationalized.get(i));
+				count += rationalized.get(i).size();
+			}
+		event.finish(exclude, problems.size(), count, th.length);
+		return bySource;
+	}
+	
+	/**
+	 * <h1>rationalize</h1>
+	 * Generates the rationalized transformations of a single problem of the knowledge pool (see
+	 * <code>getRationalized</code>).
+	 * @param p : a problem of the knowledge pool with a valid result
+	 * @param ignoredLibraries : libraries that this function is requested to ignore
+	 * @param config : the solver configuration
+	 * @return the rationalized transformations of the given problem (empty if its library is ignored)
+	 */
+	private static ArrayList<Problem> rationalize(Problem p, ArrayList<String> ignoredLibraries, SolverConfig config){
+		ArrayList<Problem> prob = new ArrayList<Problem>();
+		if(isIgnored(p, ignoredLibraries))
+			return prob;
+		ArrayList<Problem> subproblems = p.getSubproblems();
+		if(subproblems.size()>1){
+			for(Problem subproblem : subproblems)
+				if(subproblem.getResult()!=null)
+					prob.add(new Problem(subproblem, "_"+subproblem.getName()+"_", config));
+		}
+		else
+			prob.add(new Problem(p, "_"+p.getName()+"_", config));
+		Problem nonclass = p.getNonClassProblem();
+		if(nonclass!=null){
+			subproblems = nonclass.getSubproblems();
+			if(subproblems.size()>1){
+				for(Problem subproblem : subproblems)
+					if(subproblem.getResult()!=null)
+						prob.add(new Problem(subproblem, "_"+subproblem.getName()+"_", config));
 			}
+			else
+				prob.add(new Problem(nonclass, "_"+nonclass.getName()+"_", config));
 		}
 		return prob;
 	}
 	
+	/**
+	 * <h1>getSimilarityMatrix</h1>
+	 * Returns the similarity matrix of this knowledge pool, after indexing in it the statements of the given
+	 * rationalized problems (see <code>SimilarityMatrix.add</code>). Similarities are computed by the solves
+	 * that use the matrix, so the matrix keeps the similarities of all previous solves until the settings
+	 * change. A new matrix is created if the given settings compare statements differently than the current
+	 * one, or if they have a lower similarity threshold than the similarities it stores.
+	 * @param rationalized : rationalized problems of this knowledge pool
+	 * @param config : the solver configuration
+	 * @return the similarity matrix
+	 */
+	public SimilarityMatrix getSimilarityMatrix(ArrayList<Problem> rationalized, SolverConfig config){
+		SimilarityMatrix matrix;
+		synchronized(this){
+			if(similarityMatrix==null || !similarityMatrix.isCompatible(config)
+					|| config.getPredicateSimilarityThreshold()<similarityMatrix.getMinSimilarity())
+				similarityMatrix = new SimilarityMatrix(config, config.getPredicateSimilarityThreshold());
+			matrix = similarityMatrix;
+		}
+		matrix.add(rationalized);
+		return matrix;
+	}
+	
+	/**
+	 * <h1>isIgnored</h1>
+	 * @param p : a problem of the knowledge pool
+	 * @param ignoredLibraries : libraries that are ignored (may be <code>null</code>)
+	 * @return <code>true</code> if the library of the problem is ignored
+	 */
+	public static boolean isIgnored(Problem p, ArrayList<String> ignoredLibraries){
+		if(ignoredLibraries!=null)
+			for(String ign : ignoredLibraries)
+				if(ign!=null && p.getLibrary().compareTo(ign)==0)
+					return true;
+		return false;
+	}
+	
+	/**
+	 * <h1>getSourceHash</h1>
+	 * Generates a hash of a problem of the knowledge pool that changes whenever the problem, its
+	 * library or its result change (see <code>Problem.getStructuralHash</code>).
+	 * @param p : a problem of the knowledge pool
+	 * @return the hash as a hexadecimal String
+	 */
+	public static String getSourceHash(Problem p){
+		return ResultCache.getHash(p.getName()+"\n"+p.getLibrary()+"\n"+p.getStructuralHash()+"\n"
+				+(p.getResult()==null?"":p.getResult().getStructuralHash()));
+	}
+	
+	/**
+	 * <h1>getPoolHash</h1>
+	 * Generates a hash of all problems that <code>getRationalized</code> would rationalize for the
+	 * same arguments (see <code>getSourceHash</code>), in the order of the knowledge pool. The hash
+	 * changes whenever any of these problems changes, or when problems are added or removed.
+	 * @param exclude : the problem to be excluded
+	 * @param ignoredLibraries : libraries to ignore
+	 * @return the hash as a hexadecimal String
+	 */
+	public String getPoolHash(Problem exclude, ArrayList<String> ignoredLibraries){
+		ArrayList<String> hashes = new ArrayList<String>();
+		for(Problem p : problems)
+			if(p.getResult()!=null && p!=exclude && p.getResult()!=exclude && !isIgnored(p, ignoredLibraries))
+				hashes.add(getSourceHash(p));
+		return ResultCache.getPoolHash(hashes);
+	}
+	
+	/**
+	 * <h1>joinAll</h1>
+	 * Starts the given threads and waits for all of them to finish. If waiting is interrupted,
+	 * the given token is cancelled so that the threads stop as soon as possible.
+	 * @param th : the threads
+	 * @param token : the cancellation token used by the threads
+	 */
+	private static void joinAll(Thread [] th, CancellationToken token){
+		for(int i=0;i<th.length;i++)
+			th[i].start();
+		for(int i=0;i<th.length;)
+			try{
+				th[i].join();
+				i++;
+			}
+			catch(InterruptedException e){
+				token.cancel();
+			}
+	}
+	
 	/**
 	 * <h1>add</h1>
 	 * Adds a problem to the knowledge pool. If the problem already was a member
@@ -332,6 +585,28 @@ public class Knowledge {
 		return ret;
 	}
 
+	/**
+	 * <h1>getLibrarySizes</h1>
+	 * Counts the problems of each library that are not implementations (the empty problem is not counted).
+	 * @return the number of problems for each library, in the order libraries first appear (problems
+	 * without a library are counted under an empty library name)
+	 */
+	public LinkedHashMap<String, Integer> getLibrarySizes(){
+		//the list is copied, since this can be called while the knowledge pool is being edited
+		ArrayList<Problem> problems = new ArrayList<Problem>(this.problems);
+		HashSet<Problem> results = new HashSet<Problem>();
+		for(Problem pr : problems)
+			if(pr.getResult()!=null && pr.getResult()!=pr)
+				results.add(pr.getResult());
+		LinkedHashMap<String, Integer> sizes = new LinkedHashMap<String, Integer>();
+		for(Problem pr : problems)
+			if(pr!=emptyProblem && !results.contains(pr)){
+				Integer size = sizes.get(pr.getLibrary());
+				sizes.put(pr.getLibrary(), size==null?1:size+1);
+			}
+		return sizes;
+	}
+
 	/**
 	 * <h1>refresh</h1>
 	 * This calls <code>Problem.refresh</code> for all problems in the knowledge pool.
@@ -0,0 +1,514 @@
+package analyser;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * <h1>Metrics</h1>
+ * This class is a lightweight registry of live counters, gauges and histograms that describe a
+ * long-running instance of the analyser (e.g. how many solves are running, how long they take and
+ * how often caches are hit). Contrary to <code>SolveStats</code>, which describes a single solve,
+ * metrics accumulate over all solves since they were last reset.<br/>
+ * The default registry (see <code>getDefault</code>) is exposed as the platform MBean
+ * <code>analyser:type=Metrics</code>, so that it can be watched with <i>jconsole</i> or <i>VisualVM</i>.
+ * Each counter and gauge is an attribute of the MBean, each hit rate is exposed through its ratio and the
+ * numbers of its hits and misses, and each histogram is exposed through the
+ * attributes <code>name.count</code>, <code>name.mean</code>, <code>name.max</code>, <code>name.p50</code>,
+ * <code>name.p90</code> and <code>name.p99</code>. Metrics are created on first use, so a metric only
+ * appears after the class that reports it has been loaded.
+ */
+public class Metrics implements DynamicMBean {
+	//the name of the default registry's MBean
+	public static final String OBJECT_NAME = "analyser:type=Metrics";
+	//the default registry (created by getDefault)
+	private static Metrics defaultMetrics = null;
+	//the metrics of this registry for their names, in the order they were created
+	private final LinkedHashMap<String, Metric> metrics = new LinkedHashMap<String, Metric>();
+
+	/**
+	 * <h1>Metric</h1>
+	 * A named value of the registry.
+	 */
+	public static abstract class Metric {
+		private String name;
+		private String description;
+
+		/**
+		 * <h1>getName</h1>
+		 * @return the name of the metric
+		 */
+		public String getName(){
+			return name;
+		}
+
+		/**
+		 * <h1>getDescription</h1>
+		 * @return a description of the metric
+		 */
+		public String getDescription(){
+			return description;
+		}
+
+		/**
+		 * <h1>getValues</h1>
+		 * @return the values of the attributes of the metric for their names
+		 */
+		abstract LinkedHashMap<String, Object> getValues();
+
+		/**
+		 * <h1>reset</h1>
+		 * Resets the metric to its initial value (gauges are not affected).
+		 */
+		abstract void reset();
+	}
+
+	/**
+	 * <h1>Counter</h1>
+	 * A value that is increased (or decreased) by the code that reports it.
+	 */
+	public static class Counter extends Metric {
+		private final AtomicLong value = new AtomicLong(0);
+
+		/**
+		 * <h1>increment</h1>
+		 * Increases the counter by one.
+		 */
+		public void increment(){
+			value.incrementAndGet();
+		}
+
+		/**
+		 * <h1>decrement</h1>
+		 * Decreases the counter by one.
+		 */
+		public void decrement(){
+			value.decrementAndGet();
+		}
+
+		/**
+		 * <h1>add</h1>
+		 * @param amount : the amount to add to the counter
+		 */
+		public void add(long amount){
+			value.addAndGet(amount);
+		}
+
+		/**
+		 * <h1>get</h1>
+		 * @return the current value of the counter
+		 */
+		public long get(){
+			return value.get();
+		}
+
+		@Override
+		LinkedHashMap<String, Object> getValues(){
+			LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put(getName(), value.get());
+			return values;
+		}
+
+		@Override
+		void reset(){
+			value.set(0);
+		}
+	}
+
+	/**
+	 * <h1>Gauge</h1>
+	 * A value that is computed whenever it is read. Extend it and implement <code>getValue</code>.
+	 */
+	public static abstract class Gauge extends Metric {
+		/**
+		 * <h1>getValue</h1>
+		 * @return the current value of the gauge
+		 */
+		public abstract double getValue();
+
+		@Override
+		LinkedHashMap<String, Object> getValues(){
+			LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put(getName(), getValue());
+			return values;
+		}
+
+		@Override
+		void reset(){
+		}
+	}
+
+	/**
+	 * <h1>GaugeGroup</h1>
+	 * A group of values that are computed whenever they are read, whose number may change over time
+	 * (e.g. one value for each library of a knowledge pool). Extend it and implement <code>getGroupValues</code>.
+	 * Each value is exposed as the attribute <code>name.key</code>.
+	 */
+	public static abstract class GaugeGroup extends Metric {
+		/**
+		 * <h1>getGroupValues</h1>
+		 * @return the current values of the group for their keys
+		 */
+		public abstract Map<String, ? extends Number> getGroupValues();
+
+		@Override
+		LinkedHashMap<String, Object> getValues(){
+			LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+			for(Map.Entry<String, ? extends Number> entry : getGroupValues().entrySet())
+				values.put(getName()+"."+entry.getKey(), entry.getValue().doubleValue());
+			return values;
+		}
+
+		@Override
+		void reset(){
+		}
+	}
+
+	/**
+	 * <h1>HitRate</h1>
+	 * The hits and misses of lookups in a cache. It is exposed through the ratio of hits over all lookups
+	 * (attribute <code>name</code>) and through the number of hits and misses (attributes
+	 * <code>name.hits</code> and <code>name.misses</code>).
+	 */
+	public static class HitRate extends Metric {
+		private final AtomicLong hits = new AtomicLong(0);
+		private final AtomicLong misses = new AtomicLong(0);
+
+		/**
+		 * <h1>hit</h1>
+		 * Reports a lookup that was found in the cache.
+		 */
+		public void hit(){
+			hits.incrementAndGet();
+		}
+
+		/**
+		 * <h1>miss</h1>
+		 * Reports a lookup that was not found in the cache.
+		 */
+		public void miss(){
+			misses.incrementAndGet();
+		}
+
+		/**
+		 * <h1>add</h1>
+		 * Reports many lookups at once (e.g. all lookups of a solve).
+		 * @param hits : the number of lookups that were found in the cache
+		 * @param misses : the number of lookups that were not found in the cache
+		 */
+		public void add(long hits, long misses){
+			if(hits!=0)
+				this.hits.addAndGet(hits);
+			if(misses!=0)
+				this.misses.addAndGet(misses);
+		}
+
+		/**
+		 * <h1>getRate</h1>
+		 * @return the ratio of hits over all lookups (0 if there are none)
+		 */
+		public double getRate(){
+			long hits = this.hits.get();
+			long total = hits+misses.get();
+			return total==0?0:hits/(double)total;
+		}
+
+		@Override
+		LinkedHashMap<String, Object> getValues(){
+			LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put(getName(), getRate());
+			values.put(getName()+".hits", hits.get());
+			values.put(getName()+".misses", misses.get());
+			return values;
+		}
+
+		@Override
+		void reset(){
+			hits.set(0);
+			misses.set(0);
+		}
+	}
+
+	/**
+	 * <h1>Histogram</h1>
+	 * The distribution of reported values, kept as the number of values that fall into each of a fixed
+	 * set of buckets. Percentiles are estimated by the upper bound of the bucket that contains them.
+	 */
+	public static class Histogram extends Metric {
+		//the upper bound of each bucket (values above the last bound fall into an additional bucket)
+		private final long[] bounds;
+		private final AtomicLongArray buckets;
+		private final AtomicLong count = new AtomicLong(0);
+		private final AtomicLong sum = new AtomicLong(0);
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+		Histogram(long[] bounds){
+			this.bounds = bounds.clone();
+			buckets = new AtomicLongArray(bounds.length+1);
+		}
+
+		/**
+		 * <h1>record</h1>
+		 * Adds a value to the histogram.
+		 * @param value : the value
+		 */
+		public void record(long value){
+			int bucket = 0;
+			while(bucket<bounds.length && value>bounds[bucket])
+				bucket++;
+			buckets.incrementAndGet(bucket);
+			count.incrementAndGet();
+			sum.addAndGet(value);
+			long current = max.get();
+			while(value>current && !max.compareAndSet(current, value))
+				current = max.get();
+		}
+
+		/**
+		 * <h1>getCount</h1>
+		 * @return the number of recorded values
+		 */
+		public long getCount(){
+			return count.get();
+		}
+
+		/**
+		 * <h1>getMean</h1>
+		 * @return the mean of the recorded values (0 if there are none)
+		 */
+		public double getMean(){
+			long count = this.count.get();
+			return count==0?0:sum.get()/(double)count;
+		}
+
+		/**
+		 * <h1>getMax</h1>
+		 * @return the maximum recorded value (0 if there are none)
+		 */
+		public long getMax(){
+			return count.get()==0?0:max.get();
+		}
+
+		/**
+		 * <h1>getPercentile</h1>
+		 * @param percentile : a value between 0 and 100
+		 * @return the upper bound of the bucket that contains the given percentile of the recorded values
+		 * (the maximum value if it falls above the last bucket, 0 if there are no values)
+		 */
+		public long getPercentile(double percentile){
+			long count = this.count.get();
+			if(count==0)
+				return 0;
+			long rank = (long)Math.ceil(count*percentile/100);
+			long cumulative = 0;
+			for(int i=0;i<bounds.length;i++){
+				cumulative += buckets.get(i);
+				if(cumulative>=rank)
+					return Math.min(bounds[i], getMax());
+			}
+			return getMax();
+		}
+
+		@Override
+		LinkedHashMap<String, Object> getValues(){
+			LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+			values.put(getName()+".count", getCount());
+			values.put(getName()+".mean", getMean());
+			values.put(getName()+".max", getMax());
+			values.put(getName()+".p50", getPercentile(50));
+			values.put(getName()+".p90", getPercentile(90));
+			values.put(getName()+".p99", getPercentile(99));
+			return values;
+		}
+
+		@Override
+		void reset(){
+			for(int i=0;i<buckets.length();i++)
+				buckets.set(i, 0);
+			count.set(0);
+			sum.set(0);
+			max.set(Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * <h1>getDefault</h1>
+	 * Returns the default registry, creating it and registering it as a platform MBean (see
+	 * <code>OBJECT_NAME</code>) on first use. If the MBean cannot be registered, the registry
+	 * still works but cannot be watched through JMX.
+	 * @return the default registry
+	 */
+	synchronized public static Metrics getDefault(){
+		if(defaultMetrics==null){
+			defaultMetrics = new Metrics();
+			try{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(defaultMetrics, new ObjectName(OBJECT_NAME));
+			}
+			catch(Exception e){
+				System.err.println("Could not register metrics as '"+OBJECT_NAME+"': "+e.toString());
+			}
+		}
+		return defaultMetrics;
+	}
+
+	/**
+	 * <h1>counter</h1>
+	 * @param name : the name of the counter
+	 * @param description : a description of the counter
+	 * @return the counter of this registry with the given name (it is created if needed)
+	 */
+	public Counter counter(String name, String description){
+		return (Counter)register(new Counter(), name, description);
+	}
+
+	/**
+	 * <h1>histogram</h1>
+	 * @param name : the name of the histogram
+	 * @param description : a description of the histogram
+	 * @param bounds : the ascending upper bounds of the buckets of the histogram (only used if it is created)
+	 * @return the histogram of this registry with the given name (it is created if needed)
+	 */
+	public Histogram histogram(String name, String description, long[] bounds){
+		return (Histogram)register(new Histogram(bounds), name, description);
+	}
+
+	/**
+	 * <h1>gauge</h1>
+	 * Adds a gauge to this registry, replacing any metric with the same name.
+	 * @param name : the name of the gauge
+	 * @param description : a description of the gauge
+	 * @param gauge : the gauge
+	 * @return the given gauge
+	 */
+	public Gauge gauge(String name, String description, Gauge gauge){
+		replace(gauge, name, description);
+		return gauge;
+	}
+
+	/**
+	 * <h1>group</h1>
+	 * Adds a group of gauges to this registry, replacing any metric with the same name.
+	 * @param name : the name of the group
+	 * @param description : a description of the group
+	 * @param group : the group
+	 * @return the given group
+	 */
+	public GaugeGroup group(String name, String description, GaugeGroup group){
+		replace(group, name, description);
+		return group;
+	}
+
+	/**
+	 * <h1>hitRate</h1>
+	 * @param name : the name of the hit rate
+	 * @param description : a description of the hit rate
+	 * @return the hit rate of this registry with the given name (it is created if needed)
+	 */
+	public HitRate hitRate(String name, String description){
+		return (HitRate)register(new HitRate(), name, description);
+	}
+
+	/**
+	 * <h1>reset</h1>
+	 * Resets all counters and histograms of this registry.
+	 */
+	synchronized public void reset(){
+		for(Metric metric : metrics.values())
+			metric.reset();
+	}
+
+	/**
+	 * <h1>getValues</h1>
+	 * @return the values of all attributes of this registry for their names
+	 */
+	public LinkedHashMap<String, Object> getValues(){
+		LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+		for(Metric metric : getMetrics())
+			values.putAll(metric.getValues());
+		return values;
+	}
+
+	synchronized private ArrayList<Metric> getMetrics(){
+		return new ArrayList<Metric>(metrics.values());
+	}
+
+	synchronized private Metric register(Metric metric, String name, String description){
+		Metric existing = metrics.get(name);
+		if(existing!=null && existing.getClass()==metric.getClass())
+			return existing;
+		replace(metric, name, description);
+		return metric;
+	}
+
+	synchronized private void replace(Metric metric, String name, String description){
+		metric.name = name;
+		metric.description = description;
+		metrics.put(name, metric);
+	}
+
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException{
+		Object value = getValues().get(attribute);
+		if(value==null)
+			throw new AttributeNotFoundException(attribute);
+		return value;
+	}
+
+	@Override
+	public AttributeList getAttributes(String[] attributes){
+		LinkedHashMap<String, Object> values = getValues();
+		AttributeList list = new AttributeList();
+		for(String attribute : attributes)
+			if(values.containsKey(attribute))
+				list.add(new Attribute(attribute, values.get(attribute)));
+		return list;
+	}
+
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException{
+		throw new AttributeNotFoundException("Metrics are read-only: "+attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(AttributeList attributes){
+		return new AttributeList();
+	}
+
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException{
+		if(actionName.equals("reset") && (params==null || params.length==0)){
+			reset();
+			return null;
+		}
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public MBeanInfo getMBeanInfo(){
+		ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+		for(Metric metric : getMetrics()){
+			for(Map.Entry<String, Object> entry : metric.getValues().entrySet())
+				attributes.add(new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+						metric.getDescription(), true, false, false));
+		}
+		MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Resets all counters and histograms",
+				new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+		return new MBeanInfo(getClass().getName(), "Live metrics of the analyser",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+				new MBeanOperationInfo[]{reset}, null);
+	}
+}
@@ -1,8 +1,12 @@
 package analyser;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -10,7 +14,6 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
-import display.Main;
 
 /**
  * <h1>Problem</h1>
@@ -32,7 +35,7 @@ public class Problem {
 	//the set of statements that implement the problem
 	public ArrayList<Statement> statements;
 	//a log record for the solve function
-	volatile private static String logRecord = "";
+	private static final EventLog logRecord = new EventLog();
 	volatile private static int logLevel = 3;
 	//a text that defines the "this" statement in Python (if "", then ignores classes)
 	//this text may change according to class implementation
@@ -40,6 +43,17 @@ public class Problem {
 	public static boolean breakdownStatements = true;
 	public static boolean breakdownAlsoCode = false;
 	public static boolean constantsAreVariables = true;
+	//the selector used between equally informative candidates by solves with the static settings
+	public static CandidateSelector candidateSelector = new CandidateSelector.First();
+	//the settings used by this problem and its statements (null to use the static settings)
+	private SolverConfig config = null;
+	//cached parts of the information bound (calculated only for problems of a rationalized knowledge pool)
+	volatile private int boundNonTrivial = -1;
+	private float boundImplemented = 0;
+	//the problems of a rationalized knowledge pool that have been merged into this problem (in order of merging)
+	private ArrayList<Problem> mergedProblems = new ArrayList<Problem>();
+	//the names of the knowledge pool problems whose rationalized problems were merged into this solution
+	private ArrayList<String> provenance = new ArrayList<String>();
 	
 	/**
 	 * <h1>Problem</h1>
@@ -53,6 +67,18 @@ public class Problem {
 		result = null;
 	}
 	
+	/**
+	 * <h1>Problem</h1>
+	 * A constructor for the Problem class that creates an empty problem which uses the given settings
+	 * instead of the static ones.
+	 * @param name : the name of the problem
+	 * @param config : the solver configuration (<code>null</code> to use the static settings)
+	 */
+	public Problem(String name, SolverConfig config){
+		this(name);
+		this.config = config;
+	}
+	
 
 	/**
 	 * <h1>Problem</h1>
@@ -62,21 +88,34 @@ public class Problem {
 	 * @param prefix : a desired prefix
 	 */
 	public Problem(Problem p, String prefix) {
+		this(p, prefix, null);
+	}
+	
+	/**
+	 * <h1>Problem</h1>
+	 * A constructor for the Problem class that creates a <b>rationalized copy</b> of an original problem,
+	 * using a desired prefix. The copy (including its statements) uses the given settings.
+	 * @param p : the original problem
+	 * @param prefix : a desired prefix
+	 * @param config : the solver configuration (<code>null</code> to use the static settings)
+	 */
+	public Problem(Problem p, String prefix, SolverConfig config) {
+		this.config = config;
 		name = p.name;
 		library = p.library;
 		statements = new ArrayList<Statement>();
 		for(Statement s : p.statements){
-			Statement sn = new Statement(s.getVariables(), s.getExpression());
+			Statement sn = new Statement(s.getVariables(), s.getExpression(), config);
 			sn.addVariablePrefix(prefix);
 			statements.add(sn);
 		}
 		result = null;
-		if(breakdownStatements)
-			expand("", breakdownAlsoCode);
+		if(config==null?breakdownStatements:config.breakdownStatements)
+			expand("", config==null?breakdownAlsoCode:config.breakdownAlsoCode);
 		if(p.result==null)
 			result = null;
 		else
-			result = new Problem(p.result, prefix);
+			result = new Problem(p.result, prefix, config);
 	}
 	
 	/**
@@ -89,6 +128,25 @@ public class Problem {
 		load(e);
 	}
 	
+	/**
+	 * <h1>getConfig</h1>
+	 * @return the settings used by this problem (the static settings if it has no configuration)
+	 */
+	public SolverConfig getConfig(){
+		if(config==null)
+			return SolverConfig.getDefault();
+		return config;
+	}
+	
+	/**
+	 * <h1>setConfig</h1>
+	 * @param config : the settings to be used by this problem and the statements it generates
+	 * (<code>null</code> to use the static settings)
+	 */
+	public void setConfig(SolverConfig config){
+		this.config = config;
+	}
+	
 	/**
 	 * <h1>getName</h1>
 	 * @return the name of the problem
@@ -166,6 +224,43 @@ public class Problem {
 		return result;
 	}
 	
+	/**
+	 * <h1>getMergedProblems</h1>
+	 * Returns the problems of a rationalized knowledge pool that have been merged into this problem
+	 * by <code>merge</code>, including those merged into the problem it was generated from.
+	 * @return a copy of the list of merged problems, in order of merging
+	 */
+	public ArrayList<Problem> getMergedProblems(){
+		return new ArrayList<Problem>(mergedProblems);
+	}
+	
+	/**
+	 * <h1>setMergedProblems</h1>
+	 * @param mergedProblems : the problems of a rationalized knowledge pool that have been merged into this problem
+	 */
+	public void setMergedProblems(ArrayList<Problem> mergedProblems){
+		this.mergedProblems = new ArrayList<Problem>(mergedProblems);
+	}
+	
+	/**
+	 * <h1>getProvenance</h1>
+	 * Returns the names of the knowledge pool problems whose rationalized problems were merged into
+	 * this problem when it was generated as a solution (see <code>Solver.solve</code>). Contrary to
+	 * <code>getMergedProblems</code>, the provenance is saved together with the problem.
+	 * @return a copy of the list of names (empty if this problem is not a generated solution)
+	 */
+	public ArrayList<String> getProvenance(){
+		return new ArrayList<String>(provenance);
+	}
+	
+	/**
+	 * <h1>setProvenance</h1>
+	 * @param provenance : the names of the knowledge pool problems whose rationalized problems were merged into this problem
+	 */
+	public void setProvenance(ArrayList<String> provenance){
+		this.provenance = new ArrayList<String>(provenance);
+	}
+	
 	@Override
 	public String toString(){
 		if(library.isEmpty())
@@ -355,60 +450,117 @@ public class Problem {
 	
 	/**
 	 * <h1>clearLog</h1>
-	 * This function clears the log record.
+	 * This function clears the log record (of the solve context bound to the current thread, if any).
 	 */
-	synchronized public static void clearLog(){
-		logRecord = "";
+	public static void clearLog(){
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null){
+			context.clearLog();
+			return;
+		}
+		logRecord.clear();
 	}
 	/**
 	 * <h1>setLogLevel</h1>
-	 * This function sets the maximum log level (lower log levels are more important).
+	 * This function sets the maximum log level (lower log levels are more important). If a solve context
+	 * is bound to the current thread, only its log level is set.
 	 * @param level : the new maximum log level
 	 */
-	synchronized public static void setLogLevel(int level){
-		logLevel = level;
+	public static void setLogLevel(int level){
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null)
+			context.setLogLevel(level);
+		else
+			logLevel = level;
 	}
 	/**
 	 * <h1>getLogLevel</h1>
 	 * This function returns the maximum log level (lower log levels are more important).
-	 * @return the maximum log level
+	 * @return the maximum log level (of the solve context bound to the current thread, if any)
 	 */
-	synchronized public static int getLogLevel(){
+	public static int getLogLevel(){
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null)
+			return context.getLogLevel();
 		return logLevel;
 	}
 	/**
 	 * <h1>log</h1>
-	 * This function adds contents to the log record in HTML form. The contents have different formatting
-	 * according to the importance level. The importance level ranges from 0 to 3, where 0 is of most importance
-	 * and 3 is of least importance message.<br/>
-	 * On importance of 0, the label <code>Main.log</code> is also updated if it has been generated.<br/>
-	 * As a special input, the level -1 directly adds the text to the log record's HTML body.
+	 * This function adds contents to the log record. The contents have different formatting in the HTML form
+	 * of the log record according to the importance level (see <code>EventLog.Event.toHtml</code>). The importance
+	 * level ranges from 0 to 3, where 0 is of most importance and 3 is of least importance message.<br/>
+	 * As a special input, the level -1 directly adds the text to the log record's HTML body.<br/>
+	 * If a solve context is bound to the current thread, the contents are added to its log record instead.
 	 * @param str : the contents to be added to the log record
 	 * @param level : the importance of the comments to be added to the log record (0=most important, 3=least important)
 	 */
-	synchronized public static void log(String str, int level){
-		if(level>logLevel)
+	public static void log(String str, int level){
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null){
+			if(level<=context.getLogLevel())
+				context.getLogRecord().log(str, level);
 			return;
-		//System.out.println(str);
-		if(level==0)
-			logRecord += "<br/><font color=\"red\"><b>"+str+"</b></font><br/>";
-		else if(level==1)
-			logRecord += "<font color=\"blue\"><b>"+str+"</b></font><br/>";
-		else if(level==2)
-			logRecord += "&nbsp&nbsp&nbsp<b>"+str.replace("<br/>", "<br/>&nbsp&nbsp&nbsp ")+"</b><br/>";
-		else if(level>0)
-			logRecord += "&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp "+str.replace("<br/>", "<br/>&nbsp&nbsp&nbsp&nbsp&nbsp&nbsp ")+"<br/>";
-		else
-			logRecord += str;
-		if(level<=0 && Main.log!=null)
-			Main.log.setText(getLog());
+		}
+		if(level<=logLevel)
+			logRecord.log(str, level);
+	}
+	/**
+	 * <h1>isLogged</h1>
+	 * This function can guard log messages that are expensive to generate, so that they are not generated
+	 * when they would not be added to the log record anyway.
+	 * @param level : the importance of a message (0=most important, 3=least important)
+	 * @return <code>true</code> if a message of the given importance would be added to the log record
+	 * (of the solve context bound to the current thread, if any)
+	 */
+	public static boolean isLogged(int level){
+		return level<=getLogLevel();
+	}
+	/**
+	 * <h1>log</h1>
+	 * This function performs the same operation as the <code>log</code> function for a message that is
+	 * generated from a pattern, in which each <code>{}</code> is replaced by the String value of the next
+	 * argument. The message is only generated if it would be added to the log record (see <code>isLogged</code>),
+	 * so that disabled messages cost no more than the level check (and the evaluation of their arguments).
+	 * Arguments that are expensive to evaluate should still be guarded by <code>isLogged</code>.
+	 * @param level : the importance of the message (0=most important, 3=least important)
+	 * @param pattern : the message pattern
+	 * @param args : the values of the pattern's placeholders
+	 */
+	public static void log(int level, String pattern, Object... args){
+		if(!isLogged(level))
+			return;
+		StringBuilder str = new StringBuilder();
+		int start = 0;
+		for(Object arg : args){
+			int pos = pattern.indexOf("{}", start);
+			if(pos==-1)
+				break;
+			str.append(pattern, start, pos).append(String.valueOf(arg));
+			start = pos+2;
+		}
+		str.append(pattern, start, pattern.length());
+		log(str.toString(), level);
+	}
+	/**
+	 * <h1>getLogRecord</h1>
+	 * @return the log record (of the solve context bound to the current thread, if any)
+	 */
+	public static EventLog getLogRecord(){
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null)
+			return context.getLogRecord();
+		return logRecord;
 	}
 	/**
 	 * <h1>getLog</h1>
 	 * @return returns the log record (generated by the <code>solve</code>function) in HTML form
+	 * (of the solve context bound to the current thread, if any)
 	 */
 	public static String getLog(){
-		return "<html>"+logRecord+"</html>";
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null)
+			return context.getLog();
+		return logRecord.getHtml();
 	}
 	
 	/**
@@ -427,39 +579,48 @@ public class Problem {
 	 * (0 makes new information most important, 1 makes removing old information most important)
 	 */
 	public void solve(final Problem p, final ArrayList<Problem> problems, String unknownMessage, final float concervative, final int threads){
+		solve(p, problems, unknownMessage, concervative, threads, new CancellationToken());
+	}
+	
+	/**
+	 * <h1>solve</h1>
+	 * Performs the same single step as the <code>solve</code> function with a cancellation token,
+	 * using the given settings (including the balance of merge selection and the number of threads)
+	 * for this problem and the statements it generates.
+	 * @param p : the given problem
+	 * @param problems : a problem list (it should be generated with
+	 * <code>Knowledge.getRationalizedProblems</code> using the same settings)
+	 * @param unknownMessage : a message that will precede all non-implementable statements
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token that is polled while comparing problems
+	 */
+	public void solve(final Problem p, final ArrayList<Problem> problems, String unknownMessage, SolverConfig config, final CancellationToken token){
+		this.config = config;
+		solve(p, problems, unknownMessage, config.getImportanceBalance(), config.getThreads(), token);
+	}
+	
+	/**
+	 * <h1>solve</h1>
+	 * Performs the same single step as the <code>solve</code> function without a cancellation token,
+	 * but stops searching for the best problem to merge as soon as the given token is cancelled.
+	 * In that case nothing is merged and this problem ends up as a copy of the given problem.
+	 * @param p : the given problem
+	 * @param problems : a problem list (it should be generated with
+	 * <code>Knowledge.getRationalizedProblems</code>)
+	 * @param unknownMessage : a message that will precede all non-implementable statements
+	 * @param concervative : a value between 0 and 1 that balances merge selection
+	 * @param threads: a number of threads to split the search for the best problem to merge
+	 * @param token : a cancellation token that is polled while comparing problems
+	 */
+	public void solve(final Problem p, final ArrayList<Problem> problems, String unknownMessage, final float concervative, final int threads, final CancellationToken token){
 		/**
 		 * 1. PRE-PROCESSING
-		 * 1.1 Detect input and outputs and generate a single input and a single output statement
-		 * 1.2 Create a copy of the given problem's original statements (we will need to alter the copied statements)
+		 * 1.0 Break down the given problem's statements (the rest of the pre-processing is performed by merge)
 		 */
-		if(breakdownStatements)
-			p.expand("", breakdownAlsoCode);
-		//1.1a find inputs, outputs and iterators
-		String inputs = "";
-		String outputs = "";
-		String iters = "";
-		statements.clear();
-		for(Statement s : p.statements){
-			if(s.isInput()){
-				inputs = unionVariables(inputs, s.getVariables(), " ");
-			}
-			else if(s.isOutput()){
-				outputs = unionVariables(outputs, s.getVariables(), " ");
-			}
-			else if(s.isIterator()){
-				iters = unionVariables(iters, s.getVariables(), " ");
-			}
-		}
-		//1.1b generate single input statement and single output statement
-		if(!inputs.isEmpty())
-			statements.add(new Statement(inputs, "input"));
-		if(!outputs.isEmpty())
-			statements.add(new Statement(outputs, "output"));
-		//1.2 create a copy of the given problem's original statements
-		ArrayList<Statement> pendingStatements = new ArrayList<Statement>();
-		for(Statement s : p.statements)
-			pendingStatements.add(new Statement(s.getVariables(), s.getExpression()));
-
+		long phaseStart = System.nanoTime();
+		if(config==null?breakdownStatements:config.breakdownStatements)
+			p.expand("", config==null?breakdownAlsoCode:config.breakdownAlsoCode);
+		SolveStats.time(SolveStats.PREPROCESSING, phaseStart);
 		/**
 		 * 2. COMPARING PROBLEMS
 		 * For all problems kp in the rationalized copy of the knowledge pool that have a valid result:
@@ -476,197 +637,394 @@ public class Problem {
 		 * Note: All operations affect the statements inside pendingStatements, which are originally
 		 *       a copy of p's statements but change during iterations.
 		 */
-		int prevLogLevel = logLevel;
-		if(threads>1 && logLevel>=3){
+		phaseStart = System.nanoTime();
+		ArrayList<Candidate> select = getBestCandidates(scoreCandidates(p, problems, concervative, threads, token, true));
+		SolveStats.time(SolveStats.SCORING, phaseStart);
+		if(token.isCancelled()){
+			select.clear();
+			log("Solve was stopped before finding a problem to merge", 0);
+		}
+		Candidate selection = null;
+		if(select.size()==1)
+			selection = select.get(0);
+		else if(select.size()>1){
+			CandidateSelector selector = getConfig().getSelector();
+			log("Selecting between "+select.size()+" equally informative problems ("+selector+")", 2);
+			selection = selector.select(p, select, problems, token);
+		}
+		SolveTrace trace = getConfig().getTrace();
+		if(trace!=null && !select.isEmpty())
+			trace.addChoice(p, select, selection);
+		if(selection!=null && selection.getExplored()!=null)
+			adopt(selection);
+		else
+			merge(p, selection, unknownMessage);
+	}
+	
+	/**
+	 * <h1>adopt</h1>
+	 * Stores inside this problem (<b>which should be empty</b>) a solution that has already been reached
+	 * from the given problem, e.g. by a candidate selector that explored the selected candidate (see
+	 * <code>Candidate.getExplored</code>), together with the problems merged into it.
+	 * @param selection : the selected candidate (it must have an explored solution)
+	 */
+	private void adopt(Candidate selection){
+		log("Selected <i>"+selection.getProblem().getName()+"</i> to merge and reused its explored solution", 0);
+		Problem explored = selection.getExplored();
+		statements.clear();
+		for(Statement s : explored.statements)
+			statements.add(new Statement(s.getVariables(), s.getExpression(), config));
+		mergedProblems = explored.getMergedProblems();
+	}
+	
+	/**
+	 * <h1>scoreCandidates</h1>
+	 * Compares the given problem with all problems of a rationalized knowledge pool that have a valid
+	 * result and measures the information that merging each of them would provide (steps 2.1 to 2.4
+	 * of <code>solve</code>, without actually merging anything). The comparisons are split between
+	 * the given number of threads.<br/>
+	 * If pruning is enabled, an upper bound of each candidate's information is computed first (see
+	 * <code>getInformationBound</code>) and candidates are compared in order of decreasing bound. The
+	 * maximum information found so far is shared between threads, and candidates whose bound is
+	 * below it are skipped, since they cannot be among the best candidates.
+	 * @param p : the given problem (its statements should already be broken down if needed)
+	 * @param problems : a problem list (it should be generated with
+	 * <code>Knowledge.getRationalizedProblems</code>)
+	 * @param concervative : a value between 0 and 1 that balances merge selection
+	 * (0 makes new information most important, 1 makes removing old information most important)
+	 * @param threads : a number of threads to split the comparisons
+	 * @param token : a cancellation token that is polled before each comparison
+	 * @param prune : <code>true</code> to skip candidates that cannot be among the best ones (only use this
+	 * if the result is given to <code>getBestCandidates</code>)
+	 * @return a list of candidates for all (non-skipped) problems that have common statements with the given
+	 * problem (in the order they appear in the given problem list)
+	 */
+	public ArrayList<Candidate> scoreCandidates(final Problem p, final ArrayList<Problem> problems, final float concervative, final int threads, final CancellationToken token, final boolean prune){
+		int prevLogLevel = getLogLevel();
+		if(threads>1 && prevLogLevel>=3){
 			setLogLevel(2);
 			log("Some details are ignored in multi-threaded mode.", 0);
 		}
 		if(threads>1)
 			log("Selecting problem with most information ("+threads+" threads)", 1);
-		ArrayList<Problem> select = new ArrayList<Problem>();
-		float maxInformation = Float.MIN_VALUE;
-		float selectionImplemented = Float.MAX_VALUE;
-		final ArrayList<ArrayList<Problem>> threadSelection = new ArrayList<ArrayList<Problem>>();
-		for(int i=0;i<threads;i++)
-			threadSelection.add(new ArrayList<Problem>());
-		final Float [] threadMaxInformation = new Float[threads];
-		final Float [] threadSelectionImplemented = new Float[threads];
-		final int threadSize = problems.size()/threads;
-		Thread [] th = new Thread[threads];
 		final Problem thisProblem = this;
+		///find problems with valid results and an upper bound of their information
+		final ArrayList<Problem> prob = new ArrayList<Problem>();
+		for(Problem kp : problems)
+			if(kp!=thisProblem && kp.getResult()!=thisProblem && kp.getResult()!=null)
+				prob.add(kp);
+		float maxStatementInformation = 0;
+		for(Statement st : p.statements)
+			if(st.getInformation()+1>maxStatementInformation)
+				maxStatementInformation = st.getInformation()+1;
+		final float [] bounds = new float[prob.size()];
+		final Integer [] order = new Integer[prob.size()];
+		for(int i=0;i<prob.size();i++){
+			order[i] = i;
+			if(prune)
+				bounds[i] = prob.get(i).getInformationBound(maxStatementInformation, concervative);
+		}
+		if(prune)
+			Arrays.sort(order, new Comparator<Integer>(){
+				@Override
+				public int compare(Integer i1, Integer i2) {
+					return Float.compare(bounds[i2], bounds[i1]);
+				}
+			});
+		final Candidate [] results = new Candidate[prob.size()];
+		final AtomicInteger nextCandidate = new AtomicInteger(0);
+		final AtomicInteger prunedCandidates = new AtomicInteger(0);
+		//the maximum information found so far (stored as float bits)
+		final AtomicInteger runningMaxInformation = new AtomicInteger(Float.floatToIntBits(Float.MIN_VALUE));
+		Thread [] th = new Thread[threads];
 		///create threads
 		for(int i=0;i<threads;i++){
-			final int threadId = i;
-			threadMaxInformation[i] = maxInformation;
-			threadSelectionImplemented[i] = selectionImplemented;
-			threadSelection.get(i).clear();
 			th[i] = new Thread(){
 			@Override
 			public void run(){
-			ArrayList<Problem> prob = new ArrayList<Problem>();
-			prob.addAll(problems.subList(threadId*threadSize, threadId<threads-1?(threadId+1)*threadSize: problems.size()));
-			for(Problem kp : prob){
-				if(kp!=thisProblem && kp.getResult()!=thisProblem && kp.getResult()!=null){
-					//2.1 detect common statements (if no common statements call continue)
+			long[] usage = SolveStats.startAccounting();
+			for(int next=nextCandidate.getAndIncrement();next<order.length;next=nextCandidate.getAndIncrement()){
+				if(token.isCancelled())
+					break;
+				int candidateId = order[next];
+				Problem kp = prob.get(candidateId);
+				if(prune && bounds[candidateId]<Float.intBitsToFloat(runningMaxInformation.get())){
+					prunedCandidates.incrementAndGet();
+					if(isLogged(3))
+						log("Skipped <i>"+kp.getName()+"</i> (at most "+Math.round(bounds[candidateId]*10)/10.0+" bits)", 3);
+					continue;
+				}
+				{
 					String lib = kp.getLibrary();
 					if(!lib.isEmpty())
 						lib = " (from library <i>"+lib+"</i>)";
-					if(logLevel>=3)
-						log("Detecting common non-trivial expressions between <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>", 1);
-					ArrayList<Statement> comm = commonNonTrivial(p.statements, kp.statements);
-					if(comm.size()==0){
-						if(logLevel>=3)
+					SolveStats.count(SolveStats.CANDIDATES_SCORED);
+					AnalyserEvents.CandidateScoring event = new AnalyserEvents.CandidateScoring();
+					event.begin();
+					Candidate candidate = scoreCandidate(p, kp, concervative);
+					event.finish(p, kp, candidate);
+					if(candidate==null){
+						if(getLogLevel()>=3)
 							log("Nothing found", 3);
 						else
-							log("Comparing <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>"+lib+": 0 bits (nothing found)", 2);
+							log(2, "Comparing <i>{}</i> and <i>{}</i>{}: 0 bits (nothing found)", p.getName(), kp.getName(), lib);
 						continue;
 					}
-					//2.3 synchronize variables of common statements
-					if(logLevel>=3)
-						log("Synchronizing variables between <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>", 2);
-					ArrayList<Statement> sync = commonVariableSync(p.statements, kp.statements);
-					//2.4a Find the names of the variables in kp that were synchronized
-					if(logLevel>=3)
-						log("Merging into <i>"+thisProblem.getName()+"</i> equivalent expressions from <i>"+kp.getResult().getName()+"</i>", 2);
-					String commVar = "";
-					for(Statement c : sync){
-						if(!commVar.isEmpty())
-							commVar += " ";
-						/*if(c.isAssignment())
-							commVar += diffVariables(c.getVariables(), c.getTrivialVariable(), " ");
-						else*/
-							commVar += c.getVariables();
-					}
-					//2.4b&c found things to merge
-					ArrayList<Statement> ins = getAffectedFromVariables(kp.getResult().statements, commVar);
-					if(logLevel>=3){
-						log("Expressions to merge into <i>"+thisProblem.getName()+"</i> from <i>"+kp.getResult().getName()+"</i>", 2);
-						for(Statement s : ins)
-							log(s.getExpression(), 3);
-					}
-					//count information information gained
-					float informationConcervative = 0;
-					float informationNew = 0;
-					for(Statement st : comm){
-						float info = st.getInformation()+1;
-						//get only common information if complex predicate rearrangement
-						float maxVal = 1;
-						if(!st.isTransitional()){
-							maxVal = 0;
-							for(Statement s : kp.statements)
-								if(!s.isTrivial() && s.isSame(st)){
-									float val = Statement.predicateSimilarity(s.getExpression(), s.matchExpression(st), s.getVariables());
-									if(val>maxVal)
-										maxVal = val;
-								}
-						}
-						informationConcervative += info*maxVal;
+					float information = candidate.getInformation();
+					float informationConcervative = candidate.getInformationConcervative();
+					float informationNew = candidate.getInformationNew();
+					results[candidateId] = candidate;
+					if(prune){
+						int bits = runningMaxInformation.get();
+						while(information>Float.intBitsToFloat(bits) && !runningMaxInformation.compareAndSet(bits, Float.floatToIntBits(information)))
+							bits = runningMaxInformation.get();
+						//only the best candidates need to keep their statements
+						if(information<Float.intBitsToFloat(runningMaxInformation.get()))
+							candidate.discardStatements();
 					}
-					for(Statement st : ins)
-						informationNew += st.getInformation()+1;
-					float information = informationConcervative*concervative+informationNew*(1-concervative);
-					if(information>threadMaxInformation[threadId]){
-						threadMaxInformation[threadId] = information;
-						threadSelection.get(threadId).clear();
-						threadSelection.get(threadId).add(kp);
-						threadSelectionImplemented[threadId] = informationNew;
-					}
-					else if(information==threadMaxInformation[threadId] && informationNew<threadSelectionImplemented[threadId]){
-						threadMaxInformation[threadId] = information;
-						threadSelection.get(threadId).clear();
-						threadSelection.get(threadId).add(kp);
-						threadSelectionImplemented[threadId] = informationNew;
-					}
-					else if(information==threadMaxInformation[threadId])// && informationNew==threadSelectionImplemented[threadId] && kp!=null)
-						threadSelection.get(threadId).add(kp);
+					if(!isLogged(2))
+						continue;
 					if(concervative<=1)
 						log("Comparing <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>"+lib+": "+Math.round(information*10)/10.0+" bits ("+Math.round(concervative*100)+"% * "+Math.round(informationConcervative*10)/10.0+" bits to remove + "+Math.round(100-concervative*100)+"% * "+Math.round(informationNew*10)/10.0+" bits to add)", 2);
 					else
 						log("Comparing <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>"+lib+": "+Math.round(information*10)/10.0+" bits ("+Math.round(concervative*100)+"% * "+Math.round(informationConcervative*10)/10.0+" bits to remove - "+Math.abs(Math.round(100-concervative*100))+"% * "+Math.round(informationNew*10)/10.0+" bits to add)", 2);					
 				}
 			}
+			SolveStats.stopAccounting(usage);
 			}
 			};
 		}
 		for(int i=0;i<threads;i++)
 			th[i].start();
-		//join threads
+		//join threads (interrupting the caller cancels the token, so that workers stop early)
 		for(int i=0;i<threads;)
 			try{
 				th[i].join();
 				i++;
 			}
 			catch(InterruptedException e){
-				try{
-					Thread.sleep(1);
-				}
-				catch (InterruptedException e1){
-					e1.printStackTrace();
-				}
+				token.cancel();
 			}
-		
-		///merge results to global max
-		for(int i=0;i<threads;i++){
-			if(threadMaxInformation[i]>maxInformation){
-				select.clear();
-				select.addAll(threadSelection.get(i));
-				maxInformation = threadMaxInformation[i];
-				selectionImplemented = threadSelectionImplemented[i];
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+		float maxInformation = Float.intBitsToFloat(runningMaxInformation.get());
+		for(Candidate c : results)
+			if(c!=null){
+				if(prune && c.getInformation()<maxInformation)
+					c.discardStatements();
+				candidates.add(c);
+			}
+		SolveStats.count(SolveStats.CANDIDATES_PRUNED, prunedCandidates.get());
+		if(prune && prunedCandidates.get()!=0)
+			log("Skipped "+prunedCandidates.get()+" of "+prob.size()+" problems that could not provide the most information", 2);
+		setLogLevel(prevLogLevel);
+		return candidates;
+	}
+
+	/**
+	 * <h1>scoreCandidate</h1>
+	 * This function performs the detections of <code>solve</code> steps 2.1 to 2.4 between a problem
+	 * under solution and a single problem of a rationalized knowledge pool and measures the information
+	 * of merging them. The detected statements are kept in the returned candidate, so that
+	 * <code>merge</code> can use them without detecting them again.
+	 * @param p : the problem under solution
+	 * @param kp : a problem of the rationalized knowledge pool (with a non-null result)
+	 * @param concervative : a value between 0 and 1 that balances merge selection
+	 * @return the scored candidate, or <code>null</code> if there are no common statements
+	 */
+	public Candidate scoreCandidate(Problem p, Problem kp, float concervative){
+		//2.1 detect common statements
+		if(getLogLevel()>=3)
+			log("Detecting common non-trivial expressions between <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>", 1);
+		ArrayList<Statement> comm = commonNonTrivial(p.statements, kp.statements);
+		if(comm.size()==0)
+			return null;
+		//2.3 synchronize variables of common statements
+		if(getLogLevel()>=3)
+			log("Synchronizing variables between <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>", 2);
+		ArrayList<Statement> sync = commonVariableSync(p.statements, kp.statements);
+		//2.4a Find the names of the variables in kp that were synchronized
+		if(getLogLevel()>=3)
+			log("Merging into <i>"+getName()+"</i> equivalent expressions from <i>"+kp.getResult().getName()+"</i>", 2);
+		String commVar = "";
+		for(Statement c : sync){
+			if(!commVar.isEmpty())
+				commVar += " ";
+			/*if(c.isAssignment())
+				commVar += diffVariables(c.getVariables(), c.getTrivialVariable(), " ");
+			else*/
+				commVar += c.getVariables();
+		}
+		//2.4b&c found things to merge
+		ArrayList<Statement> ins = getAffectedFromVariables(kp.getResult().statements, commVar);
+		if(getLogLevel()>=3){
+			log("Expressions to merge into <i>"+getName()+"</i> from <i>"+kp.getResult().getName()+"</i>", 2);
+			for(Statement s : ins)
+				log(s.getExpression(), 3);
+		}
+		//count information information gained
+		float informationConcervative = 0;
+		float informationNew = 0;
+		for(Statement st : comm){
+			float info = st.getInformation()+1;
+			//get only common information if complex predicate rearrangement
+			float maxVal = 1;
+			if(!st.isTransitional()){
+				maxVal = 0;
+				for(Statement s : kp.statements)
+					if(!s.isTrivial() && s.isSame(st)){
+						float val = Statement.predicateSimilarity(s.getExpression(), s.matchExpression(st), s.getVariables(), config);
+						if(val>maxVal)
+							maxVal = val;
+					}
 			}
-			else if(threadMaxInformation[i]==maxInformation && threadSelectionImplemented[i]<selectionImplemented){
+			informationConcervative += info*maxVal;
+		}
+		for(Statement st : ins)
+			informationNew += st.getInformation()+1;
+		float information = informationConcervative*concervative+informationNew*(1-concervative);
+		return new Candidate(kp, information, informationConcervative, informationNew, comm, sync, commVar, ins);
+	}
+	
+	/**
+	 * <h1>getInformationBound</h1>
+	 * Calculates an upper bound of the information that <code>scoreCandidates</code> can measure for this
+	 * problem (which should belong to a rationalized knowledge pool). At most one common statement can be
+	 * detected for each non-trivial statement of this problem, each one contributing at most the given
+	 * maximum statement information, and at most all the non-input, non-output statements of this
+	 * problem's result can be merged.<br/>
+	 * The parts of the bound that depend only on this problem are calculated once, as problems of a
+	 * rationalized knowledge pool do not change.
+	 * @param maxStatementInformation : the maximum <code>getInformation()+1</code> between the statements
+	 * of the problem under solution
+	 * @param concervative : a value between 0 and 1 that balances merge selection
+	 * @return an upper bound of the information that merging this problem can provide
+	 */
+	float getInformationBound(float maxStatementInformation, float concervative){
+		if(boundNonTrivial<0){
+			float implemented = 0;
+			for(Statement st : result.statements)
+				if(!st.isInput() && !st.isOutput())
+					implemented += st.getInformation()+1;
+			int nonTrivial = 0;
+			for(Statement st : statements)
+				if(!st.isTrivial())
+					nonTrivial++;
+			boundImplemented = implemented;
+			boundNonTrivial = nonTrivial;
+		}
+		return Math.max(concervative, 0)*boundNonTrivial*maxStatementInformation+Math.max(1-concervative, 0)*boundImplemented;
+	}
+	
+	/**
+	 * <h1>getBestCandidates</h1>
+	 * Selects the candidates with maximum information. Between candidates with maximum information,
+	 * only those that add the least new information are kept. Candidates without positive
+	 * information are never selected.
+	 * @param candidates : a list of candidates (e.g. generated by <code>scoreCandidates</code>)
+	 * @return all candidates that are equally the best ones (empty if there is nothing to merge)
+	 */
+	public static ArrayList<Candidate> getBestCandidates(ArrayList<Candidate> candidates){
+		ArrayList<Candidate> select = new ArrayList<Candidate>();
+		float maxInformation = Float.MIN_VALUE;
+		float selectionImplemented = Float.MAX_VALUE;
+		for(Candidate c : candidates){
+			if(c.getInformation()>maxInformation || (c.getInformation()==maxInformation && c.getInformationNew()<selectionImplemented)){
 				select.clear();
-				select.addAll(threadSelection.get(i));
-				maxInformation = threadMaxInformation[i];
-				selectionImplemented = threadSelectionImplemented[i];
+				select.add(c);
+				maxInformation = c.getInformation();
+				selectionImplemented = c.getInformationNew();
 			}
-			else if(threadMaxInformation[i]==maxInformation && threadSelectionImplemented[i]==selectionImplemented){
-				select.addAll(threadSelection.get(i));
+			else if(c.getInformation()==maxInformation && c.getInformationNew()==selectionImplemented)
+				select.add(c);
+		}
+		return select;
+	}
+	
+	/**
+	 * <h1>merge</h1>
+	 * Stores inside this problem the result of merging a selected candidate into the given problem
+	 * (<b>this problem should be empty</b>). This performs the pre-processing of <code>solve</code>,
+	 * the steps 2.2 to 2.4 for the selected candidate only and then the post-processing. If no
+	 * candidate is given, the given problem's statements are copied without any merge.<br/>
+	 * The problem of the selected candidate is added to the merged problems of the given problem
+	 * and the result becomes the merged problems of this problem (see <code>getMergedProblems</code>).
+	 * @param p : the given problem (its statements should already be broken down if needed)
+	 * @param selection : the candidate to merge (<code>null</code> if there is nothing to merge)
+	 * @param unknownMessage : a message that will precede all non-implementable statements
+	 */
+	public void merge(Problem p, Candidate selection, String unknownMessage){
+		/**
+		 * 1. PRE-PROCESSING
+		 * 1.1 Detect input and outputs and generate a single input and a single output statement
+		 * 1.2 Create a copy of the given problem's original statements (we will need to alter the copied statements)
+		 */
+		//1.1a find inputs, outputs and iterators
+		long phaseStart = System.nanoTime();
+		String inputs = "";
+		String outputs = "";
+		String iters = "";
+		statements.clear();
+		mergedProblems = new ArrayList<Problem>(p.mergedProblems);
+		if(selection!=null)
+			mergedProblems.add(selection.getProblem());
+		for(Statement s : p.statements){
+			if(s.isInput()){
+				inputs = unionVariables(inputs, s.getVariables(), " ");
+			}
+			else if(s.isOutput()){
+				outputs = unionVariables(outputs, s.getVariables(), " ");
+			}
+			else if(s.isIterator()){
+				iters = unionVariables(iters, s.getVariables(), " ");
 			}
 		}
-		
-		Problem selection = Main.chooseBetweenProblems(select);
+		//1.1b generate single input statement and single output statement
+		if(!inputs.isEmpty())
+			statements.add(new Statement(inputs, "input", config));
+		if(!outputs.isEmpty())
+			statements.add(new Statement(outputs, "output", config));
+		//1.2 create a copy of the given problem's original statements
+		ArrayList<Statement> pendingStatements = new ArrayList<Statement>();
+		for(Statement s : p.statements)
+			pendingStatements.add(new Statement(s.getVariables(), s.getExpression(), config));
+		SolveStats.time(SolveStats.PREPROCESSING, phaseStart);
 
-		setLogLevel(prevLogLevel);
 		if(selection!=null)
 		{
-			log("Selected <i>"+selection.getName()+"</i> to merge ("+Math.round(maxInformation*10)/10.0+" bits of information)", 0);
-			Problem kp = selection;
-			ArrayList<Statement> comm = commonNonTrivial(p.statements, kp.statements);
+			phaseStart = System.nanoTime();
+			log("Selected <i>"+selection.getProblem().getName()+"</i> to merge ("+Math.round(selection.getInformation()*10)/10.0+" bits of information)", 0);
+			Problem kp = selection.getProblem();
+			//reuse the statements detected while scoring (detect them again if they have been discarded)
+			if(!selection.hasStatements()){
+				Candidate rescored = scoreCandidate(p, kp, 0);
+				if(rescored!=null)
+					selection = rescored;
+			}
+			ArrayList<Statement> comm = selection.hasStatements()?selection.getCommon():new ArrayList<Statement>();
+			ArrayList<Statement> sync = selection.hasStatements()?selection.getSync():new ArrayList<Statement>();
+			String commVar = selection.hasStatements()?selection.getSyncVariables():"";
 			//2.2 remove common expressions between p and kp
-			if(logLevel>=3)
+			if(getLogLevel()>=3)
 				log("Removing common expressions between <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>", 2);
 			pendingStatements = diff(pendingStatements, comm);
 			//2.3 synchronize variables of common statements
-			if(logLevel>=3)
-				log("Synchronizing variables between <i>"+p.getName()+"</i> and <i>"+kp.getName()+"</i>", 2);
-			ArrayList<Statement> sync = commonVariableSync(p.statements, kp.statements);
-			if(logLevel>=3)
+			if(getLogLevel()>=3)
 				log("Merging synchronized variables into <i>"+getName()+"</i>", 2);
 			pendingStatements = union(pendingStatements, sync);
-			//2.4a Find the names of the variables in kp that were synchronized
-			if(logLevel>=3)
-				log("Merging into <i>"+getName()+"</i> equivalent expressions from <i>"+kp.getResult().getName()+"</i>", 2);
-			String commVar = "";
-			for(Statement c : sync){
-				if(!commVar.isEmpty())
-					commVar += " ";
-				/*if(c.isAssignment())
-					commVar += diffVariables(c.getVariables(), c.getTrivialVariable(), " ");
-				*/
-				else
-					commVar += c.getVariables();
-			}
-			//2.4b&c Add all expressions in the result of kp that affect those variables
+			//2.4 add all expressions in the result of kp that affect the synchronized variables
 			if(!commVar.isEmpty()){
-				if(logLevel>=3)
-					log("Important variables: "+commVar, 3);
-				pendingStatements = union(pendingStatements, getAffectedFromVariables(kp.getResult().statements, commVar));
+				if(getLogLevel()>=3){
+					log("Merging into <i>"+getName()+"</i> equivalent expressions from <i>"+kp.getResult().getName()+"</i>", 2);
+					log(3, "Important variables: {}", commVar);
+				}
+				pendingStatements = union(pendingStatements, selection.getMerged());
 			}
+			SolveStats.time(SolveStats.MERGE, phaseStart);
 		}
 		else{
 			log("Nothing to merge", 0);
 			//solving non-assignments that affect outputs
-			if(logLevel>=3)
+			if(getLogLevel()>=3)
 				log("Find <i>"+getName()+"</i> expressions with non-output assignment that need to be solved", 1);
 			/*for(int i=0;i<pendingStatements.size();i++){
 				if(!pendingStatements.get(i).isInput()
@@ -674,19 +1032,19 @@ public class Problem {
 					&& !pendingStatements.get(i).isIterator()
 					&& pendingStatements.get(i).isAssignment("", inputs)
 					&& !pendingStatements.get(i).isSourceCode()){
-					log("Expression <i>"+pendingStatements.get(i).getExpression()+"</i> must be solved", 3);
-					pendingStatements.set(i, new Statement(pendingStatements.get(i).getVariables(), unknownMessage+pendingStatements.get(i).getExpression()));
+					log(3, "Expression <i>{}</i> must be solved", pendingStatements.get(i).getExpression());
+					pendingStatements.set(i, new Statement(pendingStatements.get(i).getVariables(), unknownMessage+pendingStatements.get(i).getExpression(), config));
 				}
 			}*/
 			for(Statement s : pendingStatements)
 				if(!s.isInput() && !s.isOutput() && !s.isIterator()){
-					s = new Statement(s.getVariables(), s.getExpression());
+					s = new Statement(s.getVariables(), s.getExpression(), config);
 					s.removeUnusedVariables();
 					s.removeDublicateVariables();
 					statements.add(s);
 				}
-			if(breakdownStatements)
-				collapse(breakdownAlsoCode, "");
+			if(config==null?breakdownStatements:config.breakdownStatements)
+				collapse(config==null?breakdownAlsoCode:config.breakdownAlsoCode, "");
 			if(isSolved())
 				log("Solved", 2);
 			else
@@ -703,12 +1061,13 @@ public class Problem {
 		 * 3.3 Remove statements that don't affect the output variables
 		 */
 		//3.0 copy statements in order to prevent data loss
+		phaseStart = System.nanoTime();
 		for(int i=0;i<pendingStatements.size();i++)
 			pendingStatements.set(i, new Statement(pendingStatements.get(i).getVariables(),
-					                               pendingStatements.get(i).getExpression()));
+					                               pendingStatements.get(i).getExpression(), config));
 
 		//3.0 add synchronizations to shorten variable names
-		if(logLevel>=3)
+		if(getLogLevel()>=3)
 			log("Renaming variables in <i>"+getName()+"</i>", 1);
 		String variables = "";
 		for(Statement st : pendingStatements)
@@ -740,43 +1099,48 @@ public class Problem {
 					nextVar = holdVar+inc;
 					inc++;
 				}
-				Statement st = new Statement(nextVar+" "+var, nextVar+" = "+var);
-				log("Added <i>"+st.getExpression()+"</i>", 3);
+				Statement st = new Statement(nextVar+" "+var, nextVar+" = "+var, config);
+				log(3, "Added <i>{}</i>", st.getExpression());
 				pendingStatements.add(st);
 			}
 		}
 		
+		SolveStats.time(SolveStats.RENAMING, phaseStart);
 		//3.1 remove iterators
-		if(logLevel>=3)
+		phaseStart = System.nanoTime();
+		if(getLogLevel()>=3)
 			log("Removing <i>"+getName()+"</i> iterators", 1);
 		for(int i=0;i<pendingStatements.size();i++)
 			if(pendingStatements.get(i).isIterator()){
 				for(String var : pendingStatements.get(i).variables){
-					pendingStatements.add(0, new Statement(var, var+" = 0"));
+					pendingStatements.add(0, new Statement(var, var+" = 0", config));
 					i++;
 				}
-				log("Removed <i>"+pendingStatements.get(i).getExpression()+"</i> (WARNING: causality may be lost)", 3);
+				log(3, "Removed <i>{}</i> (WARNING: causality may be lost)", pendingStatements.get(i).getExpression());
 				pendingStatements.remove(i);
 				i--;
 			}
+		SolveStats.time(SolveStats.ITERATOR_REMOVAL, phaseStart);
 		//3.2a eliminate synchronizations
-		if(logLevel>=3)
+		phaseStart = System.nanoTime();
+		if(getLogLevel()>=3)
 			log("Code prototype for <i>"+getName()+"</i>", 1);
-		for(Statement s : pendingStatements)
-			log("<i>"+s.toHTML()+"</i>", 3);
+		if(isLogged(3))
+			for(Statement s : pendingStatements)
+				log("<i>"+s.toHTML()+"</i>", 3);
 		/*//removing non-trivial statements
 		for(int i=0;i<pendingStatements.size();i++)
 			if(!pendingStatements.get(i).isTrivial()){
 				pendingStatements.remove(i);
 				i--;
 			}*/
-		if(logLevel>=3)
+		if(getLogLevel()>=3)
 			log("Peforming eliminations on generated code for <i>"+getName()+"</i>", 1);
 		for(int i=0;i<pendingStatements.size();i++){
 			//remove tautology
 			if(pendingStatements.get(i).isAssignment() && pendingStatements.get(i).variables.size()==2){
 				if(pendingStatements.get(i).variables.get(0).compareTo(pendingStatements.get(i).variables.get(1))==0){
-					log("Eliminated tautology <i>"+pendingStatements.get(i).getExpression()+"</i>", 3);
+					log(3, "Eliminated tautology <i>{}</i>", pendingStatements.get(i).getExpression());
 					pendingStatements.remove(i);
 					i--;
 					continue;
@@ -793,13 +1157,13 @@ public class Problem {
 					}
 				}
 			if(eliminate){
-				log("Eliminated dublicate <i>"+pendingStatements.get(i).getExpression()+"</i>", 3);
+				log(3, "Eliminated dublicate <i>{}</i>", pendingStatements.get(i).getExpression());
 				pendingStatements.remove(i);
 				i--;
 				continue;
 			}
 			if(pendingStatements.get(i).isTransitional() && pendingStatements.get(i).isAssignment(outputs, inputs)){
-				log("Inverting assignment <i>"+pendingStatements.get(i).getExpression()+"</i>", 3);
+				log(3, "Inverting assignment <i>{}</i>", pendingStatements.get(i).getExpression());
 				pendingStatements.get(i).inverse();
 			}
 			
@@ -815,19 +1179,21 @@ public class Problem {
 					}
 				}
 				if(found){
-					log("Substituted <i>"+pendingStatements.get(i).getExpression()+"</i>", 3);
+					log(3, "Substituted <i>{}</i>", pendingStatements.get(i).getExpression());
 					pendingStatements.remove(i);
 					i = 0;//do them from scratch
 				}
 			}
 		}
 		
+		SolveStats.time(SolveStats.ELIMINATION, phaseStart);
 		//3.3 remove statements that donnot affect the output
-		if(logLevel>=3)
+		phaseStart = System.nanoTime();
+		if(getLogLevel()>=3)
 			log("Removing statements from <i>"+getName()+"</i> not affecting its outputs: <i>"+outputs+"</i>", 1);
 		pendingStatements = getAffectedFromVariables(pendingStatements, outputs);
 		//3.4 remove statements unaffected from inputs
-		/*if(logLevel>=3)
+		/*if(getLogLevel()>=3)
 			log("Removing statements from <i>"+getName()+"</i> with variables that appear only once", 1);
 		Statement tempStatement = new Statement(inputs+" "+outputs, "any");
 		pendingStatements.add(tempStatement);
@@ -835,18 +1201,20 @@ public class Problem {
 		pendingStatements.remove(tempStatement);*/
 	
 		//solving non-assignments that affect outputs
-		if(logLevel>=3)
+		if(getLogLevel()>=3)
 			log("Find <i>"+getName()+"</i> expressions with non-output assignment that need to be solved", 1);
 		for(int i=0;i<pendingStatements.size();i++){
 			if(   !pendingStatements.get(i).isAssignment("", outputs)
 			   && !pendingStatements.get(i).isSourceCode()){
-				log("Expression <i>"+pendingStatements.get(i).getExpression()+"</i> must be solved", 3);
-				pendingStatements.set(i, new Statement(pendingStatements.get(i).getVariables(), unknownMessage+pendingStatements.get(i).getExpression()));
+				log(3, "Expression <i>{}</i> must be solved", pendingStatements.get(i).getExpression());
+				pendingStatements.set(i, new Statement(pendingStatements.get(i).getVariables(), unknownMessage+pendingStatements.get(i).getExpression(), config));
 			}
 		}
 		
+		SolveStats.time(SolveStats.PRUNING, phaseStart);
 		//add pending statements to statements according to assignment order
-		if(logLevel>=3)
+		phaseStart = System.nanoTime();
+		if(getLogLevel()>=3)
 			log("Rearranging <i>"+getName()+"</i> statements", 1);
 		while(!pendingStatements.isEmpty()){
 			Statement s = pendingStatements.get(0);
@@ -861,27 +1229,29 @@ public class Problem {
 					}
 				}
 				if(minFound<pendingStatements.size()){
-					if(logLevel>=3)
+					if(isLogged(3)){
 						log("<b>Statement</b>", 2);
-					log("<i>"+s.toHTML()+"</i>", 3);
+						log("<i>"+s.toHTML()+"</i>", 3);
+						log("<b>Must be preceeded by</b>", 3);
+						log("<i>"+pendingStatements.get(minFound).toHTML()+"</i>", 3);
+					}
 					s = pendingStatements.get(minFound);
-					log("<b>Must be preceeded by</b>", 3);
-					log("<i>"+s.toHTML()+"</i>", 3);
 					startSearch = minFound+1;
 				}
 				else
 					startSearch = pendingStatements.size();
 			}
-			statements.add(new Statement(s.getVariables(), s.getExpression()));
+			statements.add(new Statement(s.getVariables(), s.getExpression(), config));
 			pendingStatements.remove(s);
 		}
 
-		prevLogLevel = logLevel;
-		logLevel = 3;
+		int prevLogLevel = getLogLevel();
+		setLogLevel(3);
 		log("Final code for <i>"+getName()+"</i>", 1);
 		for(Statement s : statements)
 			log("<i>"+s.toHTML()+"</i>", 3);
-		logLevel = prevLogLevel;
+		setLogLevel(prevLogLevel);
+		SolveStats.time(SolveStats.REARRANGEMENT, phaseStart);
 		
 		
 		if(isSolved())
@@ -908,7 +1278,8 @@ public class Problem {
 				if(s1.isSame(s2)){
 					//ret.add(new Statement(s1.getVariables(), s2.matchExpression(s1)));
 					ret.add(s1);
-					log("Found common non-trivial expressions <i>"+s1.toHTML()+"</i> and <i>"+s2.toHTML()+"</i>", 3);
+					if(isLogged(3))
+						log("Found common non-trivial expressions <i>"+s1.toHTML()+"</i> and <i>"+s2.toHTML()+"</i>", 3);
 					break;
 				}
 				//else
@@ -933,7 +1304,8 @@ public class Problem {
 				if(s1.isSame(s2)){
 					//ret.add(new Statement(s1.getVariables(), s2.matchExpression(s1)));
 					ret.add(s1);
-					log("Found common expressions <i>"+s1.toHTML()+"</i> and <i>"+s2.toHTML()+"</i>", 3);
+					if(isLogged(3))
+						log("Found common expressions <i>"+s1.toHTML()+"</i> and <i>"+s2.toHTML()+"</i>", 3);
 					break;
 				}
 		}
@@ -959,14 +1331,14 @@ public class Problem {
 				if(s1.isSame(s2)){
 					for(int i=0;i<s2.variables.size();i++)
 						if(s1.variables.get(i).compareTo(s2.variables.get(i))!=0){
-							Statement exp = new Statement(s1.variables.get(i)+" "+s2.variables.get(i), s1.variables.get(i)+" = "+s2.variables.get(i));
+							Statement exp = new Statement(s1.variables.get(i)+" "+s2.variables.get(i), s1.variables.get(i)+" = "+s2.variables.get(i), config);
 							boolean exists = false;
 							for(Statement r : ret)
 								if(r.getExpression().compareTo(exp.getExpression())==0)
 									exists = true;
 							if(!exists){
 								ret.add(exp);
-								log("Expression to sync <i>"+ret.get(ret.size()-1)+"</i>", 3);
+								log(3, "Expression to sync <i>{}</i>", exp);
 							}
 						}
 					break;
@@ -997,7 +1369,7 @@ public class Problem {
 				}
 			if(!exists)
 				ret.add(s1);
-			else if(!s1.isTrivial())
+			else if(!s1.isTrivial() && isLogged(3))
 				log("Removed expression: <i>"+s1.toHTML()+"</i>", 3);
 		}
 		return ret;
@@ -1083,7 +1455,8 @@ public class Problem {
 				}
 			if(!exists){
 				ret.add(s2);
-				log("Added expression: <i>"+s2.toHTML()+"</i>", 3);
+				if(isLogged(3))
+					log("Added expression: <i>"+s2.toHTML()+"</i>", 3);
 			}
 		}
 		return ret;
@@ -1141,7 +1514,7 @@ public class Problem {
 		for(int i=0;i<pendingStatements.size();i++)
 			if(!pendingStatements.get(i).isInput() && !pendingStatements.get(i).isOutput() && states.get(i)==1)
 				ret.add(pendingStatements.get(i));
-			else if(!pendingStatements.get(i).isInput() && !pendingStatements.get(i).isOutput())
+			else if(!pendingStatements.get(i).isInput() && !pendingStatements.get(i).isOutput() && isLogged(3))
 				log("Removed expression: <i>"+pendingStatements.get(i).toHTML()+"</i>", 3);
 		return ret;
 	}
@@ -1228,8 +1601,10 @@ public class Problem {
 					break;
 				}
 			}
-			if(hasFloating)
-				log("Removed expression: <i>"+pendingStatements.get(i).toHTML()+"</i>", 3);
+			if(hasFloating){
+				if(isLogged(3))
+					log("Removed expression: <i>"+pendingStatements.get(i).toHTML()+"</i>", 3);
+			}
 			else
 				ret.add(pendingStatements.get(i));
 		}
@@ -1257,6 +1632,11 @@ public class Problem {
 			s.save(state, doc);
 			e.appendChild(state);
 		}
+		for(String source : provenance){
+			Element sourceElement = doc.createElement("provenance");
+			sourceElement.appendChild(doc.createTextNode(source));
+			e.appendChild(sourceElement);
+		}
 	}
 	
 	/**
@@ -1273,6 +1653,10 @@ public class Problem {
 		NodeList elementList = e.getElementsByTagName("statement");
 		for(int i=0;i<elementList.getLength();i++)
 			statements.add(new Statement((Element)elementList.item(i)));
+		provenance = new ArrayList<String>();
+		NodeList provenanceList = e.getElementsByTagName("provenance");
+		for(int i=0;i<provenanceList.getLength();i++)
+			provenance.add(provenanceList.item(i).getTextContent());
 	}
 	
 	/**
@@ -1364,6 +1748,34 @@ public class Problem {
 		return query.getCode().compareTo(getCode())==0;
 	}
 	
+	/**
+	 * <h1>getStructuralHash</h1>
+	 * Generates a hash of the problem's statements that does not depend on their order or on the
+	 * problem's name. Problems with the same statements (i.e. same variables and expressions) have
+	 * the same structural hash.
+	 * @return the structural hash as a hexadecimal String
+	 */
+	public String getStructuralHash(){
+		ArrayList<String> lines = new ArrayList<String>();
+		for(Statement s : statements)
+			lines.add(s.getVariables()+"\t"+s.getExpression());
+		Collections.sort(lines);
+		try{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for(String line : lines){
+				digest.update(line.getBytes("UTF-8"));
+				digest.update((byte)'\n');
+			}
+			String hash = "";
+			for(byte b : digest.digest())
+				hash += String.format("%02x", b);
+			return hash;
+		}
+		catch(Exception e){
+			return Integer.toHexString(lines.hashCode());
+		}
+	}
+	
 
 	/**
 	 * <h1>getNonClassProblem</h1>
@@ -1382,11 +1794,11 @@ public class Problem {
 				isClassMember = true;
 		if(!isClassMember)
 			return null;
-		Problem p = new Problem(getName()+"_declass");
+		Problem p = new Problem(getName()+"_declass", config);
 		for(Statement s : statements)
 			p.statements.add(new Statement(
 					diffVariables(s.getVariables(), functionMemberVariable, " "),
-					s.getExpression().replace(functionMemberVariable+".", ""))  );
+					s.getExpression().replace(functionMemberVariable+".", ""), config)  );
 		if(getResult()!=null){
 			p.setResult(getResult().getNonClassProblem());
 			log("Created de-classed instance for <i>"+getName()+"</i>",2);
@@ -1453,9 +1865,9 @@ public class Problem {
 				if(group.get(st)==i && !st.isInput() && !st.isOutput() && !st.isIterator())
 					groupStatements.add(st);
 			if(!groupStatements.isEmpty()){
-				Problem p = new Problem(getName()+"__"+subproblems.size());//use __ instead of _ in order to be able to remove things later
-				p.statements.add(new Statement(getOutput(""), "output"));
-				p.statements.add(new Statement(getInput(), "input"));
+				Problem p = new Problem(getName()+"__"+subproblems.size(), config);//use __ instead of _ in order to be able to remove things later
+				p.statements.add(new Statement(getOutput(""), "output", config));
+				p.statements.add(new Statement(getInput(), "input", config));
 				for(Statement st : groupStatements)
 					if(inThis.get(st))
 						p.statements.add(st);
@@ -1468,9 +1880,9 @@ public class Problem {
 					}
 					//System.out.println("Subproblem variables: "+subproblemVars);
 					subproblemVars = diffVariables(subproblemVars, ignoreVariables, " ");
-					Problem res = new Problem(getResult().getName()+"_"+subproblems.size());
-					res.statements.add(new Statement(getOutput(""), "output"));
-					res.statements.add(new Statement(getInput(), "input"));
+					Problem res = new Problem(getResult().getName()+"_"+subproblems.size(), config);
+					res.statements.add(new Statement(getOutput(""), "output", config));
+					res.statements.add(new Statement(getInput(), "input", config));
 					for(Statement st : getAffectingVariables(getResult().statements, subproblemVars))
 						if(!st.isInput() && !st.isOutput()){
 							res.statements.add(st);
@@ -1512,14 +1924,14 @@ public class Problem {
 			Statement st = statements.get(i);
 			String expr = st.getExpression();
 			if(!st.isSourceCode())
-			for(String spl : Statement.languageAnd){
+			for(String spl : config==null?Statement.languageAnd:config.languageAnd){
 				if(expr.contains(" "+spl+" ")){
 					String vars = st.getVariables();
 					String[] expressions = expr.split("\\s+"+spl+"\\s+");
 					statements.remove(i);
 					String prevVariables = "";
 					for(String e : expressions){
-						Statement s = new Statement(vars, e);
+						Statement s = new Statement(vars, e, config);
 						s.removeUnusedVariables();
 						String addVar = "";
 						for(String newVar : prevVariables.split(" "))
@@ -1549,8 +1961,9 @@ public class Problem {
 	 */
 	public void expand(String prefix, boolean allowSourceCodeExpansion){
 		//replace constants with variables
-		if(constantsAreVariables)
+		if(config==null?constantsAreVariables:config.constantsAreVariables)
 		{
+			SolveStats.count(SolveStats.REGEX_COMPILES);
 			Pattern pattern = Pattern.compile("[\\(,\\s,\\n\\[,=,\\>,\\<,\\,][0-9]+[\\),\\s,\\n\\],=,\\>,\\<,\\,]"); 
 			for(Statement s : statements){
 				boolean found  = false;
@@ -1566,9 +1979,10 @@ public class Problem {
 			}
 		}
 		//remove variables from statements
+		String[] separators = config==null?Statement.separators:config.separators;
 		String splitExpression = "";
-		for(int s=0;s<Statement.separators.length;s++){
-			String sep = Statement.separators[s];
+		for(int s=0;s<separators.length;s++){
+			String sep = separators[s];
 			if(!splitExpression.isEmpty())
 				splitExpression += "|";
 			if(!sep.isEmpty()){
@@ -1662,6 +2076,7 @@ public class Problem {
 							String remove = "[\\s]";
 							String maintain = "[\\(\\)\\[\\]\\,^$]";
 
+							SolveStats.count(SolveStats.REGEX_COMPILES);
 							Pattern pattern = Pattern.compile("( (?<="+maintain+")|"+remove+")*(?<!\\.)"+Pattern.quote(repl)+"(?!\\.)"+"( (?="+maintain+")|"+remove+")*");
 							Matcher matcher = pattern.matcher(" "+expr+" ");
 							varsAdded += " "+nextVar+" ";
@@ -1673,12 +2088,12 @@ public class Problem {
 							matcher.appendTail(buffer);
 							expr = buffer.toString().trim();
 							expr = expr.replace("\\s*\\(\\s*"+Pattern.quote(nextVar)+"\\s*\\)", " "+nextVar+" ");
-							Statement st = new Statement(nextVar+" "+vars, nextVar+" = "+repl);
+							Statement st = new Statement(nextVar+" "+vars, nextVar+" = "+repl, config);
 							st.removeUnusedVariables();
 							statements.add(i, st);
 							added++;
 						}
-					Statement st = new Statement(nextVars+" "+vars, expr);
+					Statement st = new Statement(nextVars+" "+vars, expr, config);
 					st.removeUnusedVariables();
 					statements.set(i+added, st);
 				}
@@ -1686,7 +2101,7 @@ public class Problem {
 			i += 1-added;
 		}
 		if(result!=null)
-			result.expand("", breakdownAlsoCode);
+			result.expand("", config==null?breakdownAlsoCode:config.breakdownAlsoCode);
 	}
 
 	/**
@@ -1728,6 +2143,7 @@ public class Problem {
 							else
 								repl = "\n"+"   "+repl.substring(0, repl.length());
 						}
+						SolveStats.count(SolveStats.REGEX_COMPILES);
 						Pattern pattern = Pattern.compile("[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\;\\:\n^]"+Pattern.quote(statements.get(i).getTrivialVariable())+"[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\;\\:\n$]");
 						Matcher matcher = pattern.matcher(" "+expr+" ");
 						StringBuffer buffer = new StringBuffer();
@@ -1805,18 +2221,19 @@ public class Problem {
 					}
 				}
 				if(minFound<pendingStatements.size()){
-					if(logLevel>=3)
+					if(isLogged(3)){
 						log("<b>Statement</b>", 2);
-					log("<i>"+s.toHTML()+"</i>", 3);
+						log("<i>"+s.toHTML()+"</i>", 3);
+						log("<b>Must be preceeded by</b>", 3);
+						log("<i>"+pendingStatements.get(minFound).toHTML()+"</i>", 3);
+					}
 					s = pendingStatements.get(minFound);
-					log("<b>Must be preceeded by</b>", 3);
-					log("<i>"+s.toHTML()+"</i>", 3);
 					startSearch = minFound+1;
 				}
 				else
 					startSearch = pendingStatements.size();
 			}
-			statements.add(new Statement(s.getVariables(), s.getExpression()));
+			statements.add(new Statement(s.getVariables(), s.getExpression(), config));
 			pendingStatements.remove(s);
 		}
 	}
@@ -0,0 +1,540 @@
+package analyser;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * <h1>ResultCache</h1>
+ * This class stores solutions of problems, so that solving the same problem with the same settings does
+ * not need to be repeated. Solutions are identified by a key that depends on the statements of the
+ * problem, on the solver settings (see <code>SolverConfig.getHash</code>) and on the ignored libraries
+ * (see <code>getKey</code>), but not on the rest of the knowledge pool.<br/>
+ * Instead, each solution records the knowledge pool problems that contributed to it, i.e. those whose
+ * rationalized problems were merged into it, together with their hashes (see
+ * <code>Knowledge.getSourceHash</code>). A solution is only retrieved while all its contributing problems
+ * are unchanged, so that editing or importing unrelated problems keeps it valid. When the knowledge pool
+ * changes, <code>invalidate</code> also removes exactly the solutions with a contributing problem that has
+ * changed or has been removed. The contributors of all stored solutions are indexed by their names, so
+ * that invalidation only looks at the solutions of contributors that have changed since the previous
+ * invalidation.<br/>
+ * Solutions are kept in memory (the least recently used ones are evicted when the cache is full) and,
+ * optionally, in a directory with one XML file per solution. The directory holds at most a given number of
+ * solutions (again evicting the least recently used ones) together with an index file of their
+ * contributors, so that solutions are only loaded from their files when they are retrieved.
+ */
+public class ResultCache {
+	//the default maximum number of solutions kept in memory
+	public static final int DEFAULT_CAPACITY = 100;
+	//the default maximum number of solutions kept in the cache directory
+	public static final int DEFAULT_DISK_CAPACITY = 1000;
+	//the name of the index file in the cache directory
+	public static final String INDEX_FILE = "index.xml";
+	//the maximum number of solutions kept in memory
+	private int capacity;
+	//the maximum number of solutions kept in the cache directory
+	private int diskCapacity;
+	//the directory in which solutions are saved (null to keep solutions only in memory)
+	private File directory;
+	//the solutions kept in memory for each key, from the least to the most recently used
+	private LinkedHashMap<String, Entry> entries;
+	//the contributors of all stored solutions for each key, from the least to the most recently used (null until it is loaded)
+	private LinkedHashMap<String, LinkedHashMap<String, String>> index = null;
+	//the keys of the stored solutions of each contributor name
+	private HashMap<String, HashSet<String>> keysByContributor = new HashMap<String, HashSet<String>>();
+	//the source hash of each knowledge pool problem for its name at the previous invalidation (null before the first one)
+	private HashMap<String, String> poolHashes = null;
+	//the contributors of solutions stored since the previous invalidation with hashes that it did not see
+	private HashSet<String> unchecked = new HashSet<String>();
+
+	/**
+	 * <h1>Entry</h1>
+	 * A stored solution together with the hashes of its contributing knowledge pool problems.
+	 */
+	private static class Entry {
+		private Problem solution;
+		//the source hash of each contributing problem (see Knowledge.getSourceHash) for its name
+		private LinkedHashMap<String, String> contributors;
+
+		public Entry(Problem solution, LinkedHashMap<String, String> contributors){
+			this.solution = solution;
+			this.contributors = contributors;
+		}
+	}
+
+	/**
+	 * <h1>ResultCache</h1>
+	 * Creates a cache that keeps solutions only in memory.
+	 * @param capacity : the maximum number of solutions kept in memory
+	 */
+	public ResultCache(int capacity){
+		this(capacity, null);
+	}
+
+	/**
+	 * <h1>ResultCache</h1>
+	 * Creates a cache that keeps solutions in memory and also saves up to <code>DEFAULT_DISK_CAPACITY</code>
+	 * solutions in a directory.
+	 * @param capacity : the maximum number of solutions kept in memory
+	 * @param directory : the path of the directory in which solutions are saved (it is created if needed,
+	 * <code>null</code> to keep solutions only in memory)
+	 */
+	public ResultCache(int capacity, String directory){
+		this(capacity, directory, DEFAULT_DISK_CAPACITY);
+	}
+
+	/**
+	 * <h1>ResultCache</h1>
+	 * Creates a cache that keeps solutions in memory and also saves them in a directory. The directory is
+	 * not read until the cache is first used.
+	 * @param capacity : the maximum number of solutions kept in memory
+	 * @param directory : the path of the directory in which solutions are saved (it is created if needed,
+	 * <code>null</code> to keep solutions only in memory)
+	 * @param diskCapacity : the maximum number of solutions kept in the directory
+	 */
+	public ResultCache(int capacity, String directory, int diskCapacity){
+		this.capacity = Math.max(1, capacity);
+		this.diskCapacity = Math.max(this.capacity, diskCapacity);
+		this.directory = directory==null?null:new File(directory);
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ResultCache.Entry> eldest){
+				return size()>ResultCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * <h1>getHash</h1>
+	 * @param text : a String
+	 * @return the SHA-1 hash of the String in hexadecimal form
+	 */
+	public static String getHash(String text){
+		try{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			String hash = "";
+			for(byte b : digest.digest(text.getBytes("UTF-8")))
+				hash += String.format("%02x", b);
+			return hash;
+		}
+		catch(Exception e){
+			return Integer.toHexString(text.hashCode());
+		}
+	}
+
+	/**
+	 * <h1>getPoolHash</h1>
+	 * Combines the hashes of the problems of a knowledge pool (see <code>Knowledge.getSourceHash</code>)
+	 * into a single hash.
+	 * @param sourceHashes : the hashes of the problems, in the order of the knowledge pool
+	 * @return the hash as a hexadecimal String
+	 */
+	public static String getPoolHash(Collection<String> sourceHashes){
+		StringBuilder text = new StringBuilder();
+		for(String hash : sourceHashes)
+			text.append(hash).append('\n');
+		return getHash(text.toString());
+	}
+
+	/**
+	 * <h1>getKey</h1>
+	 * Generates the key of a solution.
+	 * @param query : the problem to be solved
+	 * @param config : the solver configuration
+	 * @param ignoredLibraries : libraries ignored from the knowledge pool (may be <code>null</code>)
+	 * @return the key as a hexadecimal String
+	 */
+	public static String getKey(Problem query, SolverConfig config, ArrayList<String> ignoredLibraries){
+		ArrayList<String> ignored = new ArrayList<String>();
+		if(ignoredLibraries!=null)
+			for(String ign : ignoredLibraries)
+				if(ign!=null)
+					ignored.add(ign);
+		Collections.sort(ignored);
+		return getHash(query.getStructuralHash()+"\n"+query.getFunctionMemberVariable()+"\n"
+				+config.getHash()+"\n"+ignored);
+	}
+
+	/**
+	 * <h1>get</h1>
+	 * Retrieves a stored solution, first from memory and then from the cache directory (if any). A solution
+	 * with a contributing problem that has changed or is no longer in the given knowledge pool is removed
+	 * instead of being retrieved.
+	 * @param key : the key of the solution (see <code>getKey</code>)
+	 * @param knowledge : the knowledge pool the solution is requested for
+	 * @return a copy of the stored solution (<code>null</code> if there is none)
+	 */
+	synchronized public Problem get(String key, Knowledge knowledge){
+		LinkedHashMap<String, String> contributors = getIndex().get(key);
+		if(contributors==null)
+			return null;
+		if(!isValid(contributors, knowledge)){
+			remove(key);
+			saveIndex();
+			return null;
+		}
+		Entry entry = entries.get(key);
+		if(entry==null && directory!=null){
+			entry = load(new File(directory, key+".xml"));
+			if(entry==null){
+				remove(key);
+				saveIndex();
+				return null;
+			}
+			entries.put(key, entry);
+		}
+		if(entry==null)
+			return null;
+		return copy(entry.solution);
+	}
+
+	/**
+	 * <h1>put</h1>
+	 * Stores a solution in memory and in the cache directory (if any).
+	 * @param key : the key of the solution (see <code>getKey</code>)
+	 * @param solution : the solution
+	 * @param contributors : the knowledge pool problems that contributed to the solution
+	 */
+	synchronized public void put(String key, Problem solution, Collection<Problem> contributors){
+		LinkedHashMap<String, String> hashes = new LinkedHashMap<String, String>();
+		for(Problem contributor : contributors)
+			hashes.put(contributor.getName(), Knowledge.getSourceHash(contributor));
+		Entry entry = new Entry(copy(solution), hashes);
+		remove(key);
+		entries.put(key, entry);
+		addToIndex(key, hashes);
+		//solutions of a knowledge pool that the previous invalidation did not see are checked by the next one
+		for(Map.Entry<String, String> contributor : hashes.entrySet())
+			if(poolHashes==null || !contributor.getValue().equals(poolHashes.get(contributor.getKey())))
+				unchecked.add(contributor.getKey());
+		if(directory!=null){
+			directory.mkdirs();
+			save(entry, new File(directory, key+".xml"));
+		}
+		//evict the least recently used solutions
+		int limit = directory==null?capacity:diskCapacity;
+		while(index.size()>limit)
+			remove(index.keySet().iterator().next());
+		saveIndex();
+	}
+
+	/**
+	 * <h1>invalidate</h1>
+	 * Removes all stored solutions (from memory and from the cache directory) that have a contributing
+	 * problem which has changed or is no longer in the given knowledge pool. Only the solutions of problems
+	 * that have changed since the previous invalidation are checked, so this should be called whenever the
+	 * knowledge pool changes.
+	 * @param knowledge : the current knowledge pool
+	 * @return the number of removed solutions
+	 */
+	synchronized public int invalidate(Knowledge knowledge){
+		HashMap<String, String> current = new HashMap<String, String>();
+		for(Problem p : knowledge.getProblems())
+			if(p.getResult()!=null)
+				current.put(p.getName(), Knowledge.getSourceHash(p));
+		getIndex();
+		HashSet<String> changed = new HashSet<String>(unchecked);
+		if(poolHashes==null)
+			changed.addAll(keysByContributor.keySet());
+		else{
+			for(Map.Entry<String, String> previous : poolHashes.entrySet())
+				if(!previous.getValue().equals(current.get(previous.getKey())))
+					changed.add(previous.getKey());
+			for(String name : current.keySet())
+				if(!poolHashes.containsKey(name))
+					changed.add(name);
+		}
+		poolHashes = current;
+		unchecked.clear();
+		HashSet<String> invalid = new HashSet<String>();
+		for(String name : changed){
+			HashSet<String> keys = keysByContributor.get(name);
+			if(keys!=null)
+				for(String key : keys)
+					if(!index.get(key).get(name).equals(current.get(name)))
+						invalid.add(key);
+		}
+		for(String key : invalid)
+			remove(key);
+		if(!invalid.isEmpty())
+			saveIndex();
+		return invalid.size();
+	}
+
+	/**
+	 * <h1>clear</h1>
+	 * Removes all stored solutions (from memory and from the cache directory).
+	 */
+	synchronized public void clear(){
+		entries.clear();
+		index = new LinkedHashMap<String, LinkedHashMap<String, String>>(16, 0.75f, true);
+		keysByContributor.clear();
+		unchecked.clear();
+		if(directory!=null && directory.isDirectory())
+			for(File file : directory.listFiles())
+				if(file.getName().endsWith(".xml"))
+					file.delete();
+	}
+
+	/**
+	 * <h1>size</h1>
+	 * @return the number of solutions kept in memory
+	 */
+	synchronized public int size(){
+		return entries.size();
+	}
+
+	/**
+	 * <h1>getStoredCount</h1>
+	 * @return the number of stored solutions (in memory or in the cache directory)
+	 */
+	synchronized public int getStoredCount(){
+		return getIndex().size();
+	}
+
+	/**
+	 * <h1>getIndex</h1>
+	 * Loads the contributors of the solutions in the cache directory the first time it is called. If the
+	 * directory has no index file, it is created by loading each solution once. Files of the directory that
+	 * are not in the index are deleted.
+	 * @return the contributors of all stored solutions for each key
+	 */
+	private LinkedHashMap<String, LinkedHashMap<String, String>> getIndex(){
+		if(index!=null)
+			return index;
+		index = new LinkedHashMap<String, LinkedHashMap<String, String>>(16, 0.75f, true);
+		if(directory==null || !directory.isDirectory())
+			return index;
+		File indexFile = new File(directory, INDEX_FILE);
+		if(indexFile.exists())
+			loadIndex(indexFile);
+		else{
+			//solutions saved without an index are indexed from the least to the most recently saved
+			File[] files = directory.listFiles();
+			Arrays.sort(files, new Comparator<File>(){
+				@Override
+				public int compare(File first, File second){
+					return Long.compare(first.lastModified(), second.lastModified());
+				}
+			});
+			for(File file : files)
+				if(file.getName().endsWith(".xml")){
+					Entry entry = load(file);
+					if(entry!=null)
+						addToIndex(file.getName().substring(0, file.getName().length()-4), entry.contributors);
+				}
+		}
+		for(File file : directory.listFiles())
+			if(file.getName().endsWith(".xml") && !file.getName().equals(INDEX_FILE)
+					&& !index.containsKey(file.getName().substring(0, file.getName().length()-4)))
+				file.delete();
+		while(index.size()>diskCapacity)
+			remove(index.keySet().iterator().next());
+		saveIndex();
+		return index;
+	}
+
+	/**
+	 * <h1>isValid</h1>
+	 * @param contributors : the source hash of each contributing problem of a solution for its name
+	 * @param knowledge : the knowledge pool
+	 * @return <code>true</code> if all contributing problems are in the knowledge pool and have not changed
+	 */
+	private static boolean isValid(LinkedHashMap<String, String> contributors, Knowledge knowledge){
+		if(contributors.isEmpty())
+			return true;
+		HashMap<String, Problem> current = new HashMap<String, Problem>();
+		for(Problem p : knowledge.getProblems())
+			if(p.getResult()!=null && contributors.containsKey(p.getName()))
+				current.put(p.getName(), p);
+		for(Map.Entry<String, String> contributor : contributors.entrySet()){
+			Problem p = current.get(contributor.getKey());
+			if(p==null || !contributor.getValue().equals(Knowledge.getSourceHash(p)))
+				return false;
+		}
+		return true;
+	}
+
+	private void addToIndex(String key, LinkedHashMap<String, String> contributors){
+		index.put(key, contributors);
+		for(String name : contributors.keySet()){
+			HashSet<String> keys = keysByContributor.get(name);
+			if(keys==null){
+				keys = new HashSet<String>();
+				keysByContributor.put(name, keys);
+			}
+			keys.add(key);
+		}
+	}
+
+	/**
+	 * <h1>remove</h1>
+	 * Removes a stored solution from memory, from the index and from the cache directory (if any).
+	 * @param key : the key of the solution
+	 */
+	private void remove(String key){
+		entries.remove(key);
+		LinkedHashMap<String, String> contributors = getIndex().remove(key);
+		if(contributors!=null)
+			for(String name : contributors.keySet()){
+				HashSet<String> keys = keysByContributor.get(name);
+				keys.remove(key);
+				if(keys.isEmpty())
+					keysByContributor.remove(name);
+			}
+		if(directory!=null)
+			(new File(directory, key+".xml")).delete();
+	}
+
+	private static Problem copy(Problem p){
+		Problem copy = new Problem(p.getName());
+		copy.setLibrary(p.getLibrary());
+		copy.setFunctionMemberVariable(p.getFunctionMemberVariable());
+		copy.setProvenance(p.getProvenance());
+		for(Statement st : p.statements)
+			copy.statements.add(new Statement(st.getVariables(), st.getExpression()));
+		return copy;
+	}
+
+	private static void appendContributors(LinkedHashMap<String, String> contributors, Element parent, Document doc){
+		for(Map.Entry<String, String> contributor : contributors.entrySet()){
+			Element con = doc.createElement("contributor");
+			Element name = doc.createElement("name");
+			name.appendChild(doc.createTextNode(contributor.getKey()));
+			con.appendChild(name);
+			Element hash = doc.createElement("hash");
+			hash.appendChild(doc.createTextNode(contributor.getValue()));
+			con.appendChild(hash);
+			parent.appendChild(con);
+		}
+	}
+
+	private static LinkedHashMap<String, String> readContributors(Element parent){
+		LinkedHashMap<String, String> contributors = new LinkedHashMap<String, String>();
+		NodeList contributorList = parent.getElementsByTagName("contributor");
+		for(int i=0;i<contributorList.getLength();i++){
+			Element con = (Element)contributorList.item(i);
+			contributors.put(con.getElementsByTagName("name").item(0).getTextContent(),
+					con.getElementsByTagName("hash").item(0).getTextContent());
+		}
+		return contributors;
+	}
+
+	private static void write(Document doc, File file){
+		try{
+			TransformerFactory transformerFactory = TransformerFactory.newInstance();
+			Transformer transformer = transformerFactory.newTransformer();
+			DOMSource source = new DOMSource(doc);
+			StreamResult result = new StreamResult(file);
+			transformer.transform(source, result);
+		}
+		catch(Exception e){
+			//error message on fail
+			System.err.println("Could not save file '"+file.getPath()+"':"+e.toString());
+		}
+	}
+
+	private static Document read(File file) throws Exception{
+		DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+		Document doc = dBuilder.parse(file);
+		doc.getDocumentElement().normalize();
+		return doc;
+	}
+
+	private void saveIndex(){
+		if(directory==null)
+			return;
+		try{
+			//create the XML documents
+			Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			Element rootElement = doc.createElement("root");
+			doc.appendChild(rootElement);
+			//from the least to the most recently used
+			for(Map.Entry<String, LinkedHashMap<String, String>> stored : index.entrySet()){
+				Element entry = doc.createElement("entry");
+				Element key = doc.createElement("key");
+				key.appendChild(doc.createTextNode(stored.getKey()));
+				entry.appendChild(key);
+				appendContributors(stored.getValue(), entry, doc);
+				rootElement.appendChild(entry);
+			}
+			directory.mkdirs();
+			write(doc, new File(directory, INDEX_FILE));
+		}
+		catch(Exception e){
+			//error message on fail
+			System.err.println("Could not save the index of '"+directory.getPath()+"':"+e.toString());
+		}
+	}
+
+	private void loadIndex(File file){
+		try{
+			NodeList entryList = read(file).getElementsByTagName("entry");
+			for(int i=0;i<entryList.getLength();i++){
+				Element entry = (Element)entryList.item(i);
+				addToIndex(entry.getElementsByTagName("key").item(0).getTextContent(), readContributors(entry));
+			}
+		}
+		catch(Exception e){
+			//error message on fail
+			System.out.println("Could not load file '"+file.getPath()+"': "+e.toString());
+		}
+	}
+
+	private static void save(Entry entry, File file){
+		try{
+			//create the XML documents
+			DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+			DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+			Document doc = docBuilder.newDocument();
+			Element rootElement = doc.createElement("root");
+			doc.appendChild(rootElement);
+			appendContributors(entry.contributors, rootElement, doc);
+			Element prob = doc.createElement("problem");
+			entry.solution.save(prob, doc);
+			rootElement.appendChild(prob);
+			//create file
+			write(doc, file);
+		}
+		catch(Exception e){
+			//error message on fail
+			System.err.println("Could not save file '"+file.getPath()+"':"+e.toString());
+		}
+	}
+
+	private static Entry load(File file){
+		try{
+			//load XML file
+			Document doc = read(file);
+			LinkedHashMap<String, String> contributors = readContributors(doc.getDocumentElement());
+			Problem solution = new Problem((Element)doc.getElementsByTagName("problem").item(0));
+			return new Entry(solution, contributors);
+		}
+		catch(Exception e){
+			//error message on fail
+			System.out.println("Could not load file '"+file.getPath()+"': "+e.toString());
+			return null;
+		}
+	}
+}
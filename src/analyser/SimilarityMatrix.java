@@ -0,0 +1,306 @@
+package analyser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <h1>SimilarityMatrix</h1>
+ * This class remembers predicate similarities (see <code>Statement.predicateSimilarity</code>) between the
+ * statements of a rationalized knowledge pool, so that <code>Statement.isSame</code> does not need to
+ * compare the same pairs of pool statements in every step of every solve.<br/>
+ * Statements are compared through their canonical forms, in which each variable is replaced by its
+ * position among the statement's variables (see <code>Form</code>). This way, statements that are merged
+ * into a problem under solution (which get renamed variables) can still be looked up.<br/>
+ * The canonical forms of the knowledge pool are indexed without being compared (see <code>add</code>). The
+ * similarity of two indexed forms is computed the first time a solve compares them, so only the pairs that
+ * solves actually reach are ever computed. Each indexed form has a row that records which forms it has been
+ * compared with, but stores only the similarities above a minimum value (the lowest similarity threshold the
+ * matrix is used with), which keeps the matrix sparse. Rows are locked separately, so that a matrix can be
+ * shared between concurrent solves.
+ */
+public class SimilarityMatrix {
+	//the prefix of variable positions in canonical forms (it is not part of any identifier)
+	private static final String PLACEHOLDER = "\u00a7";
+	//the pattern of identifiers (the same as the one used by Statement.matchExpression)
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z\\_][A-Za-z0-9\\_]*");
+	//the settings the similarities are computed with
+	private SolverConfig config;
+	//similarities that are not above this value are not stored
+	private float minSimilarity;
+	//the row of each indexed canonical form
+	private ConcurrentHashMap<String, Row> rows = new ConcurrentHashMap<String, Row>();
+	//the last settings found to be compatible (see isCompatible)
+	volatile private SolverConfig lastCompatible = null;
+
+	/**
+	 * <h1>Row</h1>
+	 * The similarities of an indexed canonical form with the indexed forms it has been compared with.
+	 * A row must be locked while it is accessed.
+	 */
+	private static class Row {
+		//the position of the form in the order forms were indexed
+		private final int index;
+		//the positions of the forms whose similarity has been computed
+		private final BitSet computed = new BitSet();
+		//the computed similarities that are above the minimum similarity, for the positions of their forms
+		private final HashMap<Integer, Float> similarities = new HashMap<Integer, Float>();
+
+		Row(int index){
+			this.index = index;
+		}
+	}
+
+	/**
+	 * <h1>Form</h1>
+	 * The canonical form of a statement, together with the information needed to check whether comparing
+	 * canonical forms gives the same result as comparing the statements themselves. A form is immutable
+	 * and remembers the statement contents it was generated from, so that it can be cached by the statement.
+	 */
+	static class Form {
+		//the statement contents the form was generated from
+		private final String expression;
+		private final String trivialVariable;
+		private final String trivialSeparator;
+		private final String commentType;
+		private final String[] variables;
+		private final String[] endings;
+		//the canonical expression
+		private final String canonical;
+		//the canonical expression preceded by the number of variables (null if the statement has no canonical form)
+		private final String text;
+		//the variables of the canonical expression in a string format
+		private final String placeholders;
+		//the identifiers of the expression that are not variables (with and without their endings)
+		private final HashSet<String> free;
+		private final HashSet<String> freeStems;
+		//the variables without their endings
+		private final String[] variableStems;
+		//false if comparing this form may differ from comparing the statement itself
+		private final boolean stable;
+
+		Form(Statement st, String expression, String trivialVariable, String trivialSeparator, String commentType, String[] endings){
+			this.expression = expression;
+			this.trivialVariable = trivialVariable;
+			this.trivialSeparator = trivialSeparator;
+			this.commentType = commentType;
+			this.variables = st.variables.toArray(new String[st.variables.size()]);
+			this.endings = endings;
+			String full = st.getExpression();
+			HashSet<String> vars = new HashSet<String>(Arrays.asList(variables));
+			free = new HashSet<String>();
+			freeStems = new HashSet<String>();
+			Matcher matcher = IDENTIFIER.matcher(full);
+			while(matcher.find())
+				if(!vars.contains(matcher.group(0))){
+					free.add(matcher.group(0));
+					freeStems.add(getStem(matcher.group(0), endings));
+				}
+			variableStems = new String[variables.length];
+			HashSet<String> stems = new HashSet<String>();
+			boolean stable = true;
+			for(int i=0;i<variables.length;i++){
+				variableStems[i] = getStem(variables[i], endings);
+				if(!stems.add(variableStems[i]) || freeStems.contains(variableStems[i]))
+					stable = false;
+			}
+			this.stable = stable;
+			if(vars.size()!=variables.length || full.contains(PLACEHOLDER)){
+				canonical = null;
+				text = null;
+				placeholders = null;
+				return;
+			}
+			HashMap<String, String> replacements = new HashMap<String, String>();
+			String placeholders = "";
+			for(int i=0;i<variables.length;i++){
+				replacements.put(variables[i], PLACEHOLDER+i);
+				placeholders += (i==0?"":" ")+PLACEHOLDER+i;
+			}
+			this.placeholders = placeholders;
+			canonical = Statement.matchExpression(full, replacements);
+			text = variables.length+"\n"+canonical;
+		}
+
+		/**
+		 * <h1>isFormOf</h1>
+		 * @return <code>true</code> if this form was generated from the given statement contents
+		 */
+		boolean isFormOf(String expression, String trivialVariable, String trivialSeparator, String commentType, ArrayList<String> variables, String[] endings){
+			if(expression!=this.expression || trivialVariable!=this.trivialVariable || trivialSeparator!=this.trivialSeparator
+					|| commentType!=this.commentType || endings!=this.endings || variables.size()!=this.variables.length)
+				return false;
+			for(int i=0;i<this.variables.length;i++)
+				if(!this.variables[i].equals(variables.get(i)))
+					return false;
+			return true;
+		}
+	}
+
+	/**
+	 * <h1>SimilarityMatrix</h1>
+	 * Creates an empty matrix.
+	 * @param config : the settings the similarities are computed with (only their endings, ignored
+	 * predicates and custom comments matter)
+	 * @param minSimilarity : similarities that are not above this value are not stored (the matrix cannot
+	 * be used with lower similarity thresholds)
+	 */
+	public SimilarityMatrix(SolverConfig config, float minSimilarity){
+		this.config = config;
+		this.minSimilarity = minSimilarity;
+	}
+
+	/**
+	 * <h1>isCompatible</h1>
+	 * @param config : a solver configuration
+	 * @return <code>true</code> if the similarities of this matrix are the same as the ones computed with the given settings
+	 */
+	public boolean isCompatible(SolverConfig config){
+		if(config==null)
+			return Arrays.equals(this.config.endings, Statement.endings) && Arrays.equals(this.config.ignored, Statement.ignored)
+					&& Arrays.equals(this.config.customComments, Statement.customComments);
+		if(config==lastCompatible)
+			return true;
+		if(Arrays.equals(this.config.endings, config.endings) && Arrays.equals(this.config.ignored, config.ignored)
+				&& Arrays.equals(this.config.customComments, config.customComments)){
+			lastCompatible = config;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * <h1>getMinSimilarity</h1>
+	 * @return the value that stored similarities are above (the matrix cannot be used with lower similarity thresholds)
+	 */
+	public float getMinSimilarity(){
+		return minSimilarity;
+	}
+
+	/**
+	 * <h1>size</h1>
+	 * @return the number of indexed canonical forms
+	 */
+	public int size(){
+		return rows.size();
+	}
+
+	/**
+	 * <h1>add</h1>
+	 * Indexes the canonical forms of all statements of the given problems (and of their results) that are
+	 * not already indexed. Forms are not compared here, but only once a solve compares their statements.
+	 * @param problems : the problems of a rationalized knowledge pool
+	 */
+	synchronized public void add(Collection<Problem> problems){
+		SolveStats stats = SolveStats.getCurrent();
+		for(Problem p : problems){
+			ArrayList<Statement> statements = new ArrayList<Statement>(p.statements);
+			if(p.getResult()!=null && p.getResult()!=p)
+				statements.addAll(p.getResult().statements);
+			for(Statement st : statements){
+				Form form = st.getForm(config.endings, stats);
+				if(form.text!=null && !rows.containsKey(form.text))
+					rows.put(form.text, new Row(rows.size()));
+			}
+		}
+	}
+
+	/**
+	 * <h1>getSimilarity</h1>
+	 * Looks up the similarity of two indexed forms, as computed by <code>Statement.isSame</code> when the
+	 * statement of the first form is compared with the statement of the second. If the forms have not been
+	 * compared before, their similarity is computed and stored in the row of the first form.
+	 * @param row : the row of the first form
+	 * @param column : the position of the second form
+	 * @param first : the first form
+	 * @param second : the second form
+	 * @param stats : the statistics of the current solve
+	 * @return the similarity (the minimum similarity if the similarity is not above it)
+	 */
+	private float getSimilarity(Row row, int column, Form first, Form second, SolveStats stats){
+		synchronized(row){
+			if(row.computed.get(column)){
+				Float similarity = row.similarities.get(column);
+				stats.increment(SolveStats.SIMILARITY_MATRIX_HITS);
+				return similarity==null?minSimilarity:similarity;
+			}
+		}
+		stats.increment(SolveStats.SIMILARITY_MATRIX_MISSES);
+		float similarity = Statement.predicateSimilarity(second.canonical, first.canonical, first.placeholders, config);
+		synchronized(row){
+			row.computed.set(column);
+			if(similarity>minSimilarity)
+				row.similarities.put(column, similarity);
+		}
+		return similarity;
+	}
+
+	/**
+	 * <h1>isSame</h1>
+	 * Performs the comparison of <code>Statement.isSame</code> between two statements with the same number
+	 * of variables (after their assignment and transitional checks) by comparing their canonical forms.
+	 * Comparisons that are decided without computing a similarity are reported as hits of the matrix.
+	 * @param st : the statement that is compared
+	 * @param s : the statement to compare with
+	 * @param stConfig : the settings of the compared statement (<code>null</code> for the static settings)
+	 * @param threshold : the similarity threshold
+	 * @param stats : the statistics of the current solve (see <code>SolveStats.getCurrent</code>)
+	 * @return 1 if the statements are the same, 0 if they are not, or -1 if it cannot be determined through
+	 * this matrix and the statements should be compared directly
+	 */
+	int isSame(Statement st, Statement s, SolverConfig stConfig, float threshold, SolveStats stats){
+		if(!isCompatible(stConfig))
+			return undecided(stats);
+		Form first = st.getForm(config.endings, stats);
+		Form second = s.getForm(config.endings, stats);
+		if(first.text==null || second.text==null)
+			return undecided(stats);
+		//the variables of the compared statement must not appear in the other one in any other role
+		for(String var : first.variables)
+			if(second.free.contains(var))
+				return undecided(stats);
+		if(first.text.equals(second.text))
+			return decided(true, stats);
+		if(st.isTrivial())
+			return decided(false, stats);
+		if(threshold<minSimilarity || !first.stable)
+			return undecided(stats);
+		for(String stem : first.variableStems)
+			if(second.freeStems.contains(stem))
+				return undecided(stats);
+		Row row = rows.get(first.text);
+		Row column = rows.get(second.text);
+		if(row==null || column==null)
+			return undecided(stats);
+		return getSimilarity(row, column.index, first, second, stats)>threshold?1:0;
+	}
+
+	private static int decided(boolean same, SolveStats stats){
+		stats.increment(SolveStats.SIMILARITY_MATRIX_HITS);
+		return same?1:0;
+	}
+
+	private static int undecided(SolveStats stats){
+		stats.increment(SolveStats.SIMILARITY_MATRIX_MISSES);
+		return -1;
+	}
+
+	/**
+	 * <h1>getStem</h1>
+	 * @param word : a word
+	 * @param endings : the endings to ignore
+	 * @return the word without its first matching ending (as removed by <code>Statement.isSamePredicate</code>)
+	 */
+	private static String getStem(String word, String[] endings){
+		for(String ending : endings)
+			if(word.endsWith(ending))
+				return word.substring(0, word.length()-ending.length());
+		return word;
+	}
+}
@@ -0,0 +1,164 @@
+package analyser;
+
+/**
+ * <h1>SolveContext</h1>
+ * This class holds the state of a single solve that would otherwise be shared between all solves,
+ * i.e. its settings, its cancellation token and its log record. A context is bound to the thread
+ * that performs the solve (and is inherited by the threads it creates), so that the static logging
+ * functions of <code>Problem</code> write to the context's log record instead of the shared one.
+ * This allows many solves to run concurrently without mixing up their logs.<br/>
+ * Solves without a bound context (e.g. the ones started by the user interface) keep using the
+ * shared log record.
+ */
+public class SolveContext {
+	//the context of the current thread (threads created while a context is bound also use it)
+	private static final InheritableThreadLocal<SolveContext> current = new InheritableThreadLocal<SolveContext>();
+	//the settings of the solve
+	private final SolverConfig config;
+	//the cancellation token of the solve
+	private final CancellationToken token;
+	//whether ties between candidates can be resolved by the user
+	private final boolean interactive;
+	//the recorded solution steps, possibly shared with other solves (null if steps are not shared)
+	private final IterationMemo memo;
+	//the log record of the solve
+	private final EventLog logRecord = new EventLog();
+	//the statistics of the solve
+	private final SolveStats stats = new SolveStats();
+	volatile private int logLevel = 3;
+
+	/**
+	 * <h1>SolveContext</h1>
+	 * The constructor for the SolveContext class.
+	 * @param config : the settings of the solve
+	 * @param token : the cancellation token of the solve
+	 * @param interactive : <code>true</code> if ties between candidates can be resolved by the user
+	 * (otherwise the first candidate is selected)
+	 */
+	public SolveContext(SolverConfig config, CancellationToken token, boolean interactive){
+		this(config, token, interactive, null);
+	}
+
+	/**
+	 * <h1>SolveContext</h1>
+	 * A constructor for the SolveContext class that also shares recorded solution steps between solves.
+	 * @param config : the settings of the solve
+	 * @param token : the cancellation token of the solve
+	 * @param interactive : <code>true</code> if ties between candidates can be resolved by the user
+	 * (otherwise the first candidate is selected)
+	 * @param memo : the recorded solution steps shared by the solves (<code>null</code> to not share steps)
+	 */
+	public SolveContext(SolverConfig config, CancellationToken token, boolean interactive, IterationMemo memo){
+		this.config = config;
+		this.token = token;
+		this.interactive = interactive;
+		this.memo = memo;
+	}
+
+	/**
+	 * <h1>getCurrent</h1>
+	 * @return the context bound to the current thread (<code>null</code> if there is none)
+	 */
+	public static SolveContext getCurrent(){
+		return current.get();
+	}
+
+	/**
+	 * <h1>bind</h1>
+	 * Binds this context and its statistics (see <code>SolveStats.bind</code>) to the current thread.
+	 * Threads created by the current thread from now on are also bound to this context.
+	 */
+	public void bind(){
+		current.set(this);
+		SolveStats.bind(stats);
+	}
+
+	/**
+	 * <h1>unbind</h1>
+	 * Removes any context and statistics bound to the current thread.
+	 */
+	public static void unbind(){
+		current.remove();
+		SolveStats.bind(null);
+	}
+
+	/**
+	 * <h1>getConfig</h1>
+	 * @return the settings of the solve
+	 */
+	public SolverConfig getConfig(){
+		return config;
+	}
+
+	/**
+	 * <h1>getToken</h1>
+	 * @return the cancellation token of the solve
+	 */
+	public CancellationToken getToken(){
+		return token;
+	}
+
+	/**
+	 * <h1>getMemo</h1>
+	 * @return the recorded solution steps shared with other solves (<code>null</code> if steps are not shared)
+	 */
+	public IterationMemo getMemo(){
+		return memo;
+	}
+
+	/**
+	 * <h1>getStats</h1>
+	 * @return the statistics of the solve
+	 */
+	public SolveStats getStats(){
+		return stats;
+	}
+
+	/**
+	 * <h1>isInteractive</h1>
+	 * @return <code>true</code> if ties between candidates can be resolved by the user
+	 */
+	public boolean isInteractive(){
+		return interactive;
+	}
+
+	/**
+	 * <h1>getLogLevel</h1>
+	 * @return the maximum log level of the solve
+	 */
+	public int getLogLevel(){
+		return logLevel;
+	}
+
+	/**
+	 * <h1>setLogLevel</h1>
+	 * @param level : the new maximum log level of the solve
+	 */
+	public void setLogLevel(int level){
+		logLevel = level;
+	}
+
+	/**
+	 * <h1>getLogRecord</h1>
+	 * @return the log record of the solve
+	 */
+	public EventLog getLogRecord(){
+		return logRecord;
+	}
+
+	/**
+	 * <h1>clearLog</h1>
+	 * Clears the log record of the solve.
+	 */
+	public void clearLog(){
+		logRecord.clear();
+	}
+
+	/**
+	 * <h1>getLog</h1>
+	 * @return the log record of the solve in HTML form
+	 */
+	public String getLog(){
+		return logRecord.getHtml();
+	}
+}
@@ -0,0 +1,346 @@
+package analyser;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>SolveStats</h1>
+ * This class measures where a solve spends its time. It accumulates the duration and the number of
+ * executions of each phase of the solution algorithm (the numbered phases of <code>Problem.solve</code>
+ * and <code>Problem.merge</code>, together with the rationalization of the knowledge pool and the
+ * splitting into subproblems) and counts some operations that dominate the cost of solving.<br/>
+ * Each solve binds its own statistics to the thread that performs it (see <code>bind</code>), and threads
+ * created by that thread report to the same statistics. Solve contexts bind their statistics together with
+ * themselves (see <code>SolveContext.bind</code>). The statistics of the current thread are found with
+ * <code>getCurrent</code>, so concurrent solves never report to each other's statistics. The static
+ * functions <code>time</code> and <code>count</code> update them without locking, so that concurrent
+ * threads of the same solve can all report to them. Each duration and counter is striped between the
+ * threads that update it (see <code>LongAdder</code>), so that frequently counted operations do not make
+ * these threads contend for the same memory. Phases that run concurrently (e.g. independent
+ * subproblems) add up their durations, and phases may be nested in other phases (e.g. when a candidate
+ * selector performs look-ahead solves while candidates are being selected).<br/>
+ * The statistics also account for the CPU time and the bytes allocated by the threads of the solve,
+ * as measured by the JVM for each thread (see <code>startAccounting</code>). Each thread that works
+ * for a solve (including worker threads) reports its own usage, so the CPU time of a multi-threaded
+ * solve may exceed its wall-clock time. Usage that the JVM cannot measure is reported as zero.
+ */
+public class SolveStats {
+	//the phases of the solution algorithm
+	public static final int RATIONALIZATION = 0;
+	public static final int SPLITTING = 1;
+	public static final int PREPROCESSING = 2;
+	public static final int SCORING = 3;
+	public static final int MERGE = 4;
+	public static final int RENAMING = 5;
+	public static final int ITERATOR_REMOVAL = 6;
+	public static final int ELIMINATION = 7;
+	public static final int PRUNING = 8;
+	public static final int REARRANGEMENT = 9;
+	public static final String[] PHASE_NAMES = {"rationalization", "subproblem splitting", "pre-processing",
+			"candidate scoring", "merge", "renaming", "iterator removal", "eliminations", "affected statement pruning",
+			"rearrangement"};
+	//the counted operations
+	public static final int IS_SAME_CALLS = 0;
+	public static final int PREDICATE_SIMILARITY_CALLS = 1;
+	public static final int REGEX_COMPILES = 2;
+	public static final int CANDIDATES_SCORED = 3;
+	public static final int CANDIDATES_PRUNED = 4;
+	public static final int SIMILARITY_MATRIX_HITS = 5;
+	public static final int ITERATION_MEMO_HITS = 6;
+	public static final int RESULT_CACHE_HITS = 7;
+	public static final int SIMILARITY_MATRIX_MISSES = 8;
+	public static final int FORM_CACHE_HITS = 9;
+	public static final int FORM_CACHE_MISSES = 10;
+	public static final String[] COUNTER_NAMES = {"isSame calls", "predicateSimilarity calls", "regex compiles",
+			"candidates scored", "candidates pruned", "similarity matrix hits", "iteration memo hits", "result cache hits",
+			"similarity matrix misses", "canonical form cache hits", "canonical form cache misses"};
+	//the statistics bound to the current thread (threads created while statistics are bound also use them)
+	private static final InheritableThreadLocal<SolveStats> current = new InheritableThreadLocal<SolveStats>();
+	//the statistics of work that is not part of any solve (they are never reported)
+	private static final SolveStats unbound = new SolveStats();
+	//the JVM's measurements of threads (null if thread CPU time cannot be measured)
+	private static final ThreadMXBean threadBean = getThreadBean();
+	//the JVM's measurements of thread allocations (null if they cannot be measured)
+	private static final com.sun.management.ThreadMXBean allocationBean = getAllocationBean();
+	//the total duration of each phase in nanoseconds
+	private final LongAdder[] phaseTimes = createAdders(PHASE_NAMES.length);
+	//the number of times each phase was performed
+	private final LongAdder[] phaseCounts = createAdders(PHASE_NAMES.length);
+	//the value of each counter
+	private final LongAdder[] counters = createAdders(COUNTER_NAMES.length);
+	//the CPU time of the threads of the solve in nanoseconds and the bytes they allocated
+	private final AtomicLong cpuTime = new AtomicLong(0);
+	private final AtomicLong allocatedBytes = new AtomicLong(0);
+
+	/**
+	 * <h1>getCurrent</h1>
+	 * @return the statistics bound to the current thread, or else statistics that are not reported
+	 * (e.g. for comparisons that are not part of a solve)
+	 */
+	public static SolveStats getCurrent(){
+		SolveStats stats = current.get();
+		return stats!=null?stats:unbound;
+	}
+
+	/**
+	 * <h1>bind</h1>
+	 * Binds statistics to the current thread, so that the static functions of this class report to them.
+	 * Threads created by the current thread from now on also report to them.
+	 * @param stats : the statistics to bind (<code>null</code> to remove the bound statistics)
+	 * @return the statistics that were bound to the current thread before (<code>null</code> if there were none),
+	 * which should be bound again once the solve finishes
+	 */
+	public static SolveStats bind(SolveStats stats){
+		SolveStats previous = current.get();
+		if(stats==null)
+			current.remove();
+		else
+			current.set(stats);
+		return previous;
+	}
+
+	/**
+	 * <h1>time</h1>
+	 * Adds a performed phase to the current statistics (see <code>getCurrent</code>).
+	 * @param phase : the phase (e.g. <code>SolveStats.MERGE</code>)
+	 * @param start : the value of <code>System.nanoTime</code> when the phase started
+	 */
+	public static void time(int phase, long start){
+		getCurrent().addPhase(phase, System.nanoTime()-start);
+	}
+
+	/**
+	 * <h1>count</h1>
+	 * Increments a counter of the current statistics (see <code>getCurrent</code>).
+	 * @param counter : the counter (e.g. <code>SolveStats.IS_SAME_CALLS</code>)
+	 */
+	public static void count(int counter){
+		getCurrent().counters[counter].increment();
+	}
+
+	/**
+	 * <h1>count</h1>
+	 * Increases a counter of the current statistics (see <code>getCurrent</code>).
+	 * @param counter : the counter (e.g. <code>SolveStats.CANDIDATES_PRUNED</code>)
+	 * @param amount : the amount to add to the counter
+	 */
+	public static void count(int counter, long amount){
+		if(amount!=0)
+			getCurrent().counters[counter].add(amount);
+	}
+
+	/**
+	 * <h1>startAccounting</h1>
+	 * Starts measuring the resources used by the current thread. Call <code>stopAccounting</code> from the
+	 * same thread once it has finished working for the solve.
+	 * @return the CPU time and allocated bytes of the current thread so far (-1 for those that cannot be measured)
+	 */
+	public static long[] startAccounting(){
+		return new long[]{getThreadCpuTime(), getThreadAllocatedBytes()};
+	}
+
+	/**
+	 * <h1>stopAccounting</h1>
+	 * Adds the resources used by the current thread since <code>startAccounting</code> was called to the
+	 * current statistics (see <code>getCurrent</code>).
+	 * @param start : the value returned by <code>startAccounting</code> in the same thread
+	 */
+	public static void stopAccounting(long[] start){
+		long cpu = getThreadCpuTime();
+		long bytes = getThreadAllocatedBytes();
+		SolveStats stats = getCurrent();
+		if(start[0]>=0 && cpu>=0)
+			stats.cpuTime.addAndGet(cpu-start[0]);
+		if(start[1]>=0 && bytes>=0)
+			stats.allocatedBytes.addAndGet(bytes-start[1]);
+	}
+
+	private static LongAdder[] createAdders(int count){
+		LongAdder[] adders = new LongAdder[count];
+		for(int i=0;i<count;i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	private static long getThreadCpuTime(){
+		if(threadBean==null)
+			return -1;
+		return threadBean.getCurrentThreadCpuTime();
+	}
+
+	private static long getThreadAllocatedBytes(){
+		if(allocationBean==null)
+			return -1;
+		return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static ThreadMXBean getThreadBean(){
+		try{
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if(!bean.isCurrentThreadCpuTimeSupported())
+				return null;
+			if(!bean.isThreadCpuTimeEnabled())
+				bean.setThreadCpuTimeEnabled(true);
+			return bean;
+		}
+		catch(Exception e){
+			return null;
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean getAllocationBean(){
+		try{
+			ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if(!(bean instanceof com.sun.management.ThreadMXBean))
+				return null;
+			com.sun.management.ThreadMXBean extended = (com.sun.management.ThreadMXBean)bean;
+			if(!extended.isThreadAllocatedMemorySupported())
+				return null;
+			if(!extended.isThreadAllocatedMemoryEnabled())
+				extended.setThreadAllocatedMemoryEnabled(true);
+			return extended;
+		}
+		catch(Exception e){
+			return null;
+		}
+		catch(LinkageError e){
+			//the JVM does not provide the com.sun.management extensions
+			return null;
+		}
+	}
+
+	/**
+	 * <h1>addPhase</h1>
+	 * @param phase : the phase
+	 * @param nanos : the duration of the phase in nanoseconds
+	 */
+	public void addPhase(int phase, long nanos){
+		phaseTimes[phase].add(nanos);
+		phaseCounts[phase].increment();
+	}
+
+	/**
+	 * <h1>increment</h1>
+	 * Increments a counter of these statistics. Code that counts many operations should obtain the
+	 * current statistics once and use this, instead of calling <code>count</code> for each operation.
+	 * @param counter : the counter (e.g. <code>SolveStats.IS_SAME_CALLS</code>)
+	 */
+	public void increment(int counter){
+		counters[counter].increment();
+	}
+
+	/**
+	 * <h1>add</h1>
+	 * Adds all durations and counters of other statistics to these ones.
+	 * @param stats : the other statistics
+	 */
+	public void add(SolveStats stats){
+		for(int i=0;i<PHASE_NAMES.length;i++){
+			phaseTimes[i].add(stats.phaseTimes[i].sum());
+			phaseCounts[i].add(stats.phaseCounts[i].sum());
+		}
+		for(int i=0;i<COUNTER_NAMES.length;i++)
+			counters[i].add(stats.counters[i].sum());
+		cpuTime.addAndGet(stats.cpuTime.get());
+		allocatedBytes.addAndGet(stats.allocatedBytes.get());
+	}
+
+	/**
+	 * <h1>copy</h1>
+	 * @return new statistics with the current values of these ones
+	 */
+	public SolveStats copy(){
+		SolveStats stats = new SolveStats();
+		stats.add(this);
+		return stats;
+	}
+
+	/**
+	 * <h1>clear</h1>
+	 * Resets all durations and counters to zero.
+	 */
+	public void clear(){
+		for(int i=0;i<PHASE_NAMES.length;i++){
+			phaseTimes[i].reset();
+			phaseCounts[i].reset();
+		}
+		for(int i=0;i<COUNTER_NAMES.length;i++)
+			counters[i].reset();
+		cpuTime.set(0);
+		allocatedBytes.set(0);
+	}
+
+	/**
+	 * <h1>getPhaseTime</h1>
+	 * @param phase : the phase (e.g. <code>SolveStats.MERGE</code>)
+	 * @return the total duration of the phase in milliseconds
+	 */
+	public double getPhaseTime(int phase){
+		return phaseTimes[phase].sum()/1000000.0;
+	}
+
+	/**
+	 * <h1>getPhaseCount</h1>
+	 * @param phase : the phase (e.g. <code>SolveStats.MERGE</code>)
+	 * @return the number of times the phase was performed
+	 */
+	public long getPhaseCount(int phase){
+		return phaseCounts[phase].sum();
+	}
+
+	/**
+	 * <h1>getCounter</h1>
+	 * @param counter : the counter (e.g. <code>SolveStats.IS_SAME_CALLS</code>)
+	 * @return the value of the counter
+	 */
+	public long getCounter(int counter){
+		return counters[counter].sum();
+	}
+
+	/**
+	 * <h1>getCpuTime</h1>
+	 * @return the total CPU time of the threads of the solve in milliseconds
+	 */
+	public double getCpuTime(){
+		return cpuTime.get()/1000000.0;
+	}
+
+	/**
+	 * <h1>getAllocatedBytes</h1>
+	 * @return the total number of bytes allocated by the threads of the solve
+	 */
+	public long getAllocatedBytes(){
+		return allocatedBytes.get();
+	}
+
+	/**
+	 * <h1>log</h1>
+	 * Adds the statistics to the log record (see <code>Problem.log</code>), skipping phases that were not
+	 * performed and counters that are zero.
+	 */
+	public void log(){
+		Problem.log("Solve statistics", 1);
+		for(int i=0;i<PHASE_NAMES.length;i++)
+			if(getPhaseCount(i)!=0)
+				Problem.log(2, "{}: {} ms ({} times)", PHASE_NAMES[i], Math.round(getPhaseTime(i)*10)/10.0, getPhaseCount(i));
+		for(int i=0;i<COUNTER_NAMES.length;i++)
+			if(getCounter(i)!=0)
+				Problem.log(2, "{}: {}", COUNTER_NAMES[i], getCounter(i));
+		Problem.log(2, "CPU time: {} ms, allocated: {} KB", Math.round(getCpuTime()*10)/10.0, allocatedBytes.get()/1024);
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder str = new StringBuilder();
+		for(int i=0;i<PHASE_NAMES.length;i++)
+			str.append(PHASE_NAMES[i]).append(": ").append(Math.round(getPhaseTime(i)*10)/10.0).append(" ms (")
+				.append(getPhaseCount(i)).append(" times)\n");
+		for(int i=0;i<COUNTER_NAMES.length;i++)
+			str.append(COUNTER_NAMES[i]).append(": ").append(getCounter(i)).append("\n");
+		str.append("CPU time: ").append(Math.round(getCpuTime()*10)/10.0).append(" ms\n");
+		str.append("allocated bytes: ").append(allocatedBytes.get()).append("\n");
+		return str.toString();
+	}
+}
@@ -0,0 +1,361 @@
+package analyser;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * <h1>SolveTrace</h1>
+ * This class records everything needed to repeat a solve: the given problem, the hash of the knowledge pool
+ * it was solved against (see <code>Knowledge.getPoolHash</code>), the ignored libraries, the settings and
+ * every selection of a problem to merge, including the selections between equally informative candidates
+ * (e.g. the answers of the user). It also records the solution and the duration of the solve.<br/>
+ * A trace is recorded by solving with a configuration that has a trace path (see
+ * <code>SolverConfig.withTracePath</code>) and is saved to that path as an XML file once the solve finishes.
+ * A loaded trace can be replayed against the same knowledge pool with <code>Solver.replay</code>, which
+ * answers the selections between candidates as recorded (see <code>CandidateSelector.Replayed</code>) and
+ * checks whether the same solution is found.<br/>
+ * Choices are identified by their fingerprint (see <code>DecisionStore.getFingerprint</code>), so that
+ * choices made concurrently (e.g. for independent subproblems) can be replayed in any order.
+ */
+public class SolveTrace {
+	//the given problem, as it was before solving
+	private Problem problem;
+	//the hash of the knowledge pool the problem was solved against
+	private String poolHash;
+	//whether the problem was a member of the knowledge pool (and was thus excluded from it)
+	private boolean pooled;
+	//the libraries ignored from the knowledge pool
+	private ArrayList<String> ignoredLibraries;
+	//the settings of the solve
+	private SolverConfig config;
+	//the description of the selector used between equally informative candidates
+	private String selector;
+	//the recorded selections, in the order they were made
+	private ArrayList<DecisionStore.Decision> choices = new ArrayList<DecisionStore.Decision>();
+	//the solution (null if the solve has not finished)
+	private Problem solution;
+	//the wall-clock duration of the solve in milliseconds
+	private double solveTime;
+
+	/**
+	 * <h1>SolveTrace</h1>
+	 * Starts recording a solve. This must be created before solving, since solving breaks down the
+	 * statements of the given problem.
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries ignored from the knowledge pool
+	 * @param config : the solver configuration
+	 */
+	public SolveTrace(Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, SolverConfig config){
+		problem = copy(p);
+		poolHash = knowledge.getPoolHash(p, ignoredLibraries);
+		for(Problem kp : knowledge.getProblems())
+			if(kp==p)
+				pooled = true;
+		this.ignoredLibraries = new ArrayList<String>(ignoredLibraries);
+		this.config = config.withTrace(null).withTracePath(null).withSimilarityMatrix(null);
+		selector = ""+config.getSelector();
+	}
+
+	/**
+	 * <h1>SolveTrace</h1>
+	 * Loads a trace from a designated file.
+	 * @param path : the path of the file from which the trace will be loaded
+	 * @throws Exception if the file cannot be read or is not a trace
+	 */
+	public SolveTrace(String path) throws Exception{
+		File fXmlFile = new File(path);
+		DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+		DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+		Document doc = dBuilder.parse(fXmlFile);
+		doc.getDocumentElement().normalize();
+		Element root = doc.getDocumentElement();
+		if(!root.getNodeName().equals("trace"))
+			throw new IllegalArgumentException("'"+path+"' does not hold a solve trace");
+		problem = new Problem(getChild(root, "problem"));
+		poolHash = getText(root, "poolHash");
+		pooled = Boolean.parseBoolean(getText(root, "pooled"));
+		ignoredLibraries = getTexts(getChild(root, "ignoredLibraries"), "library");
+		config = loadConfig(getChild(root, "config"));
+		selector = getText(root, "selector");
+		NodeList choiceList = getChild(root, "choices").getElementsByTagName("choice");
+		for(int i=0;i<choiceList.getLength();i++){
+			Element choice = (Element)choiceList.item(i);
+			ArrayList<String> candidates = getTexts(choice, "candidate");
+			choices.add(new DecisionStore.Decision(getText(choice, "fingerprint"), candidates.toArray(new String[candidates.size()]),
+					getText(choice, "selected")));
+		}
+		Element solutionElement = getChild(root, "solution");
+		if(solutionElement!=null){
+			solution = new Problem(solutionElement);
+			solveTime = Double.parseDouble(getText(root, "solveTime"));
+		}
+	}
+
+	private static Problem copy(Problem p){
+		Problem copy = new Problem(p.getName());
+		copy.setLibrary(p.getLibrary());
+		copy.setFunctionMemberVariable(p.getFunctionMemberVariable());
+		for(Statement st : p.statements)
+			copy.statements.add(new Statement(st.getVariables(), st.getExpression()));
+		return copy;
+	}
+
+	/**
+	 * <h1>addChoice</h1>
+	 * Records the selection of a problem to merge. This may be called by many threads at the same time.
+	 * @param p : the problem under solution
+	 * @param candidates : the most informative candidates (at least one)
+	 * @param selection : the selected candidate (<code>null</code> if nothing was selected)
+	 */
+	synchronized public void addChoice(Problem p, ArrayList<Candidate> candidates, Candidate selection){
+		choices.add(new DecisionStore.Decision(DecisionStore.getFingerprint(p, candidates), DecisionStore.getCandidateNames(candidates),
+				selection==null?"":selection.getProblem().getName()));
+	}
+
+	/**
+	 * <h1>setSolution</h1>
+	 * Records the solution once the solve has finished.
+	 * @param solution : the solution
+	 * @param solveTime : the wall-clock duration of the solve in milliseconds
+	 */
+	synchronized public void setSolution(Problem solution, double solveTime){
+		this.solution = copy(solution);
+		this.solveTime = solveTime;
+	}
+
+	/**
+	 * <h1>getProblem</h1>
+	 * @return a copy of the given problem, as it was before solving
+	 */
+	public Problem getProblem(){
+		return copy(problem);
+	}
+
+	/**
+	 * <h1>getPoolHash</h1>
+	 * @return the hash of the knowledge pool the problem was solved against
+	 */
+	public String getPoolHash(){
+		return poolHash;
+	}
+
+	/**
+	 * <h1>isPooled</h1>
+	 * @return <code>true</code> if the problem was a member of the knowledge pool (and was thus excluded from it)
+	 */
+	public boolean isPooled(){
+		return pooled;
+	}
+
+	/**
+	 * <h1>getIgnoredLibraries</h1>
+	 * @return a copy of the libraries ignored from the knowledge pool
+	 */
+	public ArrayList<String> getIgnoredLibraries(){
+		return new ArrayList<String>(ignoredLibraries);
+	}
+
+	/**
+	 * <h1>getConfig</h1>
+	 * @return the settings of the solve (loaded traces use the default selector, since replays answer choices
+	 * with <code>CandidateSelector.Replayed</code> instead)
+	 */
+	public SolverConfig getConfig(){
+		return config;
+	}
+
+	/**
+	 * <h1>getSelector</h1>
+	 * @return the description of the selector used during the solve
+	 */
+	public String getSelector(){
+		return selector;
+	}
+
+	/**
+	 * <h1>getChoices</h1>
+	 * @return the recorded selections, in the order they were made (the selected name is empty if nothing was selected)
+	 */
+	synchronized public ArrayList<DecisionStore.Decision> getChoices(){
+		return new ArrayList<DecisionStore.Decision>(choices);
+	}
+
+	/**
+	 * <h1>getSolution</h1>
+	 * @return a copy of the recorded solution (<code>null</code> if none was recorded)
+	 */
+	synchronized public Problem getSolution(){
+		return solution==null?null:copy(solution);
+	}
+
+	/**
+	 * <h1>getSolveTime</h1>
+	 * @return the wall-clock duration of the recorded solve in milliseconds
+	 */
+	synchronized public double getSolveTime(){
+		return solveTime;
+	}
+
+	/**
+	 * <h1>isSameSolution</h1>
+	 * @param p : a solution of the problem of this trace
+	 * @return <code>true</code> if the given solution has exactly the same statements, in the same order,
+	 * as the recorded solution
+	 */
+	synchronized public boolean isSameSolution(Problem p){
+		if(solution==null || solution.statements.size()!=p.statements.size())
+			return false;
+		for(int i=0;i<p.statements.size();i++){
+			Statement expected = solution.statements.get(i);
+			Statement found = p.statements.get(i);
+			if(!expected.getVariables().equals(found.getVariables()) || !expected.getExpression().equals(found.getExpression()))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * <h1>save</h1>
+	 * Saves the trace to a designated file. The file has an XML structure.
+	 * @param path : the path of the file in which the trace is saved
+	 */
+	synchronized public void save(String path){
+		try{
+			//create the XML documents
+			DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
+			DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
+			Document doc = docBuilder.newDocument();
+			Element rootElement = doc.createElement("trace");
+			doc.appendChild(rootElement);
+			Element problemElement = doc.createElement("problem");
+			problem.save(problemElement, doc);
+			rootElement.appendChild(problemElement);
+			addText(doc, rootElement, "poolHash", poolHash);
+			addText(doc, rootElement, "pooled", ""+pooled);
+			Element ignoredElement = doc.createElement("ignoredLibraries");
+			for(String library : ignoredLibraries)
+				addText(doc, ignoredElement, "library", library);
+			rootElement.appendChild(ignoredElement);
+			rootElement.appendChild(saveConfig(doc));
+			addText(doc, rootElement, "selector", selector);
+			//create XML nodes for choices
+			Element choicesElement = doc.createElement("choices");
+			for(DecisionStore.Decision decision : choices){
+				Element choice = doc.createElement("choice");
+				addText(doc, choice, "fingerprint", decision.getFingerprint());
+				for(String name : decision.getCandidates())
+					addText(doc, choice, "candidate", name);
+				addText(doc, choice, "selected", decision.getSelected());
+				choicesElement.appendChild(choice);
+			}
+			rootElement.appendChild(choicesElement);
+			if(solution!=null){
+				Element solutionElement = doc.createElement("solution");
+				solution.save(solutionElement, doc);
+				rootElement.appendChild(solutionElement);
+				addText(doc, rootElement, "solveTime", ""+solveTime);
+			}
+			//create file
+			TransformerFactory transformerFactory = TransformerFactory.newInstance();
+			Transformer transformer = transformerFactory.newTransformer();
+			DOMSource source = new DOMSource(doc);
+			StreamResult result = new StreamResult(new File(path));
+			transformer.transform(source, result);
+		}
+		catch(Exception e){
+			//error message on fail
+			System.err.println("Could not save file '"+path+"':"+e.toString());
+		}
+	}
+
+	private Element saveConfig(Document doc){
+		Element e = doc.createElement("config");
+		addText(doc, e, "hash", config.getHash());
+		addText(doc, e, "breakdownStatements", ""+config.isBreakdownStatements());
+		addText(doc, e, "breakdownAlsoCode", ""+config.isBreakdownAlsoCode());
+		addText(doc, e, "constantsAreVariables", ""+config.isConstantsAreVariables());
+		addText(doc, e, "predicateSimilarityThreshold", ""+config.getPredicateSimilarityThreshold());
+		addTexts(doc, e, "separator", config.getSeparators());
+		addTexts(doc, e, "inverse", config.getInverses());
+		addTexts(doc, e, "ending", config.getEndings());
+		addTexts(doc, e, "ignored", config.getIgnored());
+		addTexts(doc, e, "languageAnd", config.getLanguageAnd());
+		addTexts(doc, e, "customComment", config.getCustomComments());
+		addText(doc, e, "importanceBalance", ""+config.getImportanceBalance());
+		addText(doc, e, "maxIterations", ""+config.getMaxIterations());
+		addText(doc, e, "threads", ""+config.getThreads());
+		addText(doc, e, "beamWidth", ""+config.getBeamWidth());
+		addText(doc, e, "splitSubproblems", ""+config.isSplitSubproblems());
+		addText(doc, e, "logLevel", ""+config.getLogLevel());
+		return e;
+	}
+
+	private static SolverConfig loadConfig(Element e){
+		ArrayList<String> separators = getTexts(e, "separator");
+		ArrayList<String> inverses = getTexts(e, "inverse");
+		return SolverConfig.getDefault()
+				.withBreakdown(Boolean.parseBoolean(getText(e, "breakdownStatements")), Boolean.parseBoolean(getText(e, "breakdownAlsoCode")))
+				.withConstantsAreVariables(Boolean.parseBoolean(getText(e, "constantsAreVariables")))
+				.withPredicateSimilarityThreshold(Float.parseFloat(getText(e, "predicateSimilarityThreshold")))
+				.withSeparators(separators.toArray(new String[separators.size()]), inverses.toArray(new String[inverses.size()]))
+				.withEndings(getTexts(e, "ending").toArray(new String[0]))
+				.withIgnored(getTexts(e, "ignored").toArray(new String[0]))
+				.withLanguageAnd(getTexts(e, "languageAnd").toArray(new String[0]))
+				.withCustomComments(getTexts(e, "customComment").toArray(new String[0]))
+				.withImportanceBalance(Float.parseFloat(getText(e, "importanceBalance")))
+				.withMaxIterations(Integer.parseInt(getText(e, "maxIterations")))
+				.withThreads(Integer.parseInt(getText(e, "threads")))
+				.withBeamWidth(Integer.parseInt(getText(e, "beamWidth")))
+				.withSplitSubproblems(Boolean.parseBoolean(getText(e, "splitSubproblems")))
+				.withLogLevel(Integer.parseInt(getText(e, "logLevel")));
+	}
+
+	private static void addText(Document doc, Element parent, String tag, String text){
+		Element e = doc.createElement(tag);
+		e.appendChild(doc.createTextNode(text));
+		parent.appendChild(e);
+	}
+
+	private static void addTexts(Document doc, Element parent, String tag, String[] texts){
+		for(String text : texts)
+			addText(doc, parent, tag, text);
+	}
+
+	private static Element getChild(Element parent, String tag){
+		for(Node node=parent.getFirstChild();node!=null;node=node.getNextSibling())
+			if(node instanceof Element && node.getNodeName().equals(tag))
+				return (Element)node;
+		return null;
+	}
+
+	private static String getText(Element parent, String tag){
+		Element e = getChild(parent, tag);
+		return e==null?"":e.getTextContent();
+	}
+
+	private static ArrayList<String> getTexts(Element parent, String tag){
+		ArrayList<String> texts = new ArrayList<String>();
+		for(Node node=parent.getFirstChild();node!=null;node=node.getNextSibling())
+			if(node instanceof Element && node.getNodeName().equals(tag))
+				texts.add(node.getTextContent());
+		return texts;
+	}
+
+	@Override
+	public String toString(){
+		return problem.getName()+" ("+choices.size()+" choices)";
+	}
+}
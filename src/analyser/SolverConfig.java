@@ -0,0 +1,510 @@
+package analyser;
+
+import java.util.Arrays;
+
+/**
+ * <h1>SolverConfig</h1>
+ * This class holds all settings of a single solve. Settings are immutable, so that solves with
+ * different settings can run concurrently. To change a setting, one of the <code>with</code> functions
+ * creates a copy of the configuration with the new value.<br/>
+ * The default configuration (see <code>getDefault</code>) is a snapshot of the static settings of
+ * <code>Problem</code> and <code>Statement</code>, which can still be edited by the user interface.
+ * Statements and problems that have no configuration keep using those static settings.
+ */
+public class SolverConfig implements Cloneable {
+	//whether statements are broken down into smaller ones before solving
+	boolean breakdownStatements;
+	//whether source code statements are also broken down
+	boolean breakdownAlsoCode;
+	//whether numeric constants are considered variables when breaking down statements
+	boolean constantsAreVariables;
+	//a threshold which if the predicateSimilarity function gets over, statements are considered similar
+	float predicateSimilarityThreshold;
+	//comparison separators and their inverses
+	String[] separators;
+	String[] inverses;
+	//endings for statements
+	String[] endings;
+	//statements to be ignored
+	String[] ignored;
+	//list of logical ands for expressions
+	String[] languageAnd;
+	//list of custom-comment predicates
+	String[] customComments;
+	//importance of not adding new information
+	private float importanceBalance = 0.5f;
+	//maximum number of solution steps
+	private int maxIterations = 10;
+	//the number of threads to use
+	private int threads = 1;
+	//the number of partial solutions kept in each step (1 for the greedy search)
+	private int beamWidth = 1;
+	//whether independent subproblems of the given problem are solved separately
+	private boolean splitSubproblems = true;
+	//the desired log level (2 or 3)
+	private int logLevel = 2;
+	//whether the statistics of the solve are added to its log record
+	private boolean logStats = false;
+	//the selector used between equally informative candidates
+	private CandidateSelector selector;
+	//precomputed similarities between statements of the knowledge pool (null to always compare statements)
+	private SimilarityMatrix similarityMatrix;
+	//the path of the file in which solves record their trace (null to record nothing)
+	private String tracePath;
+	//the trace recorded by the current solve (null if none is being recorded)
+	private SolveTrace trace;
+
+	private SolverConfig(){
+	}
+
+	/**
+	 * <h1>getDefault</h1>
+	 * Creates a configuration from the current static settings of <code>Problem</code> and
+	 * <code>Statement</code>. Later changes to those settings do not affect the returned configuration.
+	 * @return a configuration that keeps the current behavior
+	 */
+	public static SolverConfig getDefault(){
+		SolverConfig config = new SolverConfig();
+		config.breakdownStatements = Problem.breakdownStatements;
+		config.breakdownAlsoCode = Problem.breakdownAlsoCode;
+		config.constantsAreVariables = Problem.constantsAreVariables;
+		config.predicateSimilarityThreshold = Statement.predicateSimilarityThreshold;
+		config.separators = Statement.separators.clone();
+		config.inverses = Statement.inverses.clone();
+		config.endings = Statement.endings.clone();
+		config.ignored = Statement.ignored.clone();
+		config.languageAnd = Statement.languageAnd.clone();
+		config.customComments = Statement.customComments.clone();
+		config.selector = Problem.candidateSelector;
+		return config;
+	}
+
+	private SolverConfig copy(){
+		try{
+			return (SolverConfig)clone();
+		}
+		catch(CloneNotSupportedException e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * <h1>withBreakdown</h1>
+	 * @param breakdownStatements : whether statements are broken down into smaller ones before solving
+	 * @param breakdownAlsoCode : whether source code statements are also broken down
+	 * @return a copy of this configuration with the given breakdown settings
+	 */
+	public SolverConfig withBreakdown(boolean breakdownStatements, boolean breakdownAlsoCode){
+		SolverConfig config = copy();
+		config.breakdownStatements = breakdownStatements;
+		config.breakdownAlsoCode = breakdownAlsoCode;
+		return config;
+	}
+
+	/**
+	 * <h1>withConstantsAreVariables</h1>
+	 * @param constantsAreVariables : whether numeric constants are considered variables
+	 * @return a copy of this configuration with the given setting
+	 */
+	public SolverConfig withConstantsAreVariables(boolean constantsAreVariables){
+		SolverConfig config = copy();
+		config.constantsAreVariables = constantsAreVariables;
+		return config;
+	}
+
+	/**
+	 * <h1>withPredicateSimilarityThreshold</h1>
+	 * @param predicateSimilarityThreshold : the similarity over which statements are considered the same
+	 * @return a copy of this configuration with the given threshold
+	 */
+	public SolverConfig withPredicateSimilarityThreshold(float predicateSimilarityThreshold){
+		SolverConfig config = copy();
+		config.predicateSimilarityThreshold = predicateSimilarityThreshold;
+		return config;
+	}
+
+	/**
+	 * <h1>withSeparators</h1>
+	 * @param separators : the comparison separators
+	 * @param inverses : the inverse of each comparison separator
+	 * @return a copy of this configuration with the given separators
+	 */
+	public SolverConfig withSeparators(String[] separators, String[] inverses){
+		if(separators.length!=inverses.length)
+			throw new IllegalArgumentException("Each separator must have an inverse");
+		SolverConfig config = copy();
+		config.separators = separators.clone();
+		config.inverses = inverses.clone();
+		return config;
+	}
+
+	/**
+	 * <h1>withEndings</h1>
+	 * @param endings : the word endings ignored when comparing predicates
+	 * @return a copy of this configuration with the given endings
+	 */
+	public SolverConfig withEndings(String[] endings){
+		SolverConfig config = copy();
+		config.endings = endings.clone();
+		return config;
+	}
+
+	/**
+	 * <h1>withIgnored</h1>
+	 * @param ignored : the predicates ignored when comparing statements
+	 * @return a copy of this configuration with the given ignored predicates
+	 */
+	public SolverConfig withIgnored(String[] ignored){
+		SolverConfig config = copy();
+		config.ignored = ignored.clone();
+		return config;
+	}
+
+	/**
+	 * <h1>withLanguageAnd</h1>
+	 * @param languageAnd : the logical ands used to split expressions
+	 * @return a copy of this configuration with the given logical ands
+	 */
+	public SolverConfig withLanguageAnd(String[] languageAnd){
+		SolverConfig config = copy();
+		config.languageAnd = languageAnd.clone();
+		return config;
+	}
+
+	/**
+	 * <h1>withCustomComments</h1>
+	 * @param customComments : the custom comment predicates
+	 * @return a copy of this configuration with the given custom comment predicates
+	 */
+	public SolverConfig withCustomComments(String[] customComments){
+		SolverConfig config = copy();
+		config.customComments = customComments.clone();
+		return config;
+	}
+
+	/**
+	 * <h1>withImportanceBalance</h1>
+	 * @param importanceBalance : importance of <i>not</i> adding new information
+	 * (>100% for Occam's Razor - i.e. to select the simplest implementation)
+	 * @return a copy of this configuration with the given importance balance
+	 */
+	public SolverConfig withImportanceBalance(float importanceBalance){
+		SolverConfig config = copy();
+		config.importanceBalance = importanceBalance;
+		return config;
+	}
+
+	/**
+	 * <h1>withMaxIterations</h1>
+	 * @param maxIterations : maximum number of steps to perform
+	 * @return a copy of this configuration with the given number of steps
+	 */
+	public SolverConfig withMaxIterations(int maxIterations){
+		SolverConfig config = copy();
+		config.maxIterations = maxIterations;
+		return config;
+	}
+
+	/**
+	 * <h1>withThreads</h1>
+	 * @param threads : the number of threads to use
+	 * @return a copy of this configuration with the given number of threads
+	 */
+	public SolverConfig withThreads(int threads){
+		SolverConfig config = copy();
+		config.threads = Math.max(1, threads);
+		return config;
+	}
+
+	/**
+	 * <h1>withBeamWidth</h1>
+	 * @param beamWidth : the number of partial solutions kept in each step (1 for the greedy search)
+	 * @return a copy of this configuration with the given beam width
+	 */
+	public SolverConfig withBeamWidth(int beamWidth){
+		SolverConfig config = copy();
+		config.beamWidth = Math.max(1, beamWidth);
+		return config;
+	}
+
+	/**
+	 * <h1>withSplitSubproblems</h1>
+	 * @param splitSubproblems : whether independent subproblems of the given problem are solved separately
+	 * @return a copy of this configuration with the given setting
+	 */
+	public SolverConfig withSplitSubproblems(boolean splitSubproblems){
+		SolverConfig config = copy();
+		config.splitSubproblems = splitSubproblems;
+		return config;
+	}
+
+	/**
+	 * <h1>withLogLevel</h1>
+	 * @param logLevel : the desired log level. Must be either 2 or 3.
+	 * @return a copy of this configuration with the given log level
+	 */
+	public SolverConfig withLogLevel(int logLevel){
+		SolverConfig config = copy();
+		config.logLevel = logLevel;
+		return config;
+	}
+
+	/**
+	 * <h1>withLogStats</h1>
+	 * @param logStats : whether the statistics of the solve (see <code>SolveStats</code>) are added to its log record
+	 * @return a copy of this configuration with the given setting
+	 */
+	public SolverConfig withLogStats(boolean logStats){
+		SolverConfig config = copy();
+		config.logStats = logStats;
+		return config;
+	}
+
+	/**
+	 * <h1>withSelector</h1>
+	 * @param selector : the selector used between equally informative candidates
+	 * @return a copy of this configuration with the given selector
+	 */
+	public SolverConfig withSelector(CandidateSelector selector){
+		SolverConfig config = copy();
+		config.selector = selector;
+		return config;
+	}
+
+	/**
+	 * <h1>withSimilarityMatrix</h1>
+	 * @param similarityMatrix : precomputed similarities between statements of the knowledge pool
+	 * (<code>null</code> to always compare statements)
+	 * @return a copy of this configuration with the given similarity matrix
+	 */
+	public SolverConfig withSimilarityMatrix(SimilarityMatrix similarityMatrix){
+		SolverConfig config = copy();
+		config.similarityMatrix = similarityMatrix;
+		return config;
+	}
+
+	/**
+	 * <h1>withTracePath</h1>
+	 * @param tracePath : the path of the file in which solves record their trace (see <code>SolveTrace</code>),
+	 * or <code>null</code> to record nothing
+	 * @return a copy of this configuration with the given trace path
+	 */
+	public SolverConfig withTracePath(String tracePath){
+		SolverConfig config = copy();
+		config.tracePath = tracePath;
+		return config;
+	}
+
+	/**
+	 * <h1>withTrace</h1>
+	 * This is used by the solver to pass the trace being recorded to the steps of the solve.
+	 * @param trace : the trace recorded by the current solve (<code>null</code> if none is being recorded)
+	 * @return a copy of this configuration with the given trace
+	 */
+	public SolverConfig withTrace(SolveTrace trace){
+		SolverConfig config = copy();
+		config.trace = trace;
+		return config;
+	}
+
+	/**
+	 * <h1>isBreakdownStatements</h1>
+	 * @return whether statements are broken down into smaller ones before solving
+	 */
+	public boolean isBreakdownStatements(){
+		return breakdownStatements;
+	}
+
+	/**
+	 * <h1>isBreakdownAlsoCode</h1>
+	 * @return whether source code statements are also broken down
+	 */
+	public boolean isBreakdownAlsoCode(){
+		return breakdownAlsoCode;
+	}
+
+	/**
+	 * <h1>isConstantsAreVariables</h1>
+	 * @return whether numeric constants are considered variables
+	 */
+	public boolean isConstantsAreVariables(){
+		return constantsAreVariables;
+	}
+
+	/**
+	 * <h1>getPredicateSimilarityThreshold</h1>
+	 * @return the similarity over which statements are considered the same
+	 */
+	public float getPredicateSimilarityThreshold(){
+		return predicateSimilarityThreshold;
+	}
+
+	/**
+	 * <h1>getSeparators</h1>
+	 * @return a copy of the comparison separators
+	 */
+	public String[] getSeparators(){
+		return separators.clone();
+	}
+
+	/**
+	 * <h1>getInverses</h1>
+	 * @return a copy of the inverse of each comparison separator
+	 */
+	public String[] getInverses(){
+		return inverses.clone();
+	}
+
+	/**
+	 * <h1>getEndings</h1>
+	 * @return a copy of the word endings ignored when comparing predicates
+	 */
+	public String[] getEndings(){
+		return endings.clone();
+	}
+
+	/**
+	 * <h1>getIgnored</h1>
+	 * @return a copy of the predicates ignored when comparing statements
+	 */
+	public String[] getIgnored(){
+		return ignored.clone();
+	}
+
+	/**
+	 * <h1>getLanguageAnd</h1>
+	 * @return a copy of the logical ands used to split expressions
+	 */
+	public String[] getLanguageAnd(){
+		return languageAnd.clone();
+	}
+
+	/**
+	 * <h1>getCustomComments</h1>
+	 * @return a copy of the custom comment predicates
+	 */
+	public String[] getCustomComments(){
+		return customComments.clone();
+	}
+
+	/**
+	 * <h1>getImportanceBalance</h1>
+	 * @return importance of <i>not</i> adding new information
+	 */
+	public float getImportanceBalance(){
+		return importanceBalance;
+	}
+
+	/**
+	 * <h1>getMaxIterations</h1>
+	 * @return maximum number of steps to perform
+	 */
+	public int getMaxIterations(){
+		return maxIterations;
+	}
+
+	/**
+	 * <h1>getThreads</h1>
+	 * @return the number of threads to use
+	 */
+	public int getThreads(){
+		return threads;
+	}
+
+	/**
+	 * <h1>getBeamWidth</h1>
+	 * @return the number of partial solutions kept in each step (1 for the greedy search)
+	 */
+	public int getBeamWidth(){
+		return beamWidth;
+	}
+
+	/**
+	 * <h1>isSplitSubproblems</h1>
+	 * @return whether independent subproblems of the given problem are solved separately
+	 */
+	public boolean isSplitSubproblems(){
+		return splitSubproblems;
+	}
+
+	/**
+	 * <h1>getLogLevel</h1>
+	 * @return the desired log level
+	 */
+	public int getLogLevel(){
+		return logLevel;
+	}
+
+	/**
+	 * <h1>isLogStats</h1>
+	 * @return whether the statistics of the solve are added to its log record
+	 */
+	public boolean isLogStats(){
+		return logStats;
+	}
+
+	/**
+	 * <h1>getSelector</h1>
+	 * @return the selector used between equally informative candidates
+	 */
+	public CandidateSelector getSelector(){
+		return selector;
+	}
+
+	/**
+	 * <h1>getSimilarityMatrix</h1>
+	 * @return precomputed similarities between statements of the knowledge pool (<code>null</code> if there are none)
+	 */
+	public SimilarityMatrix getSimilarityMatrix(){
+		return similarityMatrix;
+	}
+
+	/**
+	 * <h1>getTracePath</h1>
+	 * @return the path of the file in which solves record their trace (<code>null</code> to record nothing)
+	 */
+	public String getTracePath(){
+		return tracePath;
+	}
+
+	/**
+	 * <h1>getTrace</h1>
+	 * @return the trace recorded by the current solve (<code>null</code> if none is being recorded)
+	 */
+	public SolveTrace getTrace(){
+		return trace;
+	}
+
+	/**
+	 * <h1>isReproducible</h1>
+	 * Checks whether solving the same problem against the same knowledge pool with these settings always
+	 * finds the same solution, so that solutions and steps can be stored and reused (see <code>ResultCache</code>
+	 * and <code>IterationMemo</code>). This is not the case when ties are answered by the user or by remembered
+	 * or replayed answers (see <code>CandidateSelector.Asking</code>, <code>CandidateSelector.Remembered</code> and
+	 * <code>CandidateSelector.Replayed</code>), or by a selector that is not deterministic (see
+	 * <code>CandidateSelector.ExploreAll.isDeterministic</code>).
+	 * @return <code>true</code> if solutions found with these settings can be reused
+	 */
+	public boolean isReproducible(){
+		if(selector instanceof CandidateSelector.Asking || selector instanceof CandidateSelector.Remembered
+				|| selector instanceof CandidateSelector.Replayed)
+			return false;
+		if(selector instanceof CandidateSelector.ExploreAll)
+			return ((CandidateSelector.ExploreAll)selector).isDeterministic();
+		return true;
+	}
+
+	/**
+	 * <h1>getHash</h1>
+	 * Generates a hash of all settings that can affect the solution of a problem. The number of threads,
+	 * the log settings, the similarity matrix and the trace settings are not included, as they do not affect solutions.
+	 * @return the hash as a hexadecimal String
+	 */
+	public String getHash(){
+		return ResultCache.getHash(breakdownStatements+"\n"+breakdownAlsoCode+"\n"+constantsAreVariables+"\n"
+				+predicateSimilarityThreshold+"\n"+Arrays.toString(separators)+"\n"+Arrays.toString(inverses)+"\n"
+				+Arrays.toString(endings)+"\n"+Arrays.toString(ignored)+"\n"+Arrays.toString(languageAnd)+"\n"
+				+Arrays.toString(customComments)+"\n"+importanceBalance+"\n"+maxIterations+"\n"+beamWidth+"\n"
+				+splitSubproblems+"\n"+selector);
+	}
+}
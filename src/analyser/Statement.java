@@ -30,6 +30,10 @@ public class Statement {
 	private String trivialSeparator;
 	//custom comment type
 	private String commentType;
+	//the settings used for parsing and comparing this statement (null to use the static settings bellow)
+	private SolverConfig config;
+	//the canonical form of this statement (see getForm)
+	private SimilarityMatrix.Form form = null;
 	//
 	public static String[] separators = {">=", "<=", ">", "<", "="};
 	public static String[] inverses   = {"<=", ">=", "<", ">", "="};
@@ -70,6 +74,23 @@ public class Statement {
 		setExpression(expression);
 	}
 
+	/**
+	 * <h1>Statement</h1>
+	 * A constructor for the Statement class that uses the given settings instead of the static ones
+	 * for parsing the expression and for comparisons with other statements.
+	 * @param variables : a String that contains all variable names (with space between them)
+	 * @param expression : the expression text
+	 * @param config : the solver configuration (<code>null</code> to use the static settings)
+	 */
+	public Statement(String variables, String expression, SolverConfig config){
+		commentType = "";
+		trivialVariable = "";
+		trivialSeparator = "";
+		this.config = config;
+		setVariables(variables);
+		setExpression(expression);
+	}
+
 	/**
 	 * <h1>Statement</h1>
 	 * A constructor for the Statement class. It initializes the class completely.
@@ -172,6 +193,8 @@ public class Statement {
 	 * @param expression : an expression text
 	 */
 	public void setExpression(String expression){
+		String[] separators = config==null?Statement.separators:config.separators;
+		String[] inverses = config==null?Statement.inverses:config.inverses;
 		//uniformize
 		if(!expression.contains(":"))
 			expression = expression.trim();
@@ -210,7 +233,7 @@ public class Statement {
 		expression = expression.replaceAll("\\s*\\*\\s+\\*\\s*", " ** ");
 		expression = expression.replaceAll("\\s*\\+\\s+\\+\\s*", " ++ ");
 		expression = expression.replaceAll("\\s*\\-\\s+\\-\\s*", " -- ");
-		for(String str : languageAnd)
+		for(String str : config==null?languageAnd:config.languageAnd)
 			expression = expression.replaceAll("\\s+"+Pattern.quote(str)+"\\s+", " "+str+" ");
 		expression = expression.replaceAll("\\s+"+Pattern.quote("or")+"\\s+", " or ");
 		expression = expression.replaceAll("\\s+"+Pattern.quote("is")+"\\s+", " is ");
@@ -220,7 +243,7 @@ public class Statement {
 			expression = expression.replaceAll("\\s+", " ");
 		
 		commentType = "";
-		for(String comment : customComments){
+		for(String comment : config==null?customComments:config.customComments){
 			if(expression.startsWith(comment)){
 				commentType = comment;
 				expression = expression.substring(comment.length()).trim();
@@ -231,6 +254,7 @@ public class Statement {
 		//find first occurrence of variables
 		ArrayList<Integer> valFirstFind = new ArrayList<Integer>();
 		for(int i=0;i<variables.size();i++){
+			SolveStats.count(SolveStats.REGEX_COMPILES);
 			Pattern pattern = Pattern.compile("[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\;\\:\n]"+Pattern.quote(variables.get(i))+"[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\;\\:\n]");
 			Matcher matcher = pattern.matcher(" "+expression+" ");
 			int pos = -1;
@@ -281,7 +305,7 @@ public class Statement {
 					for(String sep : separators){
 						trivialSeparator = sep;
 						if(getExpression().compareTo(expression)==0){
-							setExpression(this.expression + " " + opposite(trivialSeparator) + " " +  trivialVariable);
+							setExpression(this.expression + " " + opposite(trivialSeparator, config) + " " +  trivialVariable);
 							return;
 						}
 					}
@@ -330,11 +354,17 @@ public class Statement {
 	 * variable names must also match. Otherwise, substituting the variable names should yield
 	 * the same statement String for the two statements to be considered the same. In order to
 	 * perform the substitution check in the later case, the <code>matchExpression</code> function
-	 * is called with the given statement as argument.
+	 * is called with the given statement as argument.<br/>
+	 * The similarity threshold of the solve context bound to the current thread (if any) is used
+	 * instead of this statement's own, so that statements of a rationalized knowledge pool can be
+	 * shared between solves with different thresholds. If the settings have a similarity matrix (see
+	 * <code>SimilarityMatrix</code>), it is consulted before comparing the statements directly.
 	 * @param s : a statement to compare with
 	 * @return <code>true</code> if the statements are regarded as the same
 	 */
 	public boolean isSame(Statement s){
+		SolveStats stats = SolveStats.getCurrent();
+		stats.increment(SolveStats.IS_SAME_CALLS);
 		if(isAssignment() && variables.size()==2 && s.variables.size()==2){
 			return //s.isAssignment() &&
 				(   ( variables.get(0).compareTo(s.variables.get(0))==0 && variables.get(1).compareTo(s.variables.get(1))==0)
@@ -344,22 +374,63 @@ public class Statement {
 			return 
 					(trivialSeparator.compareTo(s.trivialSeparator)==0)
 				 ||	(trivialSeparator.compareTo(s.trivialSeparator)==0 && variables.get(0).compareTo(s.variables.get(0))==0 && variables.get(1).compareTo(s.variables.get(1))==0)
-			     || (trivialSeparator.compareTo(Statement.opposite(s.trivialSeparator))==0 && variables.get(1).compareTo(s.variables.get(0))==0 && variables.get(0).compareTo(s.variables.get(1))==0);
+			     || (trivialSeparator.compareTo(Statement.opposite(s.trivialSeparator, config))==0 && variables.get(1).compareTo(s.variables.get(0))==0 && variables.get(0).compareTo(s.variables.get(1))==0);
 			
 		}
 		if(s.variables.size()!=variables.size())
 			return false;
+		//the settings of the solve and the current statistics are looked up once, since this is called very often
+		SolverConfig comparison = getComparisonConfig();
+		float threshold = comparison==null?predicateSimilarityThreshold:comparison.predicateSimilarityThreshold;
+		//look up remembered similarities first
+		SimilarityMatrix matrix = comparison==null?null:comparison.getSimilarityMatrix();
+		if(matrix!=null){
+			int same = matrix.isSame(this, s, config, threshold, stats);
+			if(same>=0)
+				return same==1;
+		}
 		String repl = matchExpression(s);
 		if(repl.compareTo(getExpression())==0)
 			return true;
 		//compare
 		if(!isTrivial()){
-			if(predicateSimilarity(repl, getExpression(), getVariables())>predicateSimilarityThreshold)
+			if(predicateSimilarity(repl, getExpression(), getVariables(), config)>threshold)
 				return true;
 		}
 		return false;
 	}
 	
+	/**
+	 * <h1>getComparisonConfig</h1>
+	 * @return the settings of the solve context bound to the current thread, or else this statement's
+	 * settings (<code>null</code> for the static settings), which provide the similarity threshold and
+	 * similarity matrix of comparisons
+	 */
+	private SolverConfig getComparisonConfig(){
+		SolveContext context = SolveContext.getCurrent();
+		if(context!=null && context.getConfig()!=null)
+			return context.getConfig();
+		return config;
+	}
+	
+	/**
+	 * <h1>getForm</h1>
+	 * @param endings : the endings to ignore
+	 * @param stats : the statistics of the current solve, which count the lookups of cached forms
+	 * @return the canonical form of this statement (it is cached until the statement changes)
+	 */
+	SimilarityMatrix.Form getForm(String[] endings, SolveStats stats){
+		SimilarityMatrix.Form current = form;
+		if(current==null || !current.isFormOf(expression, trivialVariable, trivialSeparator, commentType, variables, endings)){
+			stats.increment(SolveStats.FORM_CACHE_MISSES);
+			current = new SimilarityMatrix.Form(this, expression, trivialVariable, trivialSeparator, commentType, endings);
+			form = current;
+		}
+		else
+			stats.increment(SolveStats.FORM_CACHE_HITS);
+		return current;
+	}
+	
 	/**
 	 * <h1>isIdentical</h1>
 	 * Compares this statement with another statement. If it is a comparison between assignments or transitionals,
@@ -378,7 +449,7 @@ public class Statement {
 		}
 		if(isTransitional() && variables.size()==2 && s.variables.size()==2){
 			return (trivialSeparator.compareTo(s.trivialSeparator)==0 && variables.get(0).compareTo(s.variables.get(0))==0 && variables.get(1).compareTo(s.variables.get(1))==0)
-			    || (trivialSeparator.compareTo(Statement.opposite(s.trivialSeparator))==0 && variables.get(1).compareTo(s.variables.get(0))==0 && variables.get(0).compareTo(s.variables.get(1))==0);
+			    || (trivialSeparator.compareTo(Statement.opposite(s.trivialSeparator, config))==0 && variables.get(1).compareTo(s.variables.get(0))==0 && variables.get(0).compareTo(s.variables.get(1))==0);
 			
 		}
 		if(s.variables.size()!=variables.size())
@@ -401,6 +472,7 @@ public class Statement {
 	 */
 	public static String matchExpression(String repl, HashMap<String,String> replacements){
 		if(replacements.size()!=0){
+			SolveStats.count(SolveStats.REGEX_COMPILES);
 			Pattern pattern = Pattern.compile("[A-Za-z\\_][A-Za-z0-9\\_]*");//compile("(\\*|\\-|\\=|\\+|\\-|\\s)(.)(\\*|\\-|\\=|\\+|\\-\\s)]");
 			Matcher matcher = pattern.matcher(repl);
 			StringBuffer buffer = new StringBuffer();
@@ -542,6 +614,14 @@ public class Statement {
 		return ret;
 	}
 	
+	/**
+	 * <h1>getConfig</h1>
+	 * @return the settings used by this statement (<code>null</code> if it uses the static settings)
+	 */
+	public SolverConfig getConfig(){
+		return config;
+	}
+	
 	/**
 	 * <h1>getTrivialVariable</h1>
 	 * Returns the trivialVariable. The trivialVariable is a single variable which is connected with
@@ -608,6 +688,7 @@ public class Statement {
 		int count = 0;
 		String vars = "";
 		for(String var : variables){
+			SolveStats.count(SolveStats.REGEX_COMPILES);
 			Pattern pattern = Pattern.compile("[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\=\\;\\:\n]"+Pattern.quote(var)+"[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\=\\;\\:\n]");
 			Matcher matcher = pattern.matcher(" "+getExpression()+" ");
 			if(!matcher.find() && trivialVariable.compareTo(var)!=0)
@@ -688,8 +769,8 @@ public class Statement {
 						break;
 					}
 				if(!isVariable)
-				for(String ign : ignored)
-					if(isSamePredicate(word, ign)){
+				for(String ign : config==null?ignored:config.ignored)
+					if(isSamePredicate(word, ign, config==null?endings:config.endings)){
 						toIgnore = true;
 						break;
 					}
@@ -699,7 +780,7 @@ public class Statement {
 					text += " "+word+" ";
 				else{
 					boolean specialEnding = false;
-					for(String end : endings)
+					for(String end : config==null?endings:config.endings)
 						if(word.endsWith(end)){
 							text += " "+word.substring(0,word.length()-end.length())+"<small color='555555'>"+end+"</small>";
 							specialEnding = true;
@@ -791,6 +872,7 @@ public class Statement {
 				allSeps += "("+str+")";
 			Pattern pattern = Pattern.compile("[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\="+allSeps+"]"+variables.get(i)+"[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\="+allSeps+"]");
 			*/
+			SolveStats.count(SolveStats.REGEX_COMPILES);
 			Pattern pattern = Pattern.compile("[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\=\\;\\:\n]"+Pattern.quote(variables.get(i))+"[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.\\<\\>\\=\\;\\:\n]");
 			Matcher matcher = pattern.matcher(" "+expression+" ");
 			if(!matcher.find() && trivialVariable.compareTo(variables.get(i))!=0)
@@ -861,16 +943,19 @@ public class Statement {
 	public void inverse(){
 		if(trivialVariable.isEmpty())
 			return;
-		setExpression(expression+" "+opposite(trivialSeparator)+" "+trivialVariable);
+		setExpression(expression+" "+opposite(trivialSeparator, config)+" "+trivialVariable);
 	}
 	
 	/**
 	 * <h1>opposite</h1>
 	 * This function inverses the &lt and &gt signs in a given String
 	 * @param opp : a trivialSeperator to inverse
+	 * @param config : the solver configuration (<code>null</code> to use the static settings)
 	 * @return the inverse of the input String
 	 */
-	private static String opposite(String opp){
+	private static String opposite(String opp, SolverConfig config){
+		String[] separators = config==null?Statement.separators:config.separators;
+		String[] inverses = config==null?Statement.inverses:config.inverses;
 		for(int i=0;i<separators.length;i++){
 			opp = opp.replace(separators[i], " _"+i);
 		}
@@ -898,6 +983,7 @@ public class Statement {
 		int count = 0;
 		//find first occurrence of variables
 		for(int i=0;i<variables.size();i++){
+			SolveStats.count(SolveStats.REGEX_COMPILES);
 			Pattern pattern = Pattern.compile("[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.]"+Pattern.quote(variables.get(i))+"[\\s\\+\\-\\*\\/\\^\\(\\)\\[\\]\\,\\{\\}\\.]");
 			Matcher matcher = pattern.matcher(" "+expression+" ");
 			while(matcher.find())
@@ -948,6 +1034,24 @@ public class Statement {
 	 * = 0 for completely dissimilar and 1 for the same string context
 	 */
 	public static float predicateSimilarity(String str1, String str2, String variables){
+		return predicateSimilarity(str1, str2, variables, null);
+	}
+	
+	/**
+	 * <h1>predicateSimilarity</h1>
+	 * Performs the same comparison as the <code>predicateSimilarity</code> function, using the
+	 * custom comments, ignored predicates and endings of the given configuration.
+	 * @param str1 : the first string
+	 * @param str2 : the second string
+	 * @param variables : the variables in a string format
+	 * @param config : the solver configuration (<code>null</code> to use the static settings)
+	 * @return a similarity between 0 for completely dissimilar and 1 for the same string context
+	 */
+	public static float predicateSimilarity(String str1, String str2, String variables, SolverConfig config){
+		SolveStats.count(SolveStats.PREDICATE_SIMILARITY_CALLS);
+		String[] customComments = config==null?Statement.customComments:config.customComments;
+		String[] ignored = config==null?Statement.ignored:config.ignored;
+		String[] endings = config==null?Statement.endings:config.endings;
 		int common = 0;
 		int ignore = 0;
 		ArrayList<String> predicates1 = new ArrayList<String>(Arrays.asList(str1.split(" ")));
@@ -977,7 +1081,7 @@ public class Statement {
 			if(toIgnore)
 				continue;
 			for(String ign : ignored)
-				if(isSamePredicate(pr1, ign)){
+				if(isSamePredicate(pr1, ign, endings)){
 					toIgnore = true;
 					ignore++;
 					break;
@@ -985,7 +1089,7 @@ public class Statement {
 			if(toIgnore)
 				continue;
 			for(String pr2 : predicates2)
-				if(isSamePredicate(pr1, pr2)){
+				if(isSamePredicate(pr1, pr2, endings)){
 					common++;
 					break;
 				}
@@ -1001,7 +1105,7 @@ public class Statement {
 			if(toIgnore)
 				continue;
 			for(String ign : ignored)
-				if(isSamePredicate(pr2, ign)){
+				if(isSamePredicate(pr2, ign, endings)){
 					toIgnore = true;
 					ignore++;
 					break;
@@ -1009,7 +1113,7 @@ public class Statement {
 			if(toIgnore)
 				continue;
 			for(String pr1 : predicates1)
-				if(isSamePredicate(pr1, pr2)){
+				if(isSamePredicate(pr1, pr2, endings)){
 					common++;
 					break;
 				}
@@ -1023,9 +1127,10 @@ public class Statement {
 	 * The order of the predicates does not matter.
 	 * @param predicate1 : the first predicate
 	 * @param predicate2 : the second predicate
+	 * @param endings : the endings to ignore
 	 * @return true if the predicates are considered the same
 	 */
-	private static boolean isSamePredicate(String predicate1, String predicate2){
+	private static boolean isSamePredicate(String predicate1, String predicate2, String[] endings){
 		for(String ending : endings){
 			if(predicate1.endsWith(ending)){
 				predicate1 = predicate1.substring(0, predicate1.length()-ending.length());
@@ -0,0 +1,56 @@
+package display;
+
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+
+import analyser.CancellationToken;
+import analyser.Candidate;
+import analyser.CandidateSelector;
+import analyser.Problem;
+import analyser.SolveContext;
+
+/**
+ * <h1>DialogSelector</h1>
+ * This class lets the user select between equally informative candidates through the dialog
+ * of <code>Main.chooseBetweenProblems</code>. When there is no display, or when the solve
+ * is not interactive (see <code>SolveContext.isInteractive</code>), another selector is
+ * used instead, so that the solve never waits for the user.
+ */
+public class DialogSelector implements CandidateSelector.Asking {
+	//the selector used when the user cannot be asked
+	private CandidateSelector fallback;
+
+	/**
+	 * <h1>DialogSelector</h1>
+	 * The constructor for the DialogSelector class.
+	 * @param fallback : the selector used when the user cannot be asked
+	 */
+	public DialogSelector(CandidateSelector fallback){
+		this.fallback = fallback;
+	}
+
+	@Override
+	public boolean canAsk(){
+		SolveContext context = SolveContext.getCurrent();
+		return !GraphicsEnvironment.isHeadless() && (context==null || context.isInteractive());
+	}
+
+	@Override
+	public Candidate select(Problem p, ArrayList<Candidate> candidates, ArrayList<Problem> problems, CancellationToken token){
+		if(!canAsk())
+			return fallback.select(p, candidates, problems, token);
+		ArrayList<Problem> selectProblems = new ArrayList<Problem>();
+		for(Candidate c : candidates)
+			selectProblems.add(c.getProblem());
+		Problem selectedProblem = Main.chooseBetweenProblems(selectProblems);
+		for(Candidate c : candidates)
+			if(c.getProblem()==selectedProblem)
+				return c;
+		return null;
+	}
+
+	@Override
+	public String toString(){
+		return "Ask";
+	}
+}
@@ -1,7 +1,9 @@
 package display;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Image;
 import java.awt.KeyEventDispatcher;
@@ -20,6 +22,7 @@ import java.io.FileReader;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 import javax.swing.*;
 import javax.swing.event.*;
@@ -27,10 +30,16 @@ import javax.swing.event.*;
 import parser.CodeParser;
 import parser.JythonExecution;
 
+import solver.SolveResult;
 import solver.Solver;
 
+import analyser.CancellationToken;
+import analyser.CandidateSelector;
+import analyser.DecisionStore;
 import analyser.Knowledge;
 import analyser.Problem;
+import analyser.ResultCache;
+import analyser.SolverConfig;
 import analyser.Statement;
 
 public class Main extends JFrame{
@@ -40,12 +49,24 @@ public class Main extends JFrame{
 	
 	//the knowledge pool
 	private Knowledge knowledge;
+	//the remembered selections between equally informative problems
+	private DecisionStore decisions;
+	//the solutions of previous solves (kept in memory and in the data/cache directory)
+	private ResultCache resultCache;
 	//a tabbed pane for viewing and editing problems
 	private JTabbedPane tabbedPane;
 	//a dialog that shows information about the solution progress
 	private static JDialog solveDialog = null;
-	//the text that appears in the solveDialog (it is updated by Problem.log while Problem.solve is running)
+	//the text that appears in the solveDialog (it is refreshed from the log record while Problem.solve is running)
 	public static JTextPane log = null;
+	//the cancellation token of the solve shown in the solveDialog
+	private static CancellationToken solveToken = null;
+	//the timer that refreshes the text of the solveDialog
+	private static Timer logRefresh = null;
+	//the interval in milliseconds at which the text of the solveDialog is refreshed
+	public static final int LOG_REFRESH_INTERVAL = 250;
+	//the number of most recent log messages shown in the solveDialog while solving
+	public static final int LOG_SHOWN_EVENTS = 1000;
 	//set to true to exit without saving
 	private boolean hardExit = false;
 	
@@ -70,7 +91,7 @@ public class Main extends JFrame{
 		dialog.setLayout(null);
 		dialog.getRootPane().setBorder( BorderFactory.createLineBorder(Color.BLACK) );
 		dialog.setLocation(getWidth()/2, getHeight()/2);
-		dialog.setSize(200, 290);
+		dialog.setSize(200, 340);
 		dialog.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 		JButton cancel = new JButton(getScaledIcon("data/images/undo.png", 30));
 		cancel.setBounds(170, 0, 30, 30);
@@ -115,15 +136,34 @@ public class Main extends JFrame{
 				predicateSimilarityThresholdShow.setText(" Similarity: "+predicateSimilarityThreshold.getValue()*10+"%");
 			}
 		});
+		final JSlider beamWidth = new JSlider(JSlider.HORIZONTAL, 1, 8, 1);
+		beamWidth.setBounds(100, 105, 100, 25);
+		dialog.add(beamWidth);
+		final JLabel beamWidthShow = new JLabel(" Beam: greedy");
+		beamWidthShow.setBounds(0, 105, 100, 25);
+		dialog.add(beamWidthShow);
+		beamWidth.addChangeListener(new ChangeListener(){
+			@Override
+			public void stateChanged(ChangeEvent arg0) {
+				if(beamWidth.getValue()>1)
+					beamWidthShow.setText(" Beam: "+beamWidth.getValue());
+				else
+					beamWidthShow.setText(" Beam: greedy");
+			}
+		});
 		final JCheckBox logLevel = new JCheckBox("Log details", false);
-		logLevel.setBounds(0, 105, 100, 25);
+		logLevel.setBounds(0, 130, 100, 25);
 		dialog.add(logLevel);
 		final JCheckBox threads = new JCheckBox("Multi-threaded", true);
-		threads.setBounds(100, 105, 100, 25);
+		threads.setBounds(100, 130, 100, 25);
 		dialog.add(threads);
+		final JCheckBox portfolio = new JCheckBox("Try many Conserve/Similarity values", false);
+		portfolio.setToolTipText("Solve concurrently with a grid of settings and keep the first solution");
+		portfolio.setBounds(0, 155, 200, 25);
+		dialog.add(portfolio);
 		final CheckBoxList list = new CheckBoxList();
 		JScrollPane scroller = new JScrollPane(list);
-		scroller.setBounds(0, 130, 200, 160);
+		scroller.setBounds(0, 180, 200, 160);
 		dialog.add(scroller);
 		dialog.setVisible(true);
 		list.addCheckbox(new JCheckBox("Problems without library", false));
@@ -146,8 +186,14 @@ public class Main extends JFrame{
 					if(!((JCheckBox)list.getModel().getElementAt(i)).isSelected())
 						ignoredLibraries.add(((JCheckBox)list.getModel().getElementAt(i)).getText());
 				dialog.setVisible(false);
-				Statement.predicateSimilarityThreshold = predicateSimilarityThreshold.getValue()/10.0f;
-				solveProblem(pr, p, ignoredLibraries, maxIterations.getValue(), importanceBalance.getValue()/10.0f, logLevel.isSelected()?3:2, threads.isSelected()?Runtime.getRuntime().availableProcessors():1);
+				SolverConfig config = SolverConfig.getDefault()
+						.withMaxIterations(maxIterations.getValue())
+						.withImportanceBalance(importanceBalance.getValue()/10.0f)
+						.withPredicateSimilarityThreshold(predicateSimilarityThreshold.getValue()/10.0f)
+						.withLogLevel(logLevel.isSelected()?3:2)
+						.withThreads(threads.isSelected()?Runtime.getRuntime().availableProcessors():1)
+						.withBeamWidth(beamWidth.getValue());
+				solveProblem(pr, p, ignoredLibraries, config, portfolio.isSelected());
 			}
 		});
 	}
@@ -160,10 +206,32 @@ public class Main extends JFrame{
 	 * @param pr : the empty problem in which the solution will be placed
 	 * @param p : the problem that needs to be solved
 	 * @param ignoredLibraries : a set of library names that will be ignored by the solve function
+	 * @param config : the solver configuration (a beam width larger than 1 performs a beam search)
+	 */
+	public void solveProblem(final Problem pr, final Problem p, final ArrayList<String> ignoredLibraries, final SolverConfig config){
+		solveProblem(pr, p, ignoredLibraries, config, false);
+	}
+	
+	/**
+	 * <h1>solveProblem</h1>
+	 * This function performs the same operations as the <code>solveProblem</code> function, but can also
+	 * solve the problem with a grid of importance balances and similarity thresholds (see
+	 * <code>Solver.solvePortfolio</code>) instead of the given ones.
+	 * @param pr : the empty problem in which the solution will be placed
+	 * @param p : the problem that needs to be solved
+	 * @param ignoredLibraries : a set of library names that will be ignored by the solve function
+	 * @param config : the solver configuration (a beam width larger than 1 performs a beam search)
+	 * @param portfolio : whether to solve with a grid of settings and keep the first solution
 	 */
-	public void solveProblem(final Problem pr, final Problem p, final ArrayList<String> ignoredLibraries, final int maxIterations, final float importanceBalance, final int logLevel, final int threads){
+	public void solveProblem(final Problem pr, final Problem p, final ArrayList<String> ignoredLibraries, final SolverConfig config, final boolean portfolio){
 		if(solveDialog!=null)
 			solveDialog.setVisible(false);
+		if(solveToken!=null)
+			solveToken.cancel();
+		if(logRefresh!=null)
+			logRefresh.stop();
+		final CancellationToken token = new CancellationToken();
+		solveToken = token;
 		solveDialog = new JDialog();
 		log = new JTextPane();
 		log.setEditable(false);
@@ -172,13 +240,57 @@ public class Main extends JFrame{
 		log.setDoubleBuffered(true);
 		scroller.setBounds(10, 10, 200, 400);
 		solveDialog.add(scroller);
+		final JButton stop = new JButton("Stop");
+		stop.setToolTipText("Stop solving and keep the best partial solution");
+		solveDialog.add(stop, BorderLayout.SOUTH);
+		stop.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				token.cancel();
+				stop.setEnabled(false);
+			}
+		});
+		solveDialog.addWindowListener(new WindowAdapter(){
+			@Override
+			public void windowClosing(WindowEvent we){
+				token.cancel();
+			}
+		});
 		solveDialog.setSize(600, 400);
 		solveDialog.getRootPane().setBorder( BorderFactory.createLineBorder(Color.BLACK) );
 		solveDialog.setVisible(true);
+		//the most recent messages of the log are rendered only when it has changed (the solve's thread never
+		//touches the text pane) and the whole log is shown once solving finishes
+		final JTextPane shownLog = log;
+		final Timer refresh = new Timer(LOG_REFRESH_INTERVAL, new ActionListener(){
+			private long shownVersion = -1;
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				long version = Problem.getLogRecord().getVersion();
+				if(version!=shownVersion){
+					shownVersion = version;
+					shownLog.setText(Problem.getLogRecord().getRecentHtml(LOG_SHOWN_EVENTS));
+				}
+			}
+		});
+		logRefresh = refresh;
+		refresh.start();
 		(new Thread(){
 			@Override
 			public void run(){
-				Solver.solve(pr, p, knowledge, ignoredLibraries, maxIterations, importanceBalance, logLevel, threads);
+				if(portfolio)
+					Solver.solvePortfolio(pr, p, knowledge, ignoredLibraries, config,
+							Solver.PORTFOLIO_IMPORTANCE_BALANCES, Solver.PORTFOLIO_SIMILARITY_THRESHOLDS, null, token);
+				else
+					Solver.solve(pr, p, knowledge, ignoredLibraries, config, token, resultCache);
+				stop.setEnabled(false);
+				SwingUtilities.invokeLater(new Runnable(){
+					@Override
+					public void run(){
+						refresh.stop();
+						shownLog.setText(Problem.getLog());
+					}
+				});
 				addProblem(pr);
 			}
 		}).start();
@@ -329,6 +441,7 @@ public class Main extends JFrame{
 						}
 					knowledge.add(pr);
 					p.setResult(pr);
+					poolChanged();
 					requestSolveProblem(pr, p);
 				}
 			});
@@ -349,6 +462,7 @@ public class Main extends JFrame{
 						removeProblem(p.getResult());
 						knowledge.remove(p);
 						removeProblem(p);
+						poolChanged();
 			        }
 				}
 			});
@@ -377,6 +491,7 @@ public class Main extends JFrame{
 				public void actionPerformed(ActionEvent e) {
 					if(problems.getSelectedItem()!=null && !updating){
 						p.setResult((Problem)problems.getSelectedItem());
+						poolChanged();
 						update();
 					}
 				}
@@ -439,6 +554,7 @@ public class Main extends JFrame{
 				public void actionPerformed(ActionEvent arg0) {
 					if(editing!=null){
 						p.statements.remove(editing);
+						poolChanged();
 						select(-1);
 						list.clearSelection();
 						editing = null;
@@ -483,6 +599,7 @@ public class Main extends JFrame{
 							p.statements.remove(editing);
 						else if(prevEmpty)
 							p.statements.add(editing);
+						poolChanged();
 						update();
 					}	
 				}
@@ -536,6 +653,7 @@ public class Main extends JFrame{
 				@Override
 				public void actionPerformed(ActionEvent e) {
 					p.setLibrary(libraryText);
+					poolChanged();
 					library.setFocusable(false);
 					library.setFocusable(true);
 					update();
@@ -776,6 +894,8 @@ public class Main extends JFrame{
 		catch(Exception e){
 			e.printStackTrace();
 		}
+		//ties between candidates are resolved by the user
+		Problem.candidateSelector = new DialogSelector(new CandidateSelector.First());
 		//load endings
 		try(LineNumberReader lnr = new LineNumberReader(new FileReader(new File("data/endings.txt")))){
 			String str = "";
@@ -862,6 +982,13 @@ public class Main extends JFrame{
 		//load knowledge
 		knowledge = new Knowledge();
 		knowledge.load("data/knowledge.xml");
+		//load remembered selections
+		decisions = new DecisionStore(DecisionStore.DEFAULT_CAPACITY);
+		if((new File("data/decisions.xml")).exists())
+			decisions.load("data/decisions.xml");
+		//previous solutions are loaded from the cache directory when needed
+		resultCache = new ResultCache(ResultCache.DEFAULT_CAPACITY, "data/cache");
+		poolChanged();
 		
 		//
 		setSize(1000, 630);
@@ -1191,6 +1318,54 @@ public class Main extends JFrame{
 					breakdownCode.setIcon(getScaledIcon("data/images/unticked.png", 15));
 			}
 		});
+		//feature menu - tie-break strategy
+		JMenu tieBreak = new JMenu("Select between equal problems");
+		featureMenu.add(tieBreak);
+		final CandidateSelector[] selectors = {
+				Problem.candidateSelector,
+				new CandidateSelector.Remembered(Problem.candidateSelector, decisions),
+				new CandidateSelector.First(),
+				new CandidateSelector.SmallestImplementation(),
+				new CandidateSelector.LowestCost(),
+				new CandidateSelector.ExploreAll(),
+				new CandidateSelector.ExploreAll(0, Runtime.getRuntime().availableProcessors(), true)};
+		final JMenuItem[] selectorItems = new JMenuItem[selectors.length];
+		for(int i=0;i<selectors.length;i++){
+			final CandidateSelector boundSelector = selectors[i];
+			selectorItems[i] = new JMenuItem(boundSelector.toString());
+			tieBreak.add(selectorItems[i]);
+			if(Problem.candidateSelector==boundSelector)
+				selectorItems[i].setIcon(getScaledIcon("data/images/ticked.png", 15));
+			else
+				selectorItems[i].setIcon(getScaledIcon("data/images/unticked.png", 15));
+			selectorItems[i].addActionListener(new ActionListener(){
+				@Override
+				public void actionPerformed(ActionEvent e) {
+					Problem.candidateSelector = boundSelector;
+					for(int j=0;j<selectors.length;j++)
+						if(selectors[j]==boundSelector)
+							selectorItems[j].setIcon(getScaledIcon("data/images/ticked.png", 15));
+						else
+							selectorItems[j].setIcon(getScaledIcon("data/images/unticked.png", 15));
+				}
+			});
+		}
+		JMenuItem reviewDecisions = new JMenuItem("Review remembered selections");
+		featureMenu.add(reviewDecisions);
+		reviewDecisions.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				reviewDecisions();
+			}
+		});
+		JMenuItem clearCache = new JMenuItem("Forget cached solutions");
+		featureMenu.add(clearCache);
+		clearCache.addActionListener(new ActionListener(){
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				resultCache.clear();
+			}
+		});
 		//help menu
 		JMenu helpMenu = new JMenu("Help");
 		menu.add(helpMenu);
@@ -1295,6 +1470,8 @@ public class Main extends JFrame{
 		}
 		//save knowledge
 		knowledge.save("data/knowledge.xml");
+		//save remembered selections
+		decisions.save("data/decisions.xml");
 	}
 	
 	/**
@@ -1368,6 +1545,7 @@ public class Main extends JFrame{
 				        	knowledge.remove(p);
 				        	problems.removeItem(p);
 				        	removeProblem(p);
+				        	poolChanged();
 				        }
 					}
 				}
@@ -1443,6 +1621,7 @@ public class Main extends JFrame{
 			        	knowledge.remove(p);
 			        	problems.removeItem(p);
 			        	removeProblem(p);
+			        	poolChanged();
 			        }
 				}
 			}
@@ -1523,6 +1702,27 @@ public class Main extends JFrame{
 		changing = false;
 	}
 	
+	/**
+	 * <h1>replaceProblem</h1>
+	 * Replaces the tab of a problem that is no longer in the knowledge pool with a tab of the knowledge
+	 * pool problem that has the same name (if there is one). Nothing happens if the problem has no tab.
+	 * @param p : the replaced problem
+	 */
+	public void replaceProblem(Problem p){
+		boolean open = false;
+		for(int i=0;i<tabbedPane.getTabCount()-1;i++)
+			if(((ProblemPanel)tabbedPane.getComponent(i)).getProblem()==p)
+				open = true;
+		if(!open)
+			return;
+		removeProblem(p);
+		for(Problem replacement : knowledge.getProblems())
+			if(replacement.getName().compareTo(p.getName())==0){
+				addProblem(replacement);
+				break;
+			}
+	}
+	
 	public void showDocumentation(){
 		(new DocumentationDialog(this)).setVisible(true);
 	}
@@ -1565,12 +1765,14 @@ public class Main extends JFrame{
 		run.addActionListener(new ActionListener(){
 			@Override
 			public void actionPerformed(ActionEvent arg0) {
+				ArrayList<String> replaced = new ArrayList<String>();
 				for(int i=0;i<list.getModel().getSize();i++){
 					if(((JCheckBox)list.getModel().getElementAt(i)).isSelected()){
 						for(Problem p : knowledge.getProblems())
 							if(p.getName().compareTo(ret.get(i).getName())==0){
 								knowledge.remove(p);
 								removeProblem(p);
+								replaced.add(p.getName());
 								break;
 							}
 						knowledge.add(ret.get(i));
@@ -1590,11 +1792,115 @@ public class Main extends JFrame{
 					}
 				}
 				dialog.setVisible(false);
+				poolChanged();
+				resolveAffected(replaced);
 			}
 		});
 		dialog.setVisible(true);
 	}
 	
+	/**
+	 * <h1>poolChanged</h1>
+	 * Removes the cached solutions that depend on knowledge pool problems which have changed or have been
+	 * removed (see <code>ResultCache.invalidate</code>). It is called whenever the knowledge pool is edited,
+	 * so that solves do not need to check the cache before looking up their solutions.
+	 */
+	public void poolChanged(){
+		resultCache.invalidate(knowledge);
+	}
+	
+	/**
+	 * <h1>resolveAffected</h1>
+	 * Asks the user whether to solve again the problems whose solutions depend on the given changed problems
+	 * (see <code>Solver.resolveAffected</code>) and, if so, solves them concurrently in the background.
+	 * Their results are replaced in the event dispatch thread and open tabs of replaced results show the
+	 * new results instead. Nothing is asked if no problems are affected.
+	 * @param changed : the names of the knowledge pool problems that have changed
+	 */
+	public void resolveAffected(final ArrayList<String> changed){
+		ArrayList<Problem> affected = Solver.getAffected(knowledge, changed);
+		if(affected.isEmpty())
+			return;
+		int option = JOptionPane.showConfirmDialog(this,
+				affected.size()+" solved problems depend on the changed ones. Solve them again?",
+				"Solve affected problems",
+				JOptionPane.YES_NO_OPTION);
+		if(option!=JOptionPane.YES_OPTION)
+			return;
+		(new Thread(){
+			@Override
+			public void run(){
+				SolverConfig config = SolverConfig.getDefault().withThreads(Runtime.getRuntime().availableProcessors());
+				final CancellationToken token = new CancellationToken();
+				final ArrayList<SolveResult> results = Solver.resolveAffected(knowledge, changed, null, config, token, new Executor(){
+					@Override
+					public void execute(final Runnable replacement){
+						try{
+							SwingUtilities.invokeAndWait(new Runnable(){
+								@Override
+								public void run(){
+									ArrayList<Problem> previous = new ArrayList<Problem>(knowledge.getProblems());
+									replacement.run();
+									for(Problem p : previous)
+										if(!knowledge.getProblems().contains(p))
+											replaceProblem(p);
+								}
+							});
+						}
+						catch(Exception e){
+							//stop re-solving if the results could not be replaced
+							token.cancel();
+						}
+					}
+				});
+				SwingUtilities.invokeLater(new Runnable(){
+					@Override
+					public void run(){
+						int solved = 0;
+						for(SolveResult result : results){
+							if(result.isSolved())
+								solved++;
+							for(int i=0;i<tabbedPane.getTabCount()-1;i++)
+								if(((ProblemPanel)tabbedPane.getComponent(i)).getProblem()==result.getProblem())
+									((ProblemPanel)tabbedPane.getComponent(i)).update();
+						}
+						poolChanged();
+						JOptionPane.showMessageDialog(tabbedPane, "Solved "+solved+" out of "+results.size()+" affected problems.");
+					}
+				});
+			}
+		}).start();
+	}
+	
+	/**
+	 * <h1>reviewDecisions</h1>
+	 * Opens a dialog that lists all remembered selections between equally informative problems
+	 * (from the least to the most recently used) and forgets the ones the user unchecks.
+	 */
+	public void reviewDecisions(){
+		ArrayList<DecisionStore.Decision> stored = decisions.getDecisions();
+		if(stored.isEmpty()){
+			JOptionPane.showMessageDialog(tabbedPane, "There are no remembered selections.");
+			return;
+		}
+		CheckBoxList list = new CheckBoxList();
+		for(DecisionStore.Decision decision : stored)
+			list.addCheckbox(new JCheckBox(decision.toString(), true));
+		JScrollPane scroller = new JScrollPane(list);
+		scroller.setPreferredSize(new Dimension(500, 300));
+		int option = JOptionPane.showConfirmDialog(this,
+				scroller,
+                "Remembered selections (uncheck to forget)",
+                JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE,
+                null);
+		if(option == JOptionPane.OK_OPTION) {
+			for(int i=0;i<list.getModel().getSize();i++)
+				if(!((JCheckBox)list.getModel().getElementAt(i)).isSelected())
+					decisions.remove(stored.get(i).getFingerprint());
+		}
+	}
+	
 	public void editEndings(){
 		String end = "";
 		for(String str : Statement.endings)
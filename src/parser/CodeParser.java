@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import analyser.AnalyserEvents;
 import analyser.Knowledge;
 import analyser.Problem;
 import analyser.Statement;
@@ -111,6 +112,8 @@ public class CodeParser {
 	 * @return a list of problems that have non-empty results
 	 */
 	public static ArrayList<Problem> parseImport(String fileText){
+		AnalyserEvents.ImportParse event = new AnalyserEvents.ImportParse();
+		event.begin();
 		fileText.replace("\t", "    ");
 		ArrayList<Problem> ret = new ArrayList<Problem>();
 		String[] lines = fileText.split("\n");
@@ -237,6 +240,7 @@ public class CodeParser {
 			
 			text = line+"\n";
 		}
+		event.finish(fileText, ret);
 		return ret;
 	}
 }
@@ -13,6 +13,8 @@ import javax.swing.JTextField;
 
 import org.python.util.PythonInterpreter;
 
+import analyser.AnalyserEvents;
+import analyser.Metrics;
 import analyser.Problem;
 import analyser.Statement;
 
@@ -23,6 +25,12 @@ import analyser.Statement;
  * @author Manios Krasanakis
  */
 public class JythonExecution {
+	//live metrics of script executions (see Metrics)
+	private static final Metrics.Counter executions = Metrics.getDefault().counter("JythonExecutions",
+			"Number of script executions");
+	private static final Metrics.Counter failedExecutions = Metrics.getDefault().counter("JythonFailedExecutions",
+			"Number of script executions that could not be completed");
+	
 	/**
 	 * <h1>execute</h1>
 	 * Creates a <i>Jython</i> interpreter for executing all problem statements
@@ -37,6 +45,10 @@ public class JythonExecution {
 	public static boolean execute(Problem p){
 		if(p.getResult()!=null)
 			p = p.getResult();
+		executions.increment();
+		AnalyserEvents.ScriptExecution event = new AnalyserEvents.ScriptExecution();
+		event.begin();
+		boolean successful = true;
 		PythonInterpreter interpreter = null;
 		try{
 			interpreter = new PythonInterpreter();
@@ -53,7 +65,8 @@ public class JythonExecution {
 			int errors = 0;
 			for(Statement s : p.statements)
 				if(!s.isInput() && !s.isOutput() && !s.isIterator()){
-					Problem.log(s.toHTML(), 2);
+					if(Problem.isLogged(2))
+						Problem.log(s.toHTML(), 2);
 					try{
 						interpreter.exec(s.toString());
 					}
@@ -73,13 +86,15 @@ public class JythonExecution {
 		}
 		catch(Exception e){
 			e.printStackTrace();
-			return false;
+			failedExecutions.increment();
+			successful = false;
 		}
 		finally{
 			if(interpreter!=null)
 				interpreter.cleanup();
 		}
-		return true;
+		event.finish(p, successful);
+		return successful;
 	}
 	
 	/**
@@ -0,0 +1,167 @@
+package solver;
+
+import analyser.Problem;
+import analyser.SolveStats;
+import analyser.SolverConfig;
+import analyser.Statement;
+
+/**
+ * <h1>SolveResult</h1>
+ * This class holds the outcome of solving a single problem with <code>Solver.solveAll</code>
+ * or of a single run of <code>Solver.solvePortfolio</code>, i.e. the solution together with some statistics of the solve and its log record.
+ */
+public class SolveResult {
+	//the problem that was solved
+	private Problem problem;
+	//the solution of the problem
+	private Problem solution;
+	//the settings the problem was solved with
+	private SolverConfig config;
+	//the number of rationalized problems the problem was solved against
+	private int poolSize;
+	//the total number of candidate evaluations
+	private int evaluations;
+	//the wall-clock duration of the solve in milliseconds
+	private long time;
+	//the log record of the solve in HTML form
+	private String log;
+	//the durations of the phases of the solve and the counts of its operations
+	private SolveStats stats;
+	//the exception that stopped the solve (null if the solve finished)
+	private RuntimeException failure;
+	//whether the solve was cancelled before finishing
+	private boolean cancelled;
+
+	/**
+	 * <h1>SolveResult</h1>
+	 * The constructor for the SolveResult class.
+	 * @param problem : the problem that was solved
+	 * @param solution : the solution of the problem
+	 * @param config : the settings the problem was solved with
+	 * @param poolSize : the number of rationalized problems the problem was solved against
+	 * @param evaluations : the total number of candidate evaluations
+	 * @param time : the wall-clock duration of the solve in milliseconds
+	 * @param log : the log record of the solve in HTML form
+	 * @param stats : the statistics of the solve
+	 * @param failure : the exception that stopped the solve (<code>null</code> if the solve finished)
+	 * @param cancelled : whether the solve was cancelled before finishing
+	 */
+	public SolveResult(Problem problem, Problem solution, SolverConfig config, int poolSize, int evaluations, long time, String log, SolveStats stats, RuntimeException failure, boolean cancelled){
+		this.problem = problem;
+		this.solution = solution;
+		this.config = config;
+		this.poolSize = poolSize;
+		this.evaluations = evaluations;
+		this.time = time;
+		this.log = log;
+		this.stats = stats;
+		this.failure = failure;
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * <h1>getProblem</h1>
+	 * @return the problem that was solved
+	 */
+	public Problem getProblem(){
+		return problem;
+	}
+
+	/**
+	 * <h1>getSolution</h1>
+	 * @return the solution of the problem (possibly a partial one)
+	 */
+	public Problem getSolution(){
+		return solution;
+	}
+
+	/**
+	 * <h1>getConfig</h1>
+	 * @return the settings the problem was solved with
+	 */
+	public SolverConfig getConfig(){
+		return config;
+	}
+
+	/**
+	 * <h1>isSolved</h1>
+	 * @return <code>true</code> if the solve finished and the solution needs no further solving
+	 */
+	public boolean isSolved(){
+		return failure==null && solution.isSolved();
+	}
+
+	/**
+	 * <h1>getPoolSize</h1>
+	 * @return the number of rationalized problems the problem was solved against
+	 */
+	public int getPoolSize(){
+		return poolSize;
+	}
+
+	/**
+	 * <h1>getEvaluations</h1>
+	 * @return the total number of candidate evaluations
+	 */
+	public int getEvaluations(){
+		return evaluations;
+	}
+
+	/**
+	 * <h1>getTime</h1>
+	 * @return the wall-clock duration of the solve in milliseconds
+	 */
+	public long getTime(){
+		return time;
+	}
+
+	/**
+	 * <h1>getLog</h1>
+	 * @return the log record of the solve in HTML form
+	 */
+	public String getLog(){
+		return log;
+	}
+
+	/**
+	 * <h1>getStats</h1>
+	 * @return the durations of the phases of the solve and the counts of its operations (the shared
+	 * rationalization of <code>Solver.solveAll</code> is not included)
+	 */
+	public SolveStats getStats(){
+		return stats;
+	}
+
+	/**
+	 * <h1>getFailure</h1>
+	 * @return the exception that stopped the solve (<code>null</code> if the solve finished)
+	 */
+	public RuntimeException getFailure(){
+		return failure;
+	}
+
+	/**
+	 * <h1>isCancelled</h1>
+	 * @return <code>true</code> if the solve was cancelled before finishing (its solution is a partial one)
+	 */
+	public boolean isCancelled(){
+		return cancelled;
+	}
+
+	/**
+	 * <h1>getStatementCount</h1>
+	 * @return the number of statements of the solution (besides inputs and outputs)
+	 */
+	public int getStatementCount(){
+		int count = 0;
+		for(Statement st : solution.statements)
+			if(!st.isInput() && !st.isOutput())
+				count++;
+		return count;
+	}
+
+	@Override
+	public String toString(){
+		return problem.getName()+(isSolved()?" (solved":" (unsolved")+(cancelled?", cancelled":"")+", "+evaluations+" evaluations, "+time+" ms)";
+	}
+}
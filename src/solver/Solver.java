@@ -1,9 +1,33 @@
 package solver;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import analyser.AnalyserEvents;
+import analyser.CancellationToken;
+import analyser.Candidate;
+import analyser.CandidateSelector;
+import analyser.IterationMemo;
 import analyser.Knowledge;
+import analyser.Metrics;
 import analyser.Problem;
+import analyser.ResultCache;
+import analyser.SimilarityMatrix;
+import analyser.SolveContext;
+import analyser.SolveStats;
+import analyser.SolveTrace;
+import analyser.SolverConfig;
+import analyser.Statement;
 
 /**
  * <h1>Solver</h1>
@@ -11,6 +35,26 @@ import analyser.Problem;
  * @author Manios Krasanakis
  */
 public class Solver {
+	//live metrics of all solves (see Metrics)
+	private static final Metrics.Counter solvesInFlight = Metrics.getDefault().counter("SolvesInFlight",
+			"Number of solves that are running");
+	private static final Metrics.Histogram solveLatency = Metrics.getDefault().histogram("SolveLatency",
+			"Duration of solves in milliseconds", new long[]{1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000});
+	private static final Metrics.Histogram solveIterations = Metrics.getDefault().histogram("SolveIterations",
+			"Number of passes of solves (including the final pass)", new long[]{1, 2, 3, 4, 5, 6, 8, 10, 15, 20, 30, 50, 100});
+	private static final Metrics.Histogram poolSizes = Metrics.getDefault().histogram("RationalizedPoolSize",
+			"Number of rationalized problems solves are performed against", new long[]{10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000});
+	private static final Metrics.HitRate resultCacheHits = Metrics.getDefault().hitRate("ResultCacheHitRate",
+			"Lookups of solutions in result caches");
+	private static final Metrics.HitRate rationalizationCacheHits = Metrics.getDefault().hitRate("RationalizationCacheHitRate",
+			"Lookups of rationalized knowledge pools shared between the problems of solveAll");
+	private static final Metrics.HitRate memoHits = Metrics.getDefault().hitRate("IterationMemoHitRate",
+			"Lookups of solution steps in shared iteration memos");
+	private static final Metrics.HitRate similarityMatrixHits = Metrics.getDefault().hitRate("SimilarityMatrixHitRate",
+			"Statement comparisons that were decided by remembered similarities");
+	private static final Metrics.HitRate formCacheHits = Metrics.getDefault().hitRate("NormalizationCacheHitRate",
+			"Lookups of the cached canonical forms of statements");
+
 	/**
 	 * <h1>solve</h1>
 	 * Performs the solution algorithm by performing consecutive steps.
@@ -26,49 +70,1212 @@ public class Solver {
 	 * (>100% for Occam's Razor - i.e. to select the simplest implementation)
 	 * @param logLevel : the desired log level. Must be either 2 or 3.
 	 * @param threads : the number of threads to use
+	 * @return the statistics of the solve
+	 */
+	public static SolveStats solve(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, int maxIterations, float importanceBalance, int logLevel, int threads){
+		return solve(pr, p, knowledge, ignoredLibraries, maxIterations, importanceBalance, logLevel, threads, new CancellationToken());
+	}
+	
+	/**
+	 * <h1>solve</h1>
+	 * Performs the same solution algorithm as the <code>solve</code> function without a cancellation
+	 * token, but also stops when the given token is cancelled (either explicitly or because its time
+	 * budget ran out). In that case, the last complete step is considered the best partial solution
+	 * and is placed into the empty problem through a final pass that merges nothing.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param maxIterations : maximum number of steps to perform
+	 * @param importanceBalance : importance of <i>not</i> adding new information
+	 * @param logLevel : the desired log level. Must be either 2 or 3.
+	 * @param threads : the number of threads to use
+	 * @param token : a cancellation token (create it with a time budget for a wall-clock limit)
+	 * @return the statistics of the solve
+	 */
+	public static SolveStats solve(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, int maxIterations, float importanceBalance, int logLevel, int threads, CancellationToken token){
+		SolverConfig config = SolverConfig.getDefault()
+				.withMaxIterations(maxIterations)
+				.withImportanceBalance(importanceBalance)
+				.withLogLevel(logLevel)
+				.withThreads(threads);
+		return solve(pr, p, knowledge, ignoredLibraries, config, token);
+	}
+	
+	/**
+	 * <h1>solve</h1>
+	 * Performs the same solution algorithm as the <code>solve</code> function with a cancellation
+	 * token, using the given settings instead of the static ones. The given problem is not modified
+	 * (besides setting its result), since a copy of it that uses the given settings is solved instead.
+	 * If the given settings have a beam width larger than 1, <code>solveBeam</code> is called instead.<br/>
+	 * If the settings allow splitting subproblems and the given problem consists of more than one
+	 * independent subproblems (see <code>Problem.getSubproblems</code>), these are solved concurrently
+	 * against the same rationalized knowledge pool and their solutions are stitched together.<br/>
+	 * The solution records the names of the knowledge pool problems that contributed to it (see
+	 * <code>Problem.getProvenance</code>). The durations of the phases of the solve and the counts of its
+	 * most expensive operations are returned (see <code>SolveStats</code>) and, if the settings ask for it
+	 * (see <code>SolverConfig.withLogStats</code>), they are also added to the log record.<br/>
+	 * If the settings have a trace path (see <code>SolverConfig.withTracePath</code>), the solve is recorded
+	 * in that file, so that it can be repeated later (see <code>replay</code>).
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token (create it with a time budget for a wall-clock limit)
+	 * @return the statistics of the solve
+	 */
+	public static SolveStats solve(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token){
+		if(config.getTracePath()!=null && config.getTrace()==null)
+			return solveTraced(pr, p, knowledge, ignoredLibraries, config, token);
+		if(config.getBeamWidth()>1)
+			return solveBeam(pr, p, knowledge, ignoredLibraries, config, token);
+		long solveStart = startSolve();
+		//each solve reports to new statistics, so that concurrent solves do not mix up theirs
+		SolveStats stats = new SolveStats();
+		SolveStats previousStats = SolveStats.bind(stats);
+		try{
+			Problem.setLogLevel(3);
+			Problem.clearLog();
+			long[] usage = SolveStats.startAccounting();
+			p.setResult(null);
+			//create a rationalized copy of the knowledge pool, remembering the source of each rationalized problem
+			Problem.log("Creating rationalized copy of knowledge pool ("+config.getThreads()+" threads)", 1);
+			long phaseStart = System.nanoTime();
+			IdentityHashMap<Problem, Problem> sources = new IdentityHashMap<Problem, Problem>();
+			ArrayList<Problem> problems = knowledge.getRationalized(p, ignoredLibraries, config, token, sources);
+			Problem.log("Number of rationalized problems: "+problems.size(), 2);
+			config = config.withSimilarityMatrix(knowledge.getSimilarityMatrix(problems, config));
+			SolveStats.time(SolveStats.RATIONALIZATION, phaseStart);
+			greedySearch(pr, p, problems, config, token);
+			pr.setProvenance(getProvenance(pr, sources));
+			p.setResult(pr);
+			SolveStats.stopAccounting(usage);
+			if(config.isLogStats())
+				stats.log();
+			Problem.setLogLevel(3);
+			return stats;
+		}
+		finally{
+			SolveStats.bind(previousStats);
+			finishSolve(solveStart, stats);
+		}
+	}
+	
+	/**
+	 * <h1>solve</h1>
+	 * Performs the same solution algorithm as the <code>solve</code> function with the given settings, but
+	 * first looks up the solution in the given cache (see <code>ResultCache.getKey</code>). If it is found
+	 * and none of the knowledge pool problems it was found with has changed, nothing is solved and the
+	 * stored solution is placed into the empty problem. Otherwise, the problem is solved by the
+	 * <code>solve</code> function without a cache and, unless the solve was cancelled, the solution is stored
+	 * in the cache together with the knowledge pool problems named in its provenance, so that it is not
+	 * retrieved once any of them changes (see <code>ResultCache.get</code>). The cache is not used if the
+	 * settings do not always find the same solution (see <code>SolverConfig.isReproducible</code>), e.g. if
+	 * ties are answered by the user, or if the solve is traced (see <code>solveTraced</code>), since the trace of
+	 * a cached solution would be empty.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token (create it with a time budget for a wall-clock limit)
+	 * @param cache : the cache of solutions (<code>null</code> to always solve)
+	 * @return the statistics of the solve
+	 */
+	public static SolveStats solve(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token, ResultCache cache){
+		if(config.getTracePath()!=null && config.getTrace()==null)
+			return solveTraced(pr, p, knowledge, ignoredLibraries, config, token);
+		if(cache==null || !config.isReproducible())
+			return solve(pr, p, knowledge, ignoredLibraries, config, token);
+		p.setResult(null);
+		String key = ResultCache.getKey(p, config, ignoredLibraries);
+		Problem cached = cache.get(key, knowledge);
+		if(cached==null){
+			resultCacheHits.miss();
+			SolveStats stats = solve(pr, p, knowledge, ignoredLibraries, config, token);
+			if(!token.isCancelled())
+				cache.put(key, pr, getContributors(pr, knowledge));
+			return stats;
+		}
+		long solveStart = startSolve();
+		//each solve reports to new statistics, so that concurrent solves do not mix up theirs
+		SolveStats stats = new SolveStats();
+		SolveStats previousStats = SolveStats.bind(stats);
+		try{
+			Problem.setLogLevel(3);
+			Problem.clearLog();
+			long[] usage = SolveStats.startAccounting();
+			for(Statement st : cached.statements)
+				pr.statements.add(new Statement(st.getVariables(), st.getExpression(), config));
+			pr.setConfig(config);
+			pr.setProvenance(cached.getProvenance());
+			resultCacheHits.hit();
+			SolveStats.count(SolveStats.RESULT_CACHE_HITS);
+			Problem.log("Loaded cached solution", 0);
+			if(pr.isSolved())
+				Problem.log("Solved", 0);
+			else
+				Problem.log("Could not find solution", 0);
+			p.setResult(pr);
+			SolveStats.stopAccounting(usage);
+			Problem.setLogLevel(3);
+			return stats;
+		}
+		finally{
+			SolveStats.bind(previousStats);
+			finishSolve(solveStart, stats);
+		}
+	}
+	
+	/**
+	 * <h1>solveTraced</h1>
+	 * Performs the <code>solve</code> function while recording its trace (see <code>SolveTrace</code>) and
+	 * saves the trace to the trace path of the given settings once the solve finishes. The solution is never
+	 * looked up in a cache, so that the trace records every step of the solve.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration (it must have a trace path)
+	 * @param token : a cancellation token
+	 * @return the statistics of the solve
+	 */
+	private static SolveStats solveTraced(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token){
+		SolveTrace trace = new SolveTrace(p, knowledge, ignoredLibraries, config);
+		long start = System.nanoTime();
+		SolveStats stats = solve(pr, p, knowledge, ignoredLibraries, config.withTrace(trace), token);
+		trace.setSolution(pr, (System.nanoTime()-start)/1000000.0);
+		trace.save(config.getTracePath());
+		return stats;
+	}
+	
+	/**
+	 * <h1>replay</h1>
+	 * Repeats a recorded solve (see <code>SolveTrace</code>) with the recorded settings, answering the
+	 * selections between equally informative candidates as they were recorded (see
+	 * <code>CandidateSelector.Replayed</code>). If the recorded problem was a member of the knowledge pool,
+	 * the member with the same name is solved instead of a copy, so that it is excluded from the knowledge
+	 * pool as during the recorded solve, and its result is restored afterwards.<br/>
+	 * Whether the recorded solution was found again can be checked with <code>SolveTrace.isSameSolution</code>.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param trace : the recorded solve
+	 * @param knowledge : the knowledge pool (it must be the same as during the recorded solve)
+	 * @param token : a cancellation token
+	 * @return the statistics of the solve
+	 * @throws IllegalArgumentException if the knowledge pool differs from the one of the recorded solve
+	 */
+	public static SolveStats replay(Problem pr, SolveTrace trace, Knowledge knowledge, CancellationToken token){
+		Problem p = trace.getProblem();
+		Problem member = null;
+		if(trace.isPooled())
+			for(Problem kp : knowledge.getProblems())
+				if(kp!=Knowledge.emptyProblem && kp.getName().equals(p.getName())){
+					member = kp;
+					break;
+				}
+		if(member!=null)
+			p = member;
+		ArrayList<String> ignoredLibraries = trace.getIgnoredLibraries();
+		if(!knowledge.getPoolHash(p, ignoredLibraries).equals(trace.getPoolHash()))
+			throw new IllegalArgumentException("The knowledge pool differs from the one '"+p.getName()+"' was solved against");
+		SolverConfig config = trace.getConfig().withSelector(new CandidateSelector.Replayed(trace, new CandidateSelector.First()));
+		Problem result = p.getResult();
+		try{
+			return solve(pr, p, knowledge, ignoredLibraries, config, token);
+		}
+		finally{
+			if(member!=null)
+				member.setResult(result);
+		}
+	}
+	
+	/**
+	 * <h1>getContributors</h1>
+	 * @param solution : a solution
+	 * @param sources : the knowledge pool problem of each rationalized problem
+	 * @return the knowledge pool problems whose rationalized problems were merged into the solution (without duplicates)
+	 */
+	private static ArrayList<Problem> getContributors(Problem solution, Map<Problem, Problem> sources){
+		ArrayList<Problem> contributors = new ArrayList<Problem>();
+		for(Problem merged : solution.getMergedProblems()){
+			Problem source = sources.get(merged);
+			if(source!=null && !contributors.contains(source))
+				contributors.add(source);
+		}
+		return contributors;
+	}
+	
+	/**
+	 * <h1>getContributors</h1>
+	 * @param solution : a solution found against the given knowledge pool
+	 * @param knowledge : the knowledge pool
+	 * @return the knowledge pool problems named in the provenance of the solution (see <code>Problem.getProvenance</code>)
+	 */
+	private static ArrayList<Problem> getContributors(Problem solution, Knowledge knowledge){
+		ArrayList<Problem> contributors = new ArrayList<Problem>();
+		for(Problem source : knowledge.getProblems())
+			if(source.getResult()!=null && solution.getProvenance().contains(source.getName()) && !contributors.contains(source))
+				contributors.add(source);
+		return contributors;
+	}
+	
+	/**
+	 * <h1>getProvenance</h1>
+	 * @param solution : a solution
+	 * @param sources : the knowledge pool problem of each rationalized problem
+	 * @return the names of the knowledge pool problems whose rationalized problems were merged into the solution (without duplicates)
+	 */
+	private static ArrayList<String> getProvenance(Problem solution, Map<Problem, Problem> sources){
+		ArrayList<String> provenance = new ArrayList<String>();
+		for(Problem contributor : getContributors(solution, sources))
+			provenance.add(contributor.getName());
+		return provenance;
+	}
+	
+	/**
+	 * <h1>solveAll</h1>
+	 * Solves many problems against the same knowledge pool with the given settings. The knowledge pool is
+	 * rationalized only once (see <code>Knowledge.getRationalizedBySource</code>) and the problems are then
+	 * solved concurrently, each one by a single thread that uses its own solve context (see
+	 * <code>SolveContext</code>), so that their logs do not get mixed up. Ties between candidates are never
+	 * resolved by the user, so this function does not require a display.<br/>
+	 * As with <code>solve</code>, each problem (and any problem that results from it) is excluded from the
+	 * knowledge pool it is solved against. The given problems are not modified, i.e. their results are
+	 * not set.
+	 * @param problems : the problems to solve
+	 * @param knowledge : the knowledge pool
+	 * @param config : the solver configuration (its threads are split between problems)
+	 * @return the results of solving each problem, in the same order as the given problems
+	 */
+	public static ArrayList<SolveResult> solveAll(List<Problem> problems, Knowledge knowledge, SolverConfig config){
+		return solveAll(problems, knowledge, null, config, new CancellationToken());
+	}
+	
+	/**
+	 * <h1>solveAll</h1>
+	 * Performs the same batch solve as the <code>solveAll</code> function without a cancellation token,
+	 * but stops all solves as soon as the given token is cancelled. Solves that are running at that point
+	 * keep their best partial solution and problems that had not started are left unsolved.
+	 * @param problems : the problems to solve
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration (its threads are split between problems)
+	 * @param token : a cancellation token shared by all solves
+	 * @return the results of solving each problem, in the same order as the given problems
+	 */
+	public static ArrayList<SolveResult> solveAll(List<Problem> problems, Knowledge knowledge, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token){
+		return solveAll(problems, knowledge, ignoredLibraries, config, token, null);
+	}
+	
+	/**
+	 * <h1>solveAll</h1>
+	 * Performs the same batch solve as the <code>solveAll</code> function with a cancellation token, but
+	 * looks up each problem in the given cache before solving it and stores the solutions of finished
+	 * solves in it (see the <code>solve</code> function with a cache). Problems found in the cache are
+	 * reported with zero candidate evaluations. The solves also share their recorded steps (see
+	 * <code>IterationMemo</code>), so that a step already performed against the same pool is not repeated.
+	 * Neither the cache nor the recorded steps are used if the settings do not always find the same solution
+	 * (see <code>SolverConfig.isReproducible</code>).
+	 * @param problems : the problems to solve
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration (its threads are split between problems)
+	 * @param token : a cancellation token shared by all solves
+	 * @param cache : the cache of solutions (<code>null</code> to always solve)
+	 * @return the results of solving each problem, in the same order as the given problems
+	 */
+	public static ArrayList<SolveResult> solveAll(final List<Problem> problems, final Knowledge knowledge, final ArrayList<String> ignoredLibraries, SolverConfig config, final CancellationToken token, final ResultCache cache){
+		if(cache!=null && !config.isReproducible())
+			return solveAll(problems, knowledge, ignoredLibraries, config, token, null);
+		long start = System.nanoTime();
+		final LinkedHashMap<Problem, ArrayList<Problem>> bySource = knowledge.getRationalizedBySource(ignoredLibraries, config, token);
+		//the results of the knowledge pool problems are read once, since sources are excluded according to them
+		final HashMap<Problem, Problem> sourceResults = new HashMap<Problem, Problem>();
+		for(Problem source : bySource.keySet())
+			sourceResults.put(source, source.getResult());
+		//the source of each rationalized problem is needed for provenance
+		final IdentityHashMap<Problem, Problem> sources = new IdentityHashMap<Problem, Problem>();
+		for(Problem source : bySource.keySet())
+			for(Problem rationalized : bySource.get(source))
+				sources.put(rationalized, source);
+		ArrayList<Problem> rationalized = new ArrayList<Problem>();
+		for(ArrayList<Problem> part : bySource.values())
+			rationalized.addAll(part);
+		config = config.withSimilarityMatrix(knowledge.getSimilarityMatrix(rationalized, config));
+		final long rationalizationTime = (System.nanoTime()-start)/1000000;
+		final int workers = Math.max(1, Math.min(config.getThreads(), problems.size()));
+		final SolverConfig workerConfig = config.withThreads(config.getThreads()/workers);
+		//problems that exclude the same sources share the same pool, so that they can also share recorded steps
+		final ArrayList<ArrayList<Problem>> pools = new ArrayList<ArrayList<Problem>>();
+		HashMap<String, ArrayList<Problem>> poolsByExcluded = new HashMap<String, ArrayList<Problem>>();
+		for(Problem p : problems){
+			String excluded = "";
+			int index = 0;
+			for(Problem source : bySource.keySet()){
+				if(source==p || sourceResults.get(source)==p)
+					excluded += index+" ";
+				index++;
+			}
+			ArrayList<Problem> pool = poolsByExcluded.get(excluded);
+			if(pool!=null)
+				rationalizationCacheHits.hit();
+			else{
+				rationalizationCacheHits.miss();
+				pool = new ArrayList<Problem>();
+				for(Problem source : bySource.keySet())
+					if(source!=p && sourceResults.get(source)!=p)
+						pool.addAll(bySource.get(source));
+				poolsByExcluded.put(excluded, pool);
+			}
+			pools.add(pool);
+		}
+		final IterationMemo memo = new IterationMemo(IterationMemo.DEFAULT_CAPACITY);
+		final SolveResult [] results = new SolveResult[problems.size()];
+		final AtomicInteger nextProblem = new AtomicInteger(0);
+		Thread [] th = new Thread[workers];
+		for(int i=0;i<workers;i++){
+			th[i] = new Thread(){
+				@Override
+				public void run(){
+					for(int j=nextProblem.getAndIncrement();j<problems.size();j=nextProblem.getAndIncrement()){
+						Problem p = problems.get(j);
+						ArrayList<Problem> pool = pools.get(j);
+						String key = null;
+						if(cache!=null){
+							key = ResultCache.getKey(p, workerConfig, ignoredLibraries);
+							Problem cached = cache.get(key, knowledge);
+							if(cached!=null){
+								SolveContext context = new SolveContext(workerConfig, token, false);
+								context.bind();
+								Problem pr = new Problem(p.getName()+"_implement", workerConfig);
+								try{
+									for(Statement st : cached.statements)
+										pr.statements.add(new Statement(st.getVariables(), st.getExpression(), workerConfig));
+									pr.setProvenance(cached.getProvenance());
+									resultCacheHits.hit();
+									SolveStats.count(SolveStats.RESULT_CACHE_HITS);
+									Problem.log("Loaded cached solution", 0);
+								}
+								finally{
+									SolveContext.unbind();
+								}
+								results[j] = new SolveResult(p, pr, workerConfig, pool.size(), 0, 0, context.getLog(), context.getStats().copy(), null, false);
+								continue;
+							}
+							resultCacheHits.miss();
+						}
+						results[j] = solveInContext(p, pool, sources, workerConfig, token, memo,
+								"Rationalized knowledge pool shared between "+problems.size()+" problems ("+rationalizationTime+" ms)");
+						if(cache!=null && results[j].getFailure()==null && !token.isCancelled())
+							cache.put(key, results[j].getSolution(), getContributors(results[j].getSolution(), sources));
+					}
+				}
+			};
+		}
+		for(int i=0;i<workers;i++)
+			th[i].start();
+		for(int i=0;i<workers;)
+			try{
+				th[i].join();
+				i++;
+			}
+			catch(InterruptedException e){
+				token.cancel();
+			}
+		ArrayList<SolveResult> list = new ArrayList<SolveResult>();
+		for(SolveResult result : results)
+			list.add(result);
+		return list;
+	}
+	
+	/**
+	 * <h1>getAffected</h1>
+	 * Finds the problems of the knowledge pool whose solutions were generated with the help of any of the
+	 * given problems, i.e. whose results name any of them in their provenance (see <code>Problem.getProvenance</code>).
+	 * @param knowledge : the knowledge pool
+	 * @param changed : the names of the knowledge pool problems that have changed
+	 * @return the affected problems, in the order of the knowledge pool
+	 */
+	public static ArrayList<Problem> getAffected(Knowledge knowledge, Collection<String> changed){
+		ArrayList<Problem> affected = new ArrayList<Problem>();
+		for(Problem p : knowledge.getProblems())
+			if(p.getResult()!=null && p.getResult()!=p && !Collections.disjoint(p.getResult().getProvenance(), changed))
+				affected.add(p);
+		return affected;
+	}
+	
+	/**
+	 * <h1>resolveAffected</h1>
+	 * Re-solves only the problems of the knowledge pool whose solutions depend on the given changed problems
+	 * (see <code>getAffected</code>), for example after a library has been imported again. Affected problems
+	 * are re-solved concurrently with <code>solveAll</code> and their results are replaced by new problems
+	 * that hold the new solutions (see <code>Knowledge.replace</code>). Since re-solved problems are themselves
+	 * part of the knowledge pool, the problems that depend on them are re-solved next, until no more problems
+	 * are affected. Each problem is re-solved at most once.<br/>
+	 * Results of solves that were cancelled or failed are not replaced.
+	 * @param knowledge : the knowledge pool
+	 * @param changed : the names of the knowledge pool problems that have changed
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration (its threads are split between problems)
+	 * @param token : a cancellation token shared by all solves
+	 * @return the results of re-solving each affected problem, in the order they were re-solved
+	 */
+	public static ArrayList<SolveResult> resolveAffected(Knowledge knowledge, Collection<String> changed, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token){
+		return resolveAffected(knowledge, changed, ignoredLibraries, config, token, new Executor(){
+			@Override
+			public void execute(Runnable replacement){
+				replacement.run();
+			}
+		});
+	}
+	
+	/**
+	 * <h1>resolveAffected</h1>
+	 * Performs the same re-solving as the <code>resolveAffected</code> function without an executor, but
+	 * replaces the results of each round of re-solved problems through the given executor, so that the
+	 * knowledge pool is only modified by the thread that owns it (e.g. the event dispatch thread of a
+	 * display). The problems that are affected next are found once the executor has run the replacement,
+	 * so the executor should run it before returning.
+	 * @param knowledge : the knowledge pool
+	 * @param changed : the names of the knowledge pool problems that have changed
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration (its threads are split between problems)
+	 * @param token : a cancellation token shared by all solves
+	 * @param executor : runs the replacement of the results of each round
+	 * @return the results of re-solving each affected problem, in the order they were re-solved
 	 */
-	public static void solve(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, int maxIterations, float importanceBalance, int logLevel, int threads){
+	public static ArrayList<SolveResult> resolveAffected(final Knowledge knowledge, Collection<String> changed, ArrayList<String> ignoredLibraries, SolverConfig config, CancellationToken token, Executor executor){
+		ArrayList<SolveResult> list = new ArrayList<SolveResult>();
+		HashSet<Problem> resolved = new HashSet<Problem>();
+		HashSet<String> names = new HashSet<String>(changed);
+		while(!names.isEmpty() && !token.isCancelled()){
+			ArrayList<Problem> affected = getAffected(knowledge, names);
+			affected.removeAll(resolved);
+			if(affected.isEmpty())
+				break;
+			names = new HashSet<String>();
+			final LinkedHashMap<Problem, Problem> results = new LinkedHashMap<Problem, Problem>();
+			for(SolveResult result : solveAll(affected, knowledge, ignoredLibraries, config, token)){
+				Problem p = result.getProblem();
+				resolved.add(p);
+				list.add(result);
+				if(result.getFailure()!=null || result.isCancelled())
+					continue;
+				//the previous results are not modified, since the knowledge pool may still be in use
+				Problem previous = p.getResult();
+				Problem res = new Problem(previous.getName());
+				res.setLibrary(previous.getLibrary());
+				res.setFunctionMemberVariable(previous.getFunctionMemberVariable());
+				res.statements.addAll(result.getSolution().statements);
+				res.setProvenance(result.getSolution().getProvenance());
+				results.put(p, res);
+				names.add(p.getName());
+			}
+			if(!results.isEmpty())
+				executor.execute(new Runnable(){
+					@Override
+					public void run(){
+						for(Map.Entry<Problem, Problem> result : results.entrySet()){
+							knowledge.replace(result.getKey().getResult(), result.getValue());
+							result.getKey().setResult(result.getValue());
+						}
+					}
+				});
+		}
+		return list;
+	}
+	
+	//the default grid of importance balances tried by solvePortfolio
+	public static final float[] PORTFOLIO_IMPORTANCE_BALANCES = {0.25f, 0.5f, 0.75f, 1f};
+	//the default grid of similarity thresholds tried by solvePortfolio
+	public static final float[] PORTFOLIO_SIMILARITY_THRESHOLDS = {0.2f, 0.3f, 0.5f};
+	
+	/**
+	 * <h1>BEST_SOLUTION</h1>
+	 * An objective for <code>solvePortfolio</code> that prefers solved results, then results with fewer
+	 * statements and then faster results.
+	 */
+	public static final Comparator<SolveResult> BEST_SOLUTION = new Comparator<SolveResult>(){
+		@Override
+		public int compare(SolveResult r1, SolveResult r2){
+			if(r1.isSolved()!=r2.isSolved())
+				return r1.isSolved()?-1:1;
+			if(r1.getStatementCount()!=r2.getStatementCount())
+				return r1.getStatementCount()<r2.getStatementCount()?-1:1;
+			if(r1.getTime()!=r2.getTime())
+				return r1.getTime()<r2.getTime()?-1:1;
+			return 0;
+		}
+	};
+	
+	/**
+	 * <h1>solvePortfolio</h1>
+	 * Solves a problem with every combination of the given importance balances and similarity thresholds
+	 * (the rest of the settings are taken from the given configuration). The knowledge pool is rationalized
+	 * only once and all runs are performed concurrently against it, each one by a single thread that uses
+	 * its own solve context (see <code>SolveContext</code>). Ties between candidates are never resolved
+	 * by the user.<br/>
+	 * If no objective is given, the first run to find a solution wins and the remaining runs are
+	 * cancelled (if no run finds a solution, the best one according to <code>BEST_SOLUTION</code> wins).
+	 * Otherwise, all runs finish and the best one according to the objective wins. The winning solution
+	 * is placed into the empty problem and the outcome and timing of each run are logged.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration (its threads are split between runs)
+	 * @param importanceBalances : the importance balances to try
+	 * @param similarityThresholds : the similarity thresholds to try
+	 * @param objective : the order of results from best to worst (<code>null</code> for the first solution to win)
+	 * @param token : a cancellation token that stops all runs
+	 * @return the results of all runs, in the order of the grid (importance balances first)
+	 */
+	public static ArrayList<SolveResult> solvePortfolio(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, SolverConfig config,
+			float[] importanceBalances, float[] similarityThresholds, Comparator<SolveResult> objective, CancellationToken token){
 		Problem.setLogLevel(3);
 		Problem.clearLog();
 		p.setResult(null);
+		Problem.log("Creating rationalized copy of knowledge pool ("+config.getThreads()+" threads)", 1);
+		final IdentityHashMap<Problem, Problem> sources = new IdentityHashMap<Problem, Problem>();
+		final ArrayList<Problem> problems = knowledge.getRationalized(p, ignoredLibraries, config, token, sources);
+		Problem.log("Number of rationalized problems: "+problems.size(), 2);
+		//the similarity matrix must store the similarities of the lowest threshold of the grid
+		float minThreshold = config.getPredicateSimilarityThreshold();
+		for(float similarityThreshold : similarityThresholds)
+			minThreshold = Math.min(minThreshold, similarityThreshold);
+		config = config.withSimilarityMatrix(knowledge.getSimilarityMatrix(problems, config.withPredicateSimilarityThreshold(minThreshold)));
+		final ArrayList<SolverConfig> grid = new ArrayList<SolverConfig>();
+		for(float importanceBalance : importanceBalances)
+			for(float similarityThreshold : similarityThresholds)
+				grid.add(config.withImportanceBalance(importanceBalance).withPredicateSimilarityThreshold(similarityThreshold));
+		final int workers = Math.max(1, Math.min(config.getThreads(), grid.size()));
+		final int runThreads = config.getThreads()/workers;
+		final boolean firstSolutionWins = objective==null;
+		//all runs are cancelled together when the first solution wins, without cancelling the given token
+		final CancellationToken portfolio = new CancellationToken(token);
+		final SolveResult [] results = new SolveResult[grid.size()];
+		final AtomicInteger nextRun = new AtomicInteger(0);
+		final AtomicInteger winner = new AtomicInteger(-1);
+		final Problem query = p;
+		Problem.log("Solving with "+grid.size()+" settings ("+workers+" threads)", 0);
+		Thread [] th = new Thread[workers];
+		for(int i=0;i<workers;i++){
+			th[i] = new Thread(){
+				@Override
+				public void run(){
+					for(int j=nextRun.getAndIncrement();j<grid.size();j=nextRun.getAndIncrement()){
+						SolverConfig runConfig = grid.get(j).withThreads(runThreads);
+						results[j] = solveInContext(query, problems, sources, runConfig, new CancellationToken(portfolio), null,
+								"Conserve: "+Math.round(runConfig.getImportanceBalance()*100)+"%, similarity: "+Math.round(runConfig.getPredicateSimilarityThreshold()*100)+"%");
+						if(firstSolutionWins && results[j].isSolved() && winner.compareAndSet(-1, j))
+							portfolio.cancel();
+					}
+				}
+			};
+		}
+		for(int i=0;i<workers;i++)
+			th[i].start();
+		for(int i=0;i<workers;)
+			try{
+				th[i].join();
+				i++;
+			}
+			catch(InterruptedException e){
+				token.cancel();
+			}
+		//report all runs and select the winner
+		ArrayList<SolveResult> list = new ArrayList<SolveResult>();
+		SolveResult best = winner.get()!=-1?results[winner.get()]:null;
+		for(SolveResult result : results){
+			if(result==null)
+				continue;
+			list.add(result);
+			if(winner.get()==-1 && (best==null || (objective!=null?objective:BEST_SOLUTION).compare(result, best)<0))
+				best = result;
+		}
+		for(SolveResult result : list)
+			Problem.log("Conserve: "+Math.round(result.getConfig().getImportanceBalance()*100)+"%, similarity: "
+					+Math.round(result.getConfig().getPredicateSimilarityThreshold()*100)+"%: "
+					+(result.isSolved()?"solved":"unsolved")+(result.isCancelled()?" (cancelled)":"")
+					+", "+result.getStatementCount()+" statements, "+result.getTime()+" ms"+(result==best?" <b>(selected)</b>":""), 2);
+		pr.statements.clear();
+		if(best!=null){
+			pr.setConfig(best.getConfig());
+			pr.statements.addAll(best.getSolution().statements);
+			pr.setMergedProblems(best.getSolution().getMergedProblems());
+			pr.setProvenance(best.getSolution().getProvenance());
+			pr.setLibrary(p.getLibrary());
+		}
+		if(pr.isSolved())
+			Problem.log("Solved", 0);
+		else
+			Problem.log("Failed", 0);
+		p.setResult(pr);
+		Problem.setLogLevel(3);
+		return list;
+	}
+	
+	/**
+	 * <h1>solveInContext</h1>
+	 * Solves a problem against a rationalized knowledge pool in the current thread, using a new
+	 * non-interactive solve context (see <code>SolveContext</code>) that keeps its log separate.
+	 * Exceptions thrown by the solve are caught and reported in the result.
+	 * @param p : the given problem (it is not modified)
+	 * @param pool : the rationalized knowledge pool
+	 * @param sources : the knowledge pool problem of each rationalized problem (used for the provenance of the solution)
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token
+	 * @param memo : the recorded solution steps shared with other solves (<code>null</code> to not share steps)
+	 * @param header : a message added at the start of the solve's log
+	 * @return the result of the solve
+	 */
+	private static SolveResult solveInContext(Problem p, ArrayList<Problem> pool, Map<Problem, Problem> sources, SolverConfig config, CancellationToken token, IterationMemo memo, String header){
+		SolveContext context = new SolveContext(config, token, false, memo);
+		context.bind();
+		long solveStart = startSolve();
+		long[] usage = SolveStats.startAccounting();
+		Problem pr = new Problem(p.getName()+"_implement", config);
+		int evaluations = 0;
+		RuntimeException failure = null;
+		try{
+			Problem.log(header, 1);
+			Problem.log("Number of rationalized problems: "+pool.size(), 2);
+			if(config.getBeamWidth()>1)
+				evaluations = beamSearch(pr, p, pool, config, token);
+			else
+				evaluations = greedySearch(pr, p, pool, config, token);
+			pr.setProvenance(getProvenance(pr, sources));
+			SolveStats.stopAccounting(usage);
+			if(config.isLogStats())
+				context.getStats().log();
+		}
+		catch(RuntimeException e){
+			failure = e;
+			Problem.log("Solve failed: "+e, 0);
+		}
+		finally{
+			SolveContext.unbind();
+			finishSolve(solveStart, context.getStats());
+		}
+		return new SolveResult(p, pr, config, pool.size(), evaluations, (System.nanoTime()-solveStart)/1000000, context.getLog(), context.getStats().copy(), failure, token.isCancelled() && !pr.isSolved());
+	}
+	
+	/**
+	 * <h1>startSolve</h1>
+	 * Reports the start of a solve to the live metrics (see <code>Metrics</code>).
+	 * @return the value of <code>System.nanoTime</code> when the solve started
+	 */
+	private static long startSolve(){
+		solvesInFlight.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * <h1>finishSolve</h1>
+	 * Reports the end of a solve to the live metrics (see <code>Metrics</code>). Lookups that happen very often
+	 * during a solve are counted by its statistics and are only reported here.
+	 * @param solveStart : the value returned by <code>startSolve</code>
+	 * @param stats : the statistics of the solve
+	 */
+	private static void finishSolve(long solveStart, SolveStats stats){
+		solvesInFlight.decrement();
+		solveLatency.record((System.nanoTime()-solveStart)/1000000);
+		similarityMatrixHits.add(stats.getCounter(SolveStats.SIMILARITY_MATRIX_HITS), stats.getCounter(SolveStats.SIMILARITY_MATRIX_MISSES));
+		formCacheHits.add(stats.getCounter(SolveStats.FORM_CACHE_HITS), stats.getCounter(SolveStats.FORM_CACHE_MISSES));
+	}
+	
+	/**
+	 * <h1>greedySearch</h1>
+	 * Performs the consecutive steps of the <code>solve</code> function for a given rationalized knowledge
+	 * pool. If the settings allow splitting subproblems and the given problem consists of more than one
+	 * independent subproblems, these are solved separately (see <code>solveSubproblems</code>).
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem (it is not modified)
+	 * @param problems : the rationalized knowledge pool
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token
+	 * @return the total number of candidate evaluations
+	 */
+	private static int greedySearch(Problem pr, Problem p, ArrayList<Problem> problems, SolverConfig config, CancellationToken token){
+		Problem.setLogLevel(config.getLogLevel());
+		//create a copy of the given problem that uses the given settings (this also breaks it down)
+		Problem query = new Problem(p, "", config);
+		query.setResult(null);
+		//split the given problem into independent subproblems
+		ArrayList<Problem> subproblems = null;
+		if(config.isSplitSubproblems() && !token.isCancelled()){
+			long phaseStart = System.nanoTime();
+			subproblems = splitProblem(query, config);
+			SolveStats.time(SolveStats.SPLITTING, phaseStart);
+		}
+		int passes;
+		if(subproblems!=null && subproblems.size()>1)
+			passes = solveSubproblems(pr, query, subproblems, problems, config, token);
+		else
+			passes = solveRationalized(pr, query, problems, config, token, "");
+		solveIterations.record(passes);
+		poolSizes.record(problems.size());
+		Problem.log("Total candidate evaluations: "+passes*problems.size(), 2);
+		return passes*problems.size();
+	}
+	
+	/**
+	 * <h1>solveRationalized</h1>
+	 * Performs the consecutive steps of the <code>solve</code> function (including its final pass)
+	 * for a given rationalized knowledge pool.<br/>
+	 * Besides stopping when a step makes no progress, steps stop as soon as they reach a state of the
+	 * problem that has already been reached during this solve (see <code>IterationMemo.getStateKey</code>),
+	 * since merges that oscillate between states would otherwise repeat until the maximum number of
+	 * iterations. If the current solve context shares recorded steps (see <code>SolveContext.getMemo</code>),
+	 * steps that have already been performed by this or another solve are not performed again.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param problems : the rationalized knowledge pool
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token
+	 * @param label : a String to add to logged iterations (used to tell apart concurrently solved problems)
+	 * @return the number of performed passes (including the final pass)
+	 */
+	private static int solveRationalized(Problem pr, Problem p, ArrayList<Problem> problems, SolverConfig config, CancellationToken token, String label){
 		Problem res = p;
 		Problem prevRes = null;
 		int iteration = 0;
-		if(Problem.breakdownStatements)
-			p.expand("", Problem.breakdownAlsoCode);
-		//create a rationalized copy of the knowledge pool
-		Problem.log("Creating rationalized copy of knowledge pool ("+threads+" threads)", 1);
-		ArrayList<Problem> problems = knowledge.getRationalized(p, ignoredLibraries, threads);
-		Problem.log("Number of rationalized problems: "+problems.size(), 2);
-		Problem.setLogLevel(logLevel);
+		SolveContext context = SolveContext.getCurrent();
+		//steps are not shared if the same step may merge differently (e.g. if ties are answered by the user)
+		IterationMemo memo = context==null || !config.isReproducible()?null:context.getMemo();
+		String configHash = memo==null?null:config.getHash();
+		HashSet<String> seen = new HashSet<String>();
+		boolean repeated = false;
 		//iterate until solution or until max depth reached
 		do{
 			prevRes = res;
 			iteration++;
-			Problem.log("Iteration #"+iteration, 0);
+			Problem.log("Iteration #"+iteration+label, 0);
 			Problem.log("--------------------------------------------------------------------------------------", 1);
-			res = new Problem(prevRes.getName());
-			res.solve(prevRes, problems, "", importanceBalance, threads);
-		}while(!res.isSolved() && !prevRes.isSame(res) && (iteration<maxIterations));
+			//break down the problem before identifying its state (the step would break it down anyway)
+			if(config.isBreakdownStatements())
+				prevRes.expand("", config.isBreakdownAlsoCode());
+			seen.add(IterationMemo.getStateKey(prevRes));
+			AnalyserEvents.SolveIteration event = new AnalyserEvents.SolveIteration();
+			event.begin();
+			res = memo==null?null:memo.get(problems, configHash, prevRes, config);
+			boolean reused = res!=null;
+			if(memo!=null){
+				if(reused)
+					memoHits.hit();
+				else
+					memoHits.miss();
+			}
+			if(reused){
+				SolveStats.count(SolveStats.ITERATION_MEMO_HITS);
+				Problem.log("Reusing recorded step"+label, 1);
+			}
+			else{
+				res = new Problem(prevRes.getName(), config);
+				res.solve(prevRes, problems, "", config, token);
+				if(memo!=null && !token.isCancelled())
+					memo.put(problems, configHash, prevRes, res);
+			}
+			event.finish(prevRes, res, iteration, reused);
+			repeated = seen.contains(IterationMemo.getStateKey(res));
+			if(repeated && !res.isSolved() && !prevRes.isSame(res))
+				Problem.log("Reached an already visited state, stopping"+label, 0);
+		}while(!res.isSolved() && !repeated && !prevRes.isSame(res) && (iteration<config.getMaxIterations()) && !token.isCancelled());
+		if(token.isCancelled()){
+			//an interrupted step merges nothing, so res already holds the best partial solution
+			if(token.isExpired())
+				Problem.log("Time budget exhausted, keeping best partial solution"+label, 0);
+			else
+				Problem.log("Solve cancelled, keeping best partial solution"+label, 0);
+		}
 		res.setLibrary(p.getLibrary());
-		Problem.log("Final pass (confirmation and detect statements that need solving)", 0);
+		Problem.log("Final pass (confirmation and detect statements that need solving)"+label, 0);
 		Problem.log("--------------------------------------------------------------------------------------", 1);
-		pr.solve(res, problems, "solve: ", importanceBalance, threads);
-		//rearranging statements (done in solve)
-		/*for(int i=0;i<pr.statements.size();i++){
-			Statement s = pr.statements.get(i);
-			for(int j=i+1;j<pr.statements.size();j++)
-				if(   pr.statements.get(j).isAssignment()
-				   && s.hasVariable(pr.statements.get(j).getTrivialVariable())){
-					Statement temp = pr.statements.get(j);
-					pr.statements.remove(j);
-					pr.statements.add(i, temp);
+		pr.solve(res, problems, "solve: ", config, token);
+		Problem.log("Total passes: "+iteration+" + final pass"+label, 0);
+		return iteration+1;
+	}
+	
+	/**
+	 * <h1>splitProblem</h1>
+	 * Splits the given problem into independent subproblems using <code>Problem.getSubproblems</code>,
+	 * i.e. into groups of statements that share no variables besides inputs and iterators. Each
+	 * subproblem is given a copy of the problem's input and iterator statements and an output statement
+	 * with only the outputs that its statements affect. Groups that do not affect any output would be
+	 * removed by the solution algorithm, so if there is such a group the problem is not split.
+	 * @param p : the given problem
+	 * @param config : the solver configuration used by the subproblems
+	 * @return a list of subproblems that hold copies of the given problem's statements
+	 * (<code>null</code> if the problem cannot be split)
+	 */
+	private static ArrayList<Problem> splitProblem(Problem p, SolverConfig config){
+		ArrayList<Problem> subproblems = p.getSubproblems();
+		if(subproblems.size()<=1)
+			return null;
+		String outputs = p.getOutput("");
+		ArrayList<Problem> copies = new ArrayList<Problem>();
+		for(Problem sub : subproblems){
+			Problem copy = new Problem(sub.getName(), config);
+			String subOutputs = "";
+			for(Statement st : sub.statements)
+				if(!st.isInput() && !st.isOutput()){
+					copy.statements.add(new Statement(st.getVariables(), st.getExpression(), config));
+					for(String var : st.variables)
+						if((" "+outputs+" ").contains(" "+var+" ") && !(" "+subOutputs+" ").contains(" "+var+" "))
+							subOutputs += (subOutputs.isEmpty()?"":" ")+var;
+				}
+			if(subOutputs.isEmpty())
+				return null;
+			copy.statements.add(0, new Statement(subOutputs, "output", config));
+			if(!p.getInput().isEmpty())
+				copy.statements.add(0, new Statement(p.getInput(), "input", config));
+			for(Statement st : p.statements)
+				if(st.isIterator())
+					copy.statements.add(new Statement(st.getVariables(), st.getExpression(), config));
+			copy.setLibrary(p.getLibrary());
+			copies.add(copy);
+		}
+		return copies;
+	}
+	
+	/**
+	 * <h1>solveSubproblems</h1>
+	 * Solves the given independent subproblems concurrently against the same rationalized knowledge pool
+	 * and stitches their solutions together with the input and output statements of the given problem.
+	 * Internal variables of different subproblem solutions that happen to have the same name are renamed,
+	 * so that the stitched solution does not mix them up.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param subproblems : the independent subproblems of the given problem
+	 * @param problems : the rationalized knowledge pool
+	 * @param config : the solver configuration (its threads are split between subproblems)
+	 * @param token : a cancellation token
+	 * @return the total number of performed passes for all subproblems
+	 */
+	private static int solveSubproblems(Problem pr, Problem p, final ArrayList<Problem> subproblems, final ArrayList<Problem> problems, SolverConfig config, final CancellationToken token){
+		Problem.log("Solving "+subproblems.size()+" independent subproblems of <i>"+p.getName()+"</i>", 0);
+		final int workers = Math.max(1, Math.min(config.getThreads(), subproblems.size()));
+		final SolverConfig workerConfig = config.withThreads(config.getThreads()/workers);
+		if(workers>1 && config.getLogLevel()>=3){
+			Problem.setLogLevel(2);
+			Problem.log("Some details are ignored in multi-threaded mode.", 0);
+		}
+		final Problem [] solutions = new Problem[subproblems.size()];
+		final int [] passes = new int[subproblems.size()];
+		final AtomicInteger nextSubproblem = new AtomicInteger(0);
+		//the first exception thrown by a worker (rethrown to the caller, as if solving in a single thread)
+		final RuntimeException [] failure = new RuntimeException[1];
+		Thread [] th = new Thread[workers];
+		for(int i=0;i<workers;i++){
+			th[i] = new Thread(){
+				@Override
+				public void run(){
+					long[] usage = SolveStats.startAccounting();
+					try{
+						for(int j=nextSubproblem.getAndIncrement();j<subproblems.size();j=nextSubproblem.getAndIncrement()){
+							Problem sub = subproblems.get(j);
+							solutions[j] = new Problem(sub.getName(), workerConfig);
+							passes[j] = solveRationalized(solutions[j], sub, problems, workerConfig, token, " (<i>"+sub.getName()+"</i>)");
+						}
+					}
+					catch(RuntimeException e){
+						synchronized(failure){
+							if(failure[0]==null)
+								failure[0] = e;
+						}
+						token.cancel();
+					}
+					SolveStats.stopAccounting(usage);
+				}
+			};
+		}
+		for(int i=0;i<workers;i++)
+			th[i].start();
+		for(int i=0;i<workers;)
+			try{
+				th[i].join();
+				i++;
+			}
+			catch(InterruptedException e){
+				token.cancel();
+			}
+		Problem.setLogLevel(config.getLogLevel());
+		if(failure[0]!=null)
+			throw failure[0];
+		//stitch solutions, renaming internal variables that have already been used by other solutions
+		String ioVariables = p.getInput()+" "+p.getOutput("")+" "+p.getIterator();
+		String usedVariables = "";
+		for(Problem solution : solutions)
+			usedVariables += " "+solution.getVariables();
+		usedVariables += " ";
+		HashSet<String> internalVariables = new HashSet<String>();
+		ArrayList<Statement> stitched = new ArrayList<Statement>();
+		int totalPasses = 0;
+		for(int i=0;i<solutions.length;i++){
+			totalPasses += passes[i];
+			HashSet<String> solutionVariables = new HashSet<String>();
+			for(Statement st : solutions[i].statements)
+				if(!st.isInput() && !st.isOutput())
+					for(String var : st.getVariables().split(" "))
+						if(!var.isEmpty() && !(" "+ioVariables+" ").contains(" "+var+" "))
+							solutionVariables.add(var);
+			for(String var : solutionVariables){
+				String nextVar = var;
+				if(internalVariables.contains(var)){
+					int inc = 0;
+					while(usedVariables.contains(" "+nextVar+" ")){
+						nextVar = var+inc;
+						inc++;
+					}
+					usedVariables += nextVar+" ";
+					Problem.log(2, "Renamed <i>{}</i> of <i>{}</i> to <i>{}</i>", var, solutions[i].getName(), nextVar);
+					for(Statement st : solutions[i].statements)
+						st.replace(var, nextVar);
+				}
+				internalVariables.add(nextVar);
+			}
+			for(Statement st : solutions[i].statements)
+				if(!st.isInput() && !st.isOutput())
+					stitched.add(st);
+		}
+		pr.statements.clear();
+		pr.setConfig(config);
+		if(!p.getInput().isEmpty())
+			pr.statements.add(new Statement(p.getInput(), "input", config));
+		if(!p.getOutput("").isEmpty())
+			pr.statements.add(new Statement(p.getOutput(""), "output", config));
+		pr.statements.addAll(stitched);
+		ArrayList<Problem> mergedProblems = new ArrayList<Problem>();
+		for(Problem solution : solutions)
+			mergedProblems.addAll(solution.getMergedProblems());
+		pr.setMergedProblems(mergedProblems);
+		if(pr.isSolved())
+			Problem.log("Solved", 0);
+		else
+			Problem.log("Failed", 0);
+		return totalPasses;
+	}
+	
+	/**
+	 * <h1>BeamState</h1>
+	 * A partial solution kept by <code>solveBeam</code>, together with the information accumulated
+	 * by all merges that led to it. Solved partial solutions come first and then partial solutions
+	 * with more accumulated information.
+	 */
+	private static class BeamState implements Comparable<BeamState> {
+		private Problem problem;
+		private float score;
+		private boolean solved;
+		
+		public BeamState(Problem problem, float score){
+			this.problem = problem;
+			this.score = score;
+			solved = problem.isSolved();
+		}
+		
+		@Override
+		public int compareTo(BeamState s) {
+			if(solved!=s.solved)
+				return solved?-1:1;
+			if(score!=s.score)
+				return score>s.score?-1:1;
+			return 0;
+		}
+	}
+	
+	/**
+	 * <h1>solveBeam</h1>
+	 * Performs a beam search variation of the solution algorithm. Instead of merging a single candidate
+	 * with maximum information in each step, the best <code>beamWidth</code> partial solutions are kept.
+	 * In each step, the candidates of all kept partial solutions are scored in parallel (using the same
+	 * information metric as <code>Problem.solve</code>), the best <code>beamWidth</code> candidates of
+	 * each partial solution are merged into it and the best <code>beamWidth</code> of the resulting
+	 * partial solutions (with respect to their accumulated information) are kept for the next step.
+	 * Partial solutions that have already been visited are detected by their structural hash (see
+	 * <code>Problem.getStructuralHash</code>) and are discarded.<br/>
+	 * The search stops as soon as a partial solution is solved. Ties between candidates are never
+	 * resolved by the user, so this function does not require a display.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param maxIterations : maximum number of steps to perform
+	 * @param importanceBalance : importance of <i>not</i> adding new information
+	 * @param logLevel : the desired log level. Must be either 2 or 3.
+	 * @param threads : the number of threads to use
+	 * @param beamWidth : the number of partial solutions kept in each step
+	 * @param token : a cancellation token (create it with a time budget for a wall-clock limit)
+	 * @return the statistics of the solve
+	 */
+	public static SolveStats solveBeam(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, int maxIterations, float importanceBalance, int logLevel, int threads, int beamWidth, CancellationToken token){
+		SolverConfig config = SolverConfig.getDefault()
+				.withMaxIterations(maxIterations)
+				.withImportanceBalance(importanceBalance)
+				.withLogLevel(logLevel)
+				.withThreads(threads)
+				.withBeamWidth(beamWidth);
+		return solveBeam(pr, p, knowledge, ignoredLibraries, config, token);
+	}
+	
+	/**
+	 * <h1>solveBeam</h1>
+	 * Performs the same beam search as the <code>solveBeam</code> function, using the given settings
+	 * (including the beam width) instead of the static ones. The given problem is not modified
+	 * (besides setting its result). Statistics are returned as with the <code>solve</code> function.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem
+	 * @param knowledge : the knowledge pool
+	 * @param ignoredLibraries : libraries to ignore from the knowledge pool
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token (create it with a time budget for a wall-clock limit)
+	 * @return the statistics of the solve
+	 */
+	public static SolveStats solveBeam(Problem pr, Problem p, Knowledge knowledge, ArrayList<String> ignoredLibraries, final SolverConfig config, final CancellationToken token){
+		long solveStart = startSolve();
+		//each solve reports to new statistics, so that concurrent solves do not mix up theirs
+		SolveStats stats = new SolveStats();
+		SolveStats previousStats = SolveStats.bind(stats);
+		try{
+			Problem.setLogLevel(3);
+			Problem.clearLog();
+			long[] usage = SolveStats.startAccounting();
+			p.setResult(null);
+			//create a rationalized copy of the knowledge pool
+			Problem.log("Creating rationalized copy of knowledge pool ("+config.getThreads()+" threads)", 1);
+			IdentityHashMap<Problem, Problem> sources = new IdentityHashMap<Problem, Problem>();
+			long phaseStart = System.nanoTime();
+			ArrayList<Problem> problems = knowledge.getRationalized(p, ignoredLibraries, config, token, sources);
+			Problem.log("Number of rationalized problems: "+problems.size(), 2);
+			SimilarityMatrix matrix = knowledge.getSimilarityMatrix(problems, config);
+			SolveStats.time(SolveStats.RATIONALIZATION, phaseStart);
+			beamSearch(pr, p, problems, config.withSimilarityMatrix(matrix), token);
+			pr.setProvenance(getProvenance(pr, sources));
+			p.setResult(pr);
+			SolveStats.stopAccounting(usage);
+			if(config.isLogStats())
+				stats.log();
+			Problem.setLogLevel(3);
+			return stats;
+		}
+		finally{
+			SolveStats.bind(previousStats);
+			finishSolve(solveStart, stats);
+		}
+	}
+	
+	/**
+	 * <h1>beamSearch</h1>
+	 * Performs the steps of the <code>solveBeam</code> function for a given rationalized knowledge pool.
+	 * @param pr : an empty problem into which to put the solution
+	 * @param p : the given problem (it is not modified)
+	 * @param problems : the rationalized knowledge pool
+	 * @param config : the solver configuration
+	 * @param token : a cancellation token
+	 * @return the total number of candidate evaluations
+	 */
+	private static int beamSearch(Problem pr, Problem p, final ArrayList<Problem> problems, final SolverConfig config, final CancellationToken token){
+		final int beamWidth = config.getBeamWidth();
+		final float importanceBalance = config.getImportanceBalance();
+		int threads = config.getThreads();
+		Problem.setLogLevel(config.getLogLevel());
+		//create a copy of the given problem that uses the given settings (this also breaks it down)
+		Problem query = new Problem(p, "", config);
+		query.setResult(null);
+		if(threads>1 && config.getLogLevel()>=3){
+			Problem.setLogLevel(2);
+			Problem.log("Some details are ignored in multi-threaded mode.", 0);
+		}
+		HashSet<String> visited = new HashSet<String>();
+		visited.add(query.getStructuralHash());
+		ArrayList<BeamState> beam = new ArrayList<BeamState>();
+		beam.add(new BeamState(query, 0));
+		int iteration = 0;
+		int evaluations = 0;
+		//iterate until a partial solution is solved or until max depth reached
+		while(!beam.get(0).solved && iteration<config.getMaxIterations() && !token.isCancelled()){
+			iteration++;
+			Problem.log("Iteration #"+iteration+" ("+beam.size()+" partial solutions)", 0);
+			Problem.log("--------------------------------------------------------------------------------------", 1);
+			final ArrayList<BeamState> states = beam;
+			final ArrayList<ArrayList<BeamState>> expansions = new ArrayList<ArrayList<BeamState>>();
+			for(int i=0;i<states.size();i++)
+				expansions.add(new ArrayList<BeamState>());
+			final int workers = Math.max(1, Math.min(threads, states.size()));
+			Thread [] th = new Thread[workers];
+			for(int i=0;i<workers;i++){
+				final int threadId = i;
+				th[i] = new Thread(){
+					@Override
+					public void run(){
+						long[] usage = SolveStats.startAccounting();
+						for(int j=threadId;j<states.size();j+=workers){
+							if(token.isCancelled())
+								break;
+							BeamState state = states.get(j);
+							if(config.isBreakdownStatements())
+								state.problem.expand("", config.isBreakdownAlsoCode());
+							ArrayList<Candidate> candidates = (new Problem(state.problem.getName(), config)).scoreCandidates(state.problem, problems, importanceBalance, 1, token, false);
+							Collections.sort(candidates);
+							for(int c=0;c<candidates.size() && c<beamWidth && !token.isCancelled();c++){
+								if(candidates.get(c).getInformation()<=Float.MIN_VALUE)
+									break;
+								Problem child = new Problem(state.problem.getName(), config);
+								child.merge(state.problem, candidates.get(c), "");
+								expansions.get(j).add(new BeamState(child, state.score+candidates.get(c).getInformation()));
+							}
+						}
+						SolveStats.stopAccounting(usage);
+					}
+				};
+			}
+			for(int i=0;i<workers;i++)
+				th[i].start();
+			for(int i=0;i<workers;)
+				try{
+					th[i].join();
+					i++;
+				}
+				catch(InterruptedException e){
+					token.cancel();
 				}
-		}*/
-		if(Problem.breakdownStatements)
-			p.collapse(Problem.breakdownAlsoCode, "");
+			evaluations += states.size()*problems.size();
+			//keep the best unvisited partial solutions
+			ArrayList<BeamState> next = new ArrayList<BeamState>();
+			for(ArrayList<BeamState> expansion : expansions)
+				for(BeamState state : expansion)
+					if(visited.add(state.problem.getStructuralHash()))
+						next.add(state);
+			if(next.isEmpty()){
+				Problem.log("Nothing to merge", 0);
+				break;
+			}
+			Collections.sort(next);
+			beam = new ArrayList<BeamState>(next.subList(0, Math.min(beamWidth, next.size())));
+			for(BeamState state : beam)
+				Problem.log(2, "Kept partial solution with {} bits of accumulated information{}", Math.round(state.score*10)/10.0, state.solved?" (solved)":"");
+		}
+		if(token.isCancelled()){
+			if(token.isExpired())
+				Problem.log("Time budget exhausted, keeping best partial solution", 0);
+			else
+				Problem.log("Solve cancelled, keeping best partial solution", 0);
+		}
+		solveIterations.record(iteration+1);
+		poolSizes.record(problems.size());
+		Problem res = beam.get(0).problem;
+		res.setLibrary(p.getLibrary());
+		Problem.log("Final pass (confirmation and detect statements that need solving)", 0);
+		Problem.log("--------------------------------------------------------------------------------------", 1);
+		if(config.isBreakdownStatements())
+			res.expand("", config.isBreakdownAlsoCode());
+		pr.setConfig(config);
+		ArrayList<Candidate> select = Problem.getBestCandidates(pr.scoreCandidates(res, problems, importanceBalance, threads, token, true));
+		if(token.isCancelled())
+			select.clear();
+		pr.merge(res, select.isEmpty()?null:select.get(0), "solve: ");
 		Problem.log("Total passes: "+iteration+" + final pass", 0);
-		p.setResult(pr);
-		Problem.setLogLevel(3);
+		Problem.log("Total candidate evaluations: "+(evaluations+problems.size()), 2);
+		return evaluations+problems.size();
 	}
 }